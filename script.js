@@ -2,39 +2,44 @@ let data = [];
 const stateSelect = document.getElementById("stateSelect");
 const stateInfo = document.getElementById("stateInfo");
 
-const stateAbbr = {
-  "Alabama": "AL", "Alaska": "AK", "Arizona": "AZ", "Arkansas": "AR", "California": "CA",
-  "Colorado": "CO", "Connecticut": "CT", "Delaware": "DE", "Florida": "FL", "Georgia": "GA",
-  "Hawaii": "HI", "Idaho": "ID", "Illinois": "IL", "Indiana": "IN", "Iowa": "IA",
-  "Kansas": "KS", "Kentucky": "KY", "Louisiana": "LA", "Maine": "ME", "Maryland": "MD",
-  "Massachusetts": "MA", "Michigan": "MI", "Minnesota": "MN", "Mississippi": "MS", "Missouri": "MO",
-  "Montana": "MT", "Nebraska": "NE", "Nevada": "NV", "New Hampshire": "NH", "New Jersey": "NJ",
-  "New Mexico": "NM", "New York": "NY", "North Carolina": "NC", "North Dakota": "ND", "Ohio": "OH",
-  "Oklahoma": "OK", "Oregon": "OR", "Pennsylvania": "PA", "Rhode Island": "RI", "South Carolina": "SC",
-  "South Dakota": "SD", "Tennessee": "TN", "Texas": "TX", "Utah": "UT", "Vermont": "VT",
-  "Virginia": "VA", "Washington": "WA", "West Virginia": "WV", "Wisconsin": "WI", "Wyoming": "WY"
-};
+let scoreSeq = 0;
+let scoreController = null;
+let pendingUpdate = null;
 
 function normalizeWeights(w1, w2, w3) {
   const total = w1 + w2 + w3;
   return [w1 / total, w2 / total, w3 / total];
 }
 
-function calculateScores() {
+// State scores are rolled up live from the county data by /api/aggregates/states
+async function calculateScores() {
   const wIncome = parseFloat(document.getElementById("income").value);
   const wUnemp = parseFloat(document.getElementById("unemployment").value);
   const wCost = parseFloat(document.getElementById("cost").value);
   const [wi, wu, wc] = normalizeWeights(wIncome, wUnemp, wCost);
 
-  data.forEach(d => {
-    d.Resilience_Score = +(wi * d.Income_Norm + wu * (1 - d.Unemployment_Norm) + wc * (1 - d.Cost_Norm)).toFixed(3);
-  });
+  // Only the reply to the latest slider position is drawn
+  const seq = ++scoreSeq;
+  if (scoreController) scoreController.abort();
+  scoreController = new AbortController();
+  let json;
+  try {
+    const res = await fetch(`/api/aggregates/states?weights=${wi},${wu},${wc},0`, { signal: scoreController.signal });
+    if (!res.ok) throw new Error(`HTTP ${res.status}`);
+    json = await res.json();
+  } catch (err) {
+    if (err.name !== "AbortError") stateInfo.textContent = "Could not load state scores.";
+    return;
+  }
+  if (seq !== scoreSeq) return;
 
-  updateStateDropdown();
+  const selected = stateSelect.value;
+  data = json.groups.map(g => ({ State: g.name, Abbr: g.key, Resilience_Score: +g.score.toFixed(3) }));
+  updateStateDropdown(selected);
   updateCharts();
 }
 
-function updateStateDropdown() {
+function updateStateDropdown(selected) {
   stateSelect.innerHTML = "";
   data.sort((a, b) => a.State.localeCompare(b.State)).forEach(d => {
     const option = document.createElement("option");
@@ -42,12 +47,17 @@ function updateStateDropdown() {
     option.textContent = d.State;
     stateSelect.appendChild(option);
   });
+  if (selected && data.some(d => d.State === selected)) stateSelect.value = selected;
   updateStateInfo();
 }
 
 function updateStateInfo() {
   const selected = stateSelect.value;
   const state = data.find(d => d.State === selected);
+  if (!state) {
+    stateInfo.textContent = "No state scores yet.";
+    return;
+  }
   const rank = [...data].sort((a, b) => b.Resilience_Score - a.Resilience_Score)
     .findIndex(d => d.State === selected) + 1;
   stateInfo.textContent = `${selected} Score: ${state.Resilience_Score} (Rank #${rank})`;
@@ -66,7 +76,7 @@ function updateCharts() {
   Plotly.newPlot("mapChart", [{
     type: "choropleth",
     locationmode: "USA-states",
-    locations: sorted.map(d => stateAbbr[d.State]),
+    locations: sorted.map(d => d.Abbr),
     z: sorted.map(d => d.Resilience_Score),
     colorscale: "Viridis",
     colorbar: { title: "Score" }
@@ -77,13 +87,11 @@ function updateCharts() {
 }
 
 document.querySelectorAll("input[type=range]").forEach(el => {
-  el.addEventListener("input", calculateScores);
+  el.addEventListener("input", () => {
+    clearTimeout(pendingUpdate);
+    pendingUpdate = setTimeout(calculateScores, 150);
+  });
 });
 stateSelect.addEventListener("change", updateStateInfo);
 
-fetch("resilience_data.json")
-  .then(res => res.json())
-  .then(json => {
-    data = json;
-    calculateScores();
-  });
\ No newline at end of file
+calculateScores();
@@ -0,0 +1,32 @@
+package com.example.resilience.config;
+
+import com.example.resilience.service.StubBedrockRuntimeAsyncClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+
+/**
+ * Bedrock client wiring. The async client keeps model calls off servlet threads; responses and
+ * streamed chunks arrive on the SDK's event loop. bedrock.stub=true swaps in
+ * {@link StubBedrockRuntimeAsyncClient} so the AI endpoints can be exercised without AWS credentials.
+ */
+@Configuration
+public class BedrockConfig {
+
+    @Bean(destroyMethod = "close")
+    BedrockRuntimeAsyncClient bedrockRuntimeAsyncClient(@Value("${bedrock.region:us-east-1}") String region,
+                                                        @Value("${bedrock.stub:false}") boolean stub,
+                                                        @Value("${bedrock.stub-latency-ms:0}") long stubLatencyMs) {
+        if (stub) {
+            System.out.println("BedrockConfig: Using stub Bedrock client (bedrock.stub=true)");
+            return new StubBedrockRuntimeAsyncClient(stubLatencyMs, Region.of(region));
+        }
+        return BedrockRuntimeAsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .build();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.resilience.controller;
+
+import com.example.resilience.model.AggregateGroup;
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.service.AggregationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Population-weighted roll-ups of the county data by state, Census region or custom group.
+ */
+@RestController
+@RequestMapping("/api/aggregates")
+public class AggregationController {
+
+    /** Request body: optional "weights" as for /api/scores, and the groups to roll up. */
+    public record GroupRequest(Map<String, Object> weights, List<AggregateGroup> groups) {
+    }
+
+    private final AggregationService aggregationService;
+
+    public AggregationController(AggregationService aggregationService) {
+        this.aggregationService = aggregationService;
+    }
+
+    /** e.g. /api/aggregates/states?weights=0.4,0.3,0.2,0.1 */
+    @GetMapping("/states")
+    public ResponseEntity<?> states(@RequestParam(required = false) String weights) {
+        try {
+            return ResponseEntity.ok(aggregationService.states(ScoreWeights.parse(weights)));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @GetMapping("/regions")
+    public ResponseEntity<?> regions(@RequestParam(required = false) String weights) {
+        try {
+            return ResponseEntity.ok(aggregationService.regions(ScoreWeights.parse(weights)));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    /**
+     * e.g. {"groups": [{"name": "Carolinas", "states": ["NC", "SC"]}, {"name": "Triangle",
+     * "countyIds": [37063, 37135, 37183]}, {"name": "Sun Belt", "regions": ["SOUTH"], "states": ["AZ"]}]}
+     */
+    @PostMapping("/groups")
+    public ResponseEntity<?> groups(@RequestBody GroupRequest request) {
+        try {
+            ScoreWeights w = ScoreWeights.fromMap(request.weights());
+            return ResponseEntity.ok(aggregationService.groups(w, request.groups()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+}
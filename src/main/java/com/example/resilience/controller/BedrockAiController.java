@@ -1,14 +1,26 @@
 package com.example.resilience.controller;
 
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.service.AiBatchService;
+import com.example.resilience.service.AiUnavailableException;
 import com.example.resilience.service.BedrockAiService;
-import com.example.resilience.service.ResilienceService;
-import com.example.resilience.model.County;
+import com.example.resilience.service.PromptContextService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/ai")
@@ -16,111 +28,218 @@ import java.util.stream.Collectors;
 public class BedrockAiController {
 
     private final BedrockAiService bedrockAiService;
-    private final ResilienceService resilienceService;
-
-    public BedrockAiController(BedrockAiService bedrockAiService, ResilienceService resilienceService) {
+    private final PromptContextService promptContextService;
+    private final AiBatchService aiBatchService;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final long streamTimeoutMs;
+    private final int batchMaxItems;
+    private final long batchTimeoutMs;
+
+    public BedrockAiController(BedrockAiService bedrockAiService, PromptContextService promptContextService,
+                               AiBatchService aiBatchService,
+                               @Value("${bedrock.stream-timeout-ms:120000}") long streamTimeoutMs,
+                               @Value("${bedrock.batch.max-items:5000}") int batchMaxItems,
+                               @Value("${bedrock.batch.timeout-ms:3600000}") long batchTimeoutMs) {
         this.bedrockAiService = bedrockAiService;
-        this.resilienceService = resilienceService;
+        this.promptContextService = promptContextService;
+        this.aiBatchService = aiBatchService;
+        this.streamTimeoutMs = streamTimeoutMs;
+        this.batchMaxItems = batchMaxItems;
+        this.batchTimeoutMs = batchTimeoutMs;
+    }
+
+    /** Prompt ready to send, or the reason the request was rejected. */
+    private record PreparedPrompt(String prompt, ScoreWeights weights, String error) {
     }
 
+    /**
+     * Returns a future so the servlet thread is released while the model runs; Spring writes the
+     * response when it completes. When the AI path is unavailable the status says why (429, 502,
+     * 503, 504, or the 4xx Bedrock rejected the request with) and the body still carries a reply:
+     * an older cached answer or a data-only summary.
+     */
     @PostMapping(value = "/query", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public Map<String, Object> query(@RequestBody Map<String, Object> payload) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> query(@RequestBody Map<String, Object> payload) {
+        PreparedPrompt prepared = prepare(payload);
+        if (prepared.error() != null) {
+            return CompletableFuture.completedFuture(ResponseEntity.ok(Map.of("reply", prepared.error())));
+        }
+        return bedrockAiService.generateAsync(prepared.prompt())
+                .thenApply(reply -> ResponseEntity.ok(Map.<String, Object>of(
+                        "reply", reply,
+                        "model", "bedrock:" + bedrockAiService.modelId(),
+                        "length", reply.length()
+                )))
+                .exceptionally(ex -> degraded(ex, prepared.weights()));
+    }
+
+    /**
+     * Same request body as /query, answered as Server-Sent Events: one "token" event per text
+     * fragment as the model produces it, then "done" (with the full length) or "error".
+     */
+    @PostMapping(value = "/query/stream", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> queryStream(@RequestBody Map<String, Object> payload) {
+        PreparedPrompt prepared = prepare(payload);
+        if (prepared.error() == null && bedrockAiService.isCircuitOpen()) {
+            // Fail fast with a real status while the breaker is open. The body is JSON, which no
+            // converter writes as text/event-stream, so the content type is set explicitly.
+            ResponseEntity<Map<String, Object>> fallback = degraded(
+                    new AiUnavailableException(503, "AI service temporarily unavailable (circuit open)", 0),
+                    prepared.weights());
+            return ResponseEntity.status(fallback.getStatusCode()).headers(fallback.getHeaders())
+                    .contentType(MediaType.APPLICATION_JSON).body(fallback.getBody());
+        }
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        if (prepared.error() != null) {
+            send(emitter, "error", prepared.error());
+            emitter.complete();
+            return ResponseEntity.ok(emitter);
+        }
+        bedrockAiService.stream(prepared.prompt(), token -> send(emitter, "token", token))
+                .whenComplete((reply, ex) -> {
+                    if (ex != null) {
+                        send(emitter, "error", degraded(ex, prepared.weights()).getBody());
+                    } else {
+                        send(emitter, "done", Map.of("model", "bedrock:" + bedrockAiService.modelId(), "length", reply.length()));
+                    }
+                    emitter.complete();
+                });
+        return ResponseEntity.ok(emitter);
+    }
+
+    /** Hit/miss counters and size of the model response cache. */
+    @GetMapping(value = "/cache/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> cacheStats() {
+        return bedrockAiService.cacheStats();
+    }
+
+    /** Concurrency limit, queue depth, breaker state and failure counters of the AI bulkhead. */
+    @GetMapping(value = "/guard/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> guardStats() {
+        return bedrockAiService.guardStats();
+    }
+
+    /**
+     * Many prompts in one request: {"countyIds": [...]} for per-county narratives and/or
+     * {"prompts": [...]}, with optional "weights". The dataset context is built once for the whole
+     * batch. Streams one JSON object per line (NDJSON) as items finish, in completion order and
+     * tagged with their "index", then a summary line with "done": true.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> batch(@RequestBody Map<String, Object> payload) {
+        ScoreWeights weights;
+        List<AiBatchService.Item> items = new ArrayList<>();
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> w = (Map<String, Object>) payload.get("weights");
+            weights = ScoreWeights.fromMap(w);
+            if (payload.get("countyIds") instanceof List<?> ids) {
+                for (Object id : ids) {
+                    if (!(id instanceof Number n)) throw new IllegalArgumentException("countyIds must be numbers");
+                    items.add(new AiBatchService.Item(n.longValue(), null));
+                }
+            }
+            if (payload.get("prompts") instanceof List<?> prompts) {
+                for (Object p : prompts) {
+                    String prompt = p == null ? "" : p.toString().trim();
+                    if (prompt.isEmpty()) throw new IllegalArgumentException("prompts must not be empty");
+                    items.add(new AiBatchService.Item(null, prompt));
+                }
+            }
+        } catch (ClassCastException | IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid batch: " + ex.getMessage()));
+        }
+        if (items.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Provide countyIds and/or prompts"));
+        }
+        if (items.size() > batchMaxItems) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At most " + batchMaxItems + " items per batch"));
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeoutMs);
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onTimeout(() -> open.set(false));
+        emitter.onError(e -> open.set(false));
+        emitter.onCompletion(() -> open.set(false));
+        aiBatchService.run(weights, items, line -> open.get() && sendLine(emitter, line))
+                .whenComplete((summary, ex) -> {
+                    if (summary != null && open.get()) sendLine(emitter, summary);
+                    emitter.complete();
+                });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    /** Writes one NDJSON line; false once the client is gone. */
+    private boolean sendLine(ResponseBodyEmitter emitter, Map<String, Object> line) {
+        try {
+            String json = mapper.writeValueAsString(line) + "\n";
+            synchronized (emitter) {
+                emitter.send(json, MediaType.APPLICATION_NDJSON);
+            }
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> degraded(Throwable ex, ScoreWeights weights) {
+        Throwable cause = ex;
+        while (!(cause instanceof AiUnavailableException) && cause.getCause() != null) cause = cause.getCause();
+        AiUnavailableException failure = cause instanceof AiUnavailableException u ? u
+                : new AiUnavailableException(502, "Error calling Bedrock: " + rootMessage(ex), 0);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("reply", failure.fallback() != null ? failure.fallback() : promptContextService.degradedAnswer(weights));
+        body.put("degraded", true);
+        body.put("source", failure.fallback() != null ? "stale-cache" : "data-summary");
+        body.put("error", failure.getMessage());
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(failure.status());
+        if (failure.retryAfterSeconds() > 0) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(failure.retryAfterSeconds()));
+        }
+        return response.body(body);
+    }
+
+    private PreparedPrompt prepare(Map<String, Object> payload) {
         Object p = payload.get("prompt");
         String userPrompt = p == null ? "" : p.toString().trim();
         if (userPrompt.isEmpty()) {
-            return Map.of("reply", "Prompt is empty.");
+            return new PreparedPrompt(null, null, "Prompt is empty.");
         }
 
         // Get current weights from request or use defaults
-        @SuppressWarnings("unchecked")
-        Map<String, Double> weights = (Map<String, Double>) payload.getOrDefault("weights", Map.of(
-            "income", 0.5,
-            "unemployment", 0.25,
-            "cost", 0.15,
-            "disaster", 0.10
-        ));
-
-        // Build context with current data
-        String context = buildDataContext(weights);
-        
+        ScoreWeights weights;
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> w = (Map<String, Object>) payload.get("weights");
+            weights = ScoreWeights.fromMap(w);
+        } catch (ClassCastException | IllegalArgumentException ex) {
+            return new PreparedPrompt(null, null, "Invalid weights: " + ex.getMessage());
+        }
+
+        // Build context with current data, including the counties and states the question names
+        String context = promptContextService.context(weights, userPrompt);
+
         // Combine context with user's question
-        String fullPrompt = context + "\n\nUser question: " + userPrompt + 
+        String fullPrompt = context + "\n\nUser question: " + userPrompt +
                           "\n\nProvide a clear, concise answer based on the data above.";
-
-        String reply = bedrockAiService.generate(fullPrompt);
-        
-        return Map.of(
-                "reply", reply,
-                "model", "bedrock:" + System.getProperty("bedrock.modelId", "titan-text-express"),
-                "length", reply.length()
-        );
+        return new PreparedPrompt(fullPrompt, weights, null);
     }
 
-    private String buildDataContext(Map<String, Double> weights) {
-        List<County> counties = resilienceService.getAll().values().stream()
-            .collect(Collectors.toList());
-        
-        // Get top 10 and bottom 10 by score
-        List<County> sortedByScore = counties.stream()
-            .sorted((a, b) -> Double.compare(
-                resilienceService.scoreCounty(b),
-                resilienceService.scoreCounty(a)
-            ))
-            .collect(Collectors.toList());
-
-        List<County> top10 = sortedByScore.stream().limit(10).collect(Collectors.toList());
-        List<County> bottom10 = sortedByScore.stream()
-            .skip(Math.max(0, sortedByScore.size() - 10))
-            .collect(Collectors.toList());
-
-        // Calculate statistics
-        double avgScore = counties.stream()
-            .mapToDouble(resilienceService::scoreCounty)
-            .average()
-            .orElse(0.0);
-        
-        double avgIncome = counties.stream()
-            .mapToDouble(County::getMedianIncome)
-            .average()
-            .orElse(0.0);
-
-        StringBuilder context = new StringBuilder();
-        context.append("You are analyzing North Carolina county financial resilience data. Here is the current dataset:\n\n");
-        
-        context.append("SCORING FORMULA:\n");
-        context.append(String.format("- Income weight: %.0f%%\n", weights.get("income") * 100));
-        context.append(String.format("- Unemployment weight: %.0f%%\n", weights.get("unemployment") * 100));
-        context.append(String.format("- Cost of Living weight: %.0f%%\n", weights.get("cost") * 100));
-        context.append(String.format("- Disaster Risk weight: %.0f%%\n", weights.get("disaster") * 100));
-        context.append("Population penalty: -5% for counties under 10,000; -8% for under 2,000\n\n");
-
-        context.append("DATASET STATISTICS:\n");
-        context.append(String.format("- Total counties: %d\n", counties.size()));
-        context.append(String.format("- Average resilience score: %.3f (out of 1.0)\n", avgScore));
-        context.append(String.format("- Average normalized median income: %.3f\n", avgIncome));
-        context.append("\n");
-
-        context.append("TOP 10 MOST RESILIENT COUNTIES:\n");
-        for (int i = 0; i < top10.size(); i++) {
-            County c = top10.get(i);
-            double score = resilienceService.scoreCounty(c);
-            context.append(String.format("%d. %s - Score: %.3f (Pop: %,d, Income: %.3f, Unemployment: %.3f, Cost: %.3f, Disaster: %.3f)\n",
-                i + 1, c.getName(), score, c.getPopulation(), 
-                c.getMedianIncome(), c.getUnemploymentRate(), 
-                c.getCostOfLivingIndex(), c.getDisasterRisk()));
-        }
-        context.append("\n");
-
-        context.append("BOTTOM 10 LEAST RESILIENT COUNTIES:\n");
-        for (int i = 0; i < bottom10.size(); i++) {
-            County c = bottom10.get(i);
-            double score = resilienceService.scoreCounty(c);
-            context.append(String.format("%d. %s - Score: %.3f (Pop: %,d, Income: %.3f, Unemployment: %.3f, Cost: %.3f, Disaster: %.3f)\n",
-                i + 1, c.getName(), score, c.getPopulation(),
-                c.getMedianIncome(), c.getUnemploymentRate(),
-                c.getCostOfLivingIndex(), c.getDisasterRisk()));
+    /** Emitter sends come from SDK callback threads; a client that has gone away is not an error here. */
+    private static void send(SseEmitter emitter, String event, Object data) {
+        try {
+            synchronized (emitter) {
+                emitter.send(SseEmitter.event().name(event).data(data));
+            }
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
         }
+    }
 
-        return context.toString();
+    private static String rootMessage(Throwable t) {
+        while (t.getCause() != null) t = t.getCause();
+        return t.getMessage();
     }
 }
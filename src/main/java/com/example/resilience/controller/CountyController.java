@@ -1,11 +1,19 @@
 package com.example.resilience.controller;
 
 import com.example.resilience.model.County;
+import com.example.resilience.model.RankedCounty;
+import com.example.resilience.model.ScoreExplanation;
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.service.CountyBulkService;
+import com.example.resilience.service.CountyRow;
+import com.example.resilience.service.Dataset;
 import com.example.resilience.service.ResilienceService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Collection;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -13,14 +21,16 @@ import java.util.Map;
 public class CountyController {
 
     private final ResilienceService service;
+    private final CountyBulkService bulkService;
 
-    public CountyController(ResilienceService service) {
+    public CountyController(ResilienceService service, CountyBulkService bulkService) {
         this.service = service;
+        this.bulkService = bulkService;
     }
 
     @GetMapping("/counties")
-    public Collection<County> list() {
-        return service.getAll().values();
+    public List<CountyRow> list() {
+        return service.rows();
     }
 
     @GetMapping("/counties/{id}")
@@ -30,29 +40,89 @@ public class CountyController {
         return ResponseEntity.ok(c);
     }
 
+    /**
+     * Creates or replaces one county. Income and cost of living may be sent raw (medianIncomeRaw,
+     * costOfLivingRaw) and are then normalized on the dataset's current scale.
+     */
     @PostMapping("/counties")
-    public ResponseEntity<County> createOrUpdate(@RequestBody County county) {
-        if (county == null || county.getId() == null) {
-            // For simplicity require an id; clients can generate a numeric id or we can extend to assign one.
-            return ResponseEntity.badRequest().build();
+    public ResponseEntity<Object> createOrUpdate(@RequestBody County county) {
+        // For simplicity require an id; clients can generate a numeric id or we can extend to assign one.
+        String error = county == null ? "County required" : CountyBulkService.validate(county);
+        if (error != null) return ResponseEntity.badRequest().body(Map.of("error", error));
+        Dataset dataset = service.saveCounties(List.of(county));
+        return ResponseEntity.ok(dataset.findRow(county.getId()));
+    }
+
+    /**
+     * Upserts many counties in one dataset generation. The body is a JSON array of counties or
+     * NDJSON, one county per line. Invalid rows are listed in "errors" and skipped; the rest are applied.
+     */
+    @PostMapping("/counties/bulk")
+    public ResponseEntity<Object> bulkUpsert(InputStream body) throws IOException {
+        try {
+            return ResponseEntity.ok(bulkService.upsert(body));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
         }
-        service.saveCounty(county);
-        return ResponseEntity.ok(county);
     }
 
     @GetMapping("/score/{id}")
     public ResponseEntity<Map<String, Object>> score(@PathVariable Long id) {
         County c = service.findById(id);
         if (c == null) return ResponseEntity.notFound().build();
-        double s = service.scoreCounty(c);
-        String explanation = service.explain(c);
-        return ResponseEntity.ok(Map.of("score", s, "explanation", explanation, "county", c));
+        ScoreExplanation explanation = service.explain(c);
+        return ResponseEntity.ok(Map.of("score", explanation.score(), "explanation", explanation, "county", c));
     }
 
     @PostMapping("/score")
     public ResponseEntity<Map<String,Object>> scorePayload(@RequestBody County c) {
-        double s = service.scoreCounty(c);
-        String explanation = service.explain(c);
-        return ResponseEntity.ok(Map.of("score", s, "explanation", explanation, "county", c));
+        ScoreExplanation explanation = service.explain(c);
+        return ResponseEntity.ok(Map.of("score", explanation.score(), "explanation", explanation, "county", c));
+    }
+
+    /**
+     * Batch scoring with caller-supplied weights, e.g. {"income":0.4,"unemployment":0.3,"cost":0.2,"disaster":0.1}.
+     * Optional keys smallPopulation/smallPenalty/tinyPopulation/tinyPenalty override the population penalty.
+     * Returns parallel id and score arrays in store order.
+     */
+    @PostMapping("/scores")
+    public ResponseEntity<Map<String, Object>> scoreAll(@RequestBody(required = false) Map<String, Object> payload) {
+        ScoreWeights w;
+        try {
+            w = ScoreWeights.fromMap(payload);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+        // ids and scores must come from the same generation to line up
+        Dataset dataset = service.dataset();
+        long[] ids = dataset.ids();
+        double[] scores = dataset.scoreAll(w);
+        return ResponseEntity.ok(Map.of("ids", ids, "scores", scores, "weights", w));
+    }
+
+    /**
+     * Top-k or bottom-k counties from the precomputed ranking, e.g.
+     * /api/rankings?k=10&order=bottom&weights=0.4,0.3,0.2,0.1. k is capped at 100.
+     */
+    @GetMapping("/rankings")
+    public ResponseEntity<Map<String, Object>> rankings(@RequestParam(defaultValue = "10") int k,
+                                                        @RequestParam(defaultValue = "top") String order,
+                                                        @RequestParam(required = false) String weights) {
+        ScoreWeights w;
+        try {
+            w = ScoreWeights.parse(weights);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+        int limit = Math.max(0, Math.min(k, 100));
+        List<RankedCounty> counties;
+        if ("top".equalsIgnoreCase(order)) {
+            counties = service.top(w, limit);
+        } else if ("bottom".equalsIgnoreCase(order)) {
+            counties = service.bottom(w, limit);
+        } else {
+            return ResponseEntity.badRequest().body(Map.of("error", "order must be 'top' or 'bottom'"));
+        }
+        return ResponseEntity.ok(Map.of("order", order.toLowerCase(), "weights", w, "counties", counties));
     }
 }
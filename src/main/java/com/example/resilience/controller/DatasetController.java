@@ -0,0 +1,52 @@
+package com.example.resilience.controller;
+
+import com.example.resilience.service.Dataset;
+import com.example.resilience.service.DatasetReloadService;
+import com.example.resilience.service.ResilienceService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Which dataset generation is live, and a trigger to rebuild it from the Census API.
+ */
+@RestController
+@RequestMapping("/api/dataset")
+public class DatasetController {
+
+    private final ResilienceService resilienceService;
+    private final DatasetReloadService reloadService;
+
+    public DatasetController(ResilienceService resilienceService, DatasetReloadService reloadService) {
+        this.resilienceService = resilienceService;
+        this.reloadService = reloadService;
+    }
+
+    @GetMapping("/version")
+    public Map<String, Object> version() {
+        return describe(resilienceService.dataset());
+    }
+
+    /** Starts a background reload (or joins the running one); poll /version to see it land. */
+    @PostMapping("/reload")
+    public ResponseEntity<Map<String, Object>> reload() {
+        reloadService.reload();
+        return ResponseEntity.accepted().body(describe(resilienceService.dataset()));
+    }
+
+    private Map<String, Object> describe(Dataset dataset) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("generation", dataset.generation());
+        body.put("counties", dataset.size());
+        body.put("source", dataset.source());
+        body.put("loadedAt", Instant.ofEpochMilli(dataset.createdAt()).toString());
+        body.put("reloading", reloadService.isReloading());
+        return body;
+    }
+}
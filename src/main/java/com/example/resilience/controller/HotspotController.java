@@ -0,0 +1,48 @@
+package com.example.resilience.controller;
+
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.service.HotspotService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Regional clusters of high and low resilience: global Moran's I and per-county Gi* hot and cold spots.
+ */
+@RestController
+@RequestMapping("/api")
+public class HotspotController {
+
+    private final HotspotService hotspotService;
+
+    public HotspotController(HotspotService hotspotService) {
+        this.hotspotService = hotspotService;
+    }
+
+    /**
+     * e.g. /api/hotspots?cluster=cold&permutations=999&alpha=0.05 or
+     * /api/hotspots?spatialWeights=distance&miles=75&cluster=all&limit=0
+     * The seed is fixed by default so repeated calls return (cached) identical results.
+     */
+    @GetMapping("/hotspots")
+    public ResponseEntity<?> hotspots(@RequestParam(defaultValue = "contiguity") String spatialWeights,
+                                      @RequestParam(defaultValue = "100") double miles,
+                                      @RequestParam(defaultValue = "999") int permutations,
+                                      @RequestParam(defaultValue = "42") long seed,
+                                      @RequestParam(defaultValue = "0.05") double alpha,
+                                      @RequestParam(defaultValue = "significant") String cluster,
+                                      @RequestParam(defaultValue = "100") int limit,
+                                      @RequestParam(required = false) String weights) {
+        try {
+            ScoreWeights w = ScoreWeights.parse(weights);
+            return ResponseEntity.ok(hotspotService.analyze(w, spatialWeights, miles, permutations, seed, alpha,
+                    cluster, limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+}
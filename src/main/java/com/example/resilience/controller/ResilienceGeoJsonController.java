@@ -1,99 +1,147 @@
 package com.example.resilience.controller;
 
-import com.example.resilience.model.County;
+import com.example.resilience.model.CountyShape;
+import com.example.resilience.model.GeometryDetail;
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.service.CountyGeometryService;
+import com.example.resilience.service.CountyGeometryService.GeometrySet;
+import com.example.resilience.service.CountyJoin;
+import com.example.resilience.service.CountyRow;
+import com.example.resilience.service.HotspotService;
 import com.example.resilience.service.ResilienceService;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
- * Provides a single enriched GeoJSON combining NCDOT county polygons with
+ * Provides a single enriched GeoJSON combining cached county polygons with
  * resilience metrics (population, normalized income, unemployment, cost, disaster risk, score).
+ * Features carry the 5-digit FIPS code as their id and, when joined, the county's id as
+ * countyId, which is what the dashboard matches its scores on.
+ *
+ * The response is streamed feature by feature: geometry is copied from the bytes
+ * {@link CountyGeometryService} serialized at load time, and only the small properties
+ * object is generated per request. {@code ?detail=low|medium|full} picks a precomputed
+ * simplification tier (default full). {@code ?hotspots=true} adds each county's Gi* z-score,
+ * pseudo p-value and hot/cold classification from {@link HotspotService} (default weights).
  */
 @RestController
 @RequestMapping("/api")
 public class ResilienceGeoJsonController {
 
-    private static final String NCDOT_GEOJSON_URL = "https://gis11.services.ncdot.gov/arcgis/rest/services/NCDOT_CountyBdy_Poly/MapServer/0/query?outFields=*&where=1%3D1&f=geojson";
-
-    private final RestTemplate restTemplate;
+    private final CountyGeometryService geometryService;
     private final ResilienceService resilienceService;
+    private final HotspotService hotspotService;
+    private final JsonFactory jsonFactory = new ObjectMapper().getFactory();
 
-    public ResilienceGeoJsonController(ResilienceService resilienceService) {
+    public ResilienceGeoJsonController(CountyGeometryService geometryService, ResilienceService resilienceService,
+                                       HotspotService hotspotService) {
+        this.geometryService = geometryService;
         this.resilienceService = resilienceService;
-        // Configure RestTemplate with longer timeouts
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(30000); // 30 seconds
-        factory.setReadTimeout(30000);    // 30 seconds
-        this.restTemplate = new RestTemplate(factory);
+        this.hotspotService = hotspotService;
     }
 
     @GetMapping(value = "/resilience-geojson", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Map<String, Object>> getEnrichedGeoJson() {
-        Map<String, Object> base;
+    public ResponseEntity<?> getEnrichedGeoJson(@RequestParam(required = false) String detail,
+                                                @RequestParam(defaultValue = "false") boolean hotspots) {
+        GeometryDetail tier;
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> tmp = restTemplate.getForObject(NCDOT_GEOJSON_URL, Map.class);
-            base = tmp;
-        } catch (Exception ex) {
-            return ResponseEntity.status(502).body(error("Failed to fetch NCDOT GeoJSON: " + ex.getMessage()));
+            tier = GeometryDetail.parse(detail);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
         }
-        if (base == null || !"FeatureCollection".equals(base.get("type"))) {
-            return ResponseEntity.status(502).body(error("Invalid base GeoJSON from NCDOT"));
+        GeometrySet geometry = geometryService.current();
+        if (geometry.shapes().isEmpty()) {
+            return ResponseEntity.status(503).body(Map.of("error", "County geometry not loaded"));
         }
 
-        @SuppressWarnings("unchecked")
-        List<Map<String, Object>> features = (List<Map<String, Object>>) base.get("features");
-        if (features == null) {
-            return ResponseEntity.status(502).body(error("Missing features array"));
+        CountyJoin join = new CountyJoin(resilienceService.dataset());
+        Map<Long, HotspotService.Spot> spots;
+        try {
+            spots = hotspots ? hotspotService.spots(ScoreWeights.DEFAULT) : Map.of();
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
         }
+        StreamingResponseBody body = out -> writeFeatureCollection(out, geometry, tier, join, spots);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
 
-        // Build lookup of county metrics keyed by upper-case CountyName sans " County"
-        Map<String, County> countyByName = resilienceService.getAll().values().stream()
-                .collect(Collectors.toMap(
-                        c -> c.getName().replace(" County", "").trim().toUpperCase(),
-                        c -> c
-                ));
-
-        for (Map<String, Object> feature : features) {
-            @SuppressWarnings("unchecked") Map<String, Object> props = (Map<String, Object>) feature.get("properties");
-            if (props == null) continue;
-            Object rawName = props.get("CountyName");
-            if (rawName == null) continue;
-            String key = rawName.toString().trim().toUpperCase();
-            County c = countyByName.get(key);
-            if (c != null) {
-                double score = resilienceService.scoreCounty(c);
-                props.put("population", c.getPopulation());
-                props.put("medianIncome", c.getMedianIncome());
-                props.put("unemploymentRate", c.getUnemploymentRate());
-                props.put("costOfLivingIndex", c.getCostOfLivingIndex());
-                props.put("disasterRisk", c.getDisasterRisk());
-                props.put("resilienceScore", score);
-            } else {
-                props.put("resilienceScore", 0.0);
+    private void writeFeatureCollection(OutputStream out, GeometrySet geometry, GeometryDetail tier,
+                                        CountyJoin join, Map<Long, HotspotService.Spot> spots) throws IOException {
+        List<CountyShape> shapes = geometry.shapes();
+        List<byte[]> geometryJson = geometry.geometryJson(tier);
+        try (JsonGenerator gen = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeStringField("type", "FeatureCollection");
+            gen.writeStringField("source", "County boundaries (" + geometry.source() + ") + Census ACS (enriched)");
+            gen.writeStringField("detail", tier.name().toLowerCase());
+            gen.writeArrayFieldStart("features");
+            for (int i = 0; i < shapes.size(); i++) {
+                CountyShape shape = shapes.get(i);
+                gen.writeStartObject();
+                gen.writeStringField("type", "Feature");
+                if (shape.fips() > 0) gen.writeNumberField("id", shape.fips());
+                CountyRow row = join.rowFor(shape);
+                writeProperties(gen, shape, row, row == null ? null : spots.get(row.getId()));
+                // Splice the cached geometry bytes in verbatim. writeRaw bypasses the generator's
+                // field/value bookkeeping, which is fine because "geometry" is the feature's last field.
+                gen.writeRaw(",\"geometry\":");
+                gen.flush();
+                out.write(geometryJson.get(i));
+                gen.writeEndObject();
             }
+            gen.writeEndArray();
+            gen.writeEndObject();
         }
+    }
 
-        Map<String, Object> enriched = new HashMap<>();
-        enriched.put("type", "FeatureCollection");
-        enriched.put("features", features);
-        enriched.put("source", "NCDOT + Census ACS (enriched)");
-        return ResponseEntity.ok(enriched);
+    private void writeProperties(JsonGenerator gen, CountyShape shape, CountyRow c, HotspotService.Spot spot)
+            throws IOException {
+        gen.writeObjectFieldStart("properties");
+        for (Map.Entry<String, Object> e : shape.baseProperties().entrySet()) {
+            Object v = e.getValue();
+            if (v == null) gen.writeNullField(e.getKey());
+            else if (v instanceof Number n) writeNumberField(gen, e.getKey(), n);
+            else gen.writeStringField(e.getKey(), v.toString());
+        }
+        if (!shape.baseProperties().containsKey("CountyName")) {
+            gen.writeStringField("CountyName", shape.name());
+        }
+        if (c != null) {
+            gen.writeNumberField("countyId", c.getId());
+            gen.writeNumberField("population", c.getPopulation());
+            gen.writeNumberField("medianIncome", c.getMedianIncome());
+            gen.writeNumberField("unemploymentRate", c.getUnemploymentRate());
+            gen.writeNumberField("costOfLivingIndex", c.getCostOfLivingIndex());
+            gen.writeNumberField("disasterRisk", c.getDisasterRisk());
+            gen.writeNumberField("resilienceScore", resilienceService.scoreRow(c));
+        } else {
+            gen.writeNumberField("resilienceScore", 0.0);
+        }
+        if (spot != null && spot.giZScore() != null) {
+            gen.writeNumberField("giZScore", spot.giZScore());
+            gen.writeNumberField("giPValue", spot.pValue());
+            gen.writeStringField("hotspot", spot.cluster());
+        }
+        gen.writeEndObject();
     }
 
-    private Map<String, Object> error(String msg) {
-        Map<String, Object> e = new HashMap<>();
-        e.put("error", msg);
-        return e;
+    private static void writeNumberField(JsonGenerator gen, String name, Number n) throws IOException {
+        gen.writeFieldName(name);
+        if (n instanceof Integer || n instanceof Long || n instanceof Short) gen.writeNumber(n.longValue());
+        else gen.writeNumber(n.doubleValue());
     }
 }
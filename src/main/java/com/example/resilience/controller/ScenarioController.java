@@ -0,0 +1,51 @@
+package com.example.resilience.controller;
+
+import com.example.resilience.model.Scenario;
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.service.ScenarioService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What-if scenarios over the live dataset, evaluated on a copy so nothing is modified.
+ */
+@RestController
+@RequestMapping("/api")
+public class ScenarioController {
+
+    /**
+     * Request body: optional "weights" as for /api/scores, "k" (top and movers list length,
+     * default 10), "full" (also return every county's score and rank change) and the scenarios.
+     */
+    public record ScenarioRequest(Map<String, Object> weights, Integer k, Boolean full, List<Scenario> scenarios) {
+    }
+
+    private final ScenarioService scenarioService;
+
+    public ScenarioController(ScenarioService scenarioService) {
+        this.scenarioService = scenarioService;
+    }
+
+    /**
+     * e.g. {"scenarios": [{"name": "NC unemployment +2pt", "perturbations": [{"field": "unemploymentRate",
+     * "add": 0.02, "states": ["NC"]}]}, {"name": "South disaster x2", "perturbations": [{"field":
+     * "disasterRisk", "multiply": 2, "regions": ["SOUTH"]}]}]}
+     */
+    @PostMapping("/scenarios")
+    public ResponseEntity<?> scenarios(@RequestBody ScenarioRequest request) {
+        try {
+            ScoreWeights w = ScoreWeights.fromMap(request.weights());
+            int k = request.k() == null ? 10 : request.k();
+            boolean full = Boolean.TRUE.equals(request.full());
+            return ResponseEntity.ok(scenarioService.run(w, request.scenarios(), k, full));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+}
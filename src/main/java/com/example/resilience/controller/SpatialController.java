@@ -0,0 +1,80 @@
+package com.example.resilience.controller;
+
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.service.SpatialService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Spatial queries over the county geometry: neighbours, radius and bounding box, each county
+ * returned with its score and rank under the requested weights.
+ */
+@RestController
+@RequestMapping("/api/counties")
+public class SpatialController {
+
+    private final SpatialService spatialService;
+
+    public SpatialController(SpatialService spatialService) {
+        this.spatialService = spatialService;
+    }
+
+    /** Counties sharing a border with this one, and its score relative to theirs. */
+    @GetMapping("/{id}/neighbors")
+    public ResponseEntity<?> neighbors(@PathVariable long id, @RequestParam(required = false) String weights) {
+        try {
+            SpatialService.Neighbors result = spatialService.neighbors(id, ScoreWeights.parse(weights));
+            if (result == null) return ResponseEntity.notFound().build();
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Counties within a radius of a point or of a county's centroid, e.g.
+     * /api/counties/radius?lat=34.23&lon=-77.94&miles=50 or /api/counties/radius?id=37129&miles=50&sort=distance
+     */
+    @GetMapping("/radius")
+    public ResponseEntity<?> radius(@RequestParam(required = false) Double lat,
+                                    @RequestParam(required = false) Double lon,
+                                    @RequestParam(required = false) Long id,
+                                    @RequestParam(defaultValue = "50") double miles,
+                                    @RequestParam(defaultValue = "score") String sort,
+                                    @RequestParam(defaultValue = "50") int limit,
+                                    @RequestParam(required = false) String weights) {
+        try {
+            ScoreWeights w = ScoreWeights.parse(weights);
+            if (id != null) {
+                double[] centre = spatialService.centroid(id);
+                if (centre == null) return ResponseEntity.notFound().build();
+                return ResponseEntity.ok(spatialService.radius(centre[1], centre[0], miles, w, sort, limit));
+            }
+            if (lat == null || lon == null) throw new IllegalArgumentException("Give lat and lon, or id");
+            return ResponseEntity.ok(spatialService.radius(lat, lon, miles, w, sort, limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    /** Counties whose bounding box intersects the box, e.g. /api/counties/bbox?minLon=-80&minLat=35&maxLon=-78&maxLat=36.5 */
+    @GetMapping("/bbox")
+    public ResponseEntity<?> bbox(@RequestParam double minLon, @RequestParam double minLat,
+                                  @RequestParam double maxLon, @RequestParam double maxLat,
+                                  @RequestParam(defaultValue = "score") String sort,
+                                  @RequestParam(defaultValue = "100") int limit,
+                                  @RequestParam(required = false) String weights) {
+        try {
+            return ResponseEntity.ok(spatialService.bbox(minLon, minLat, maxLon, maxLat, ScoreWeights.parse(weights),
+                    sort, limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+}
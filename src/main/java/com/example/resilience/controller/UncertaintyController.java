@@ -0,0 +1,46 @@
+package com.example.resilience.controller;
+
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.service.MonteCarloService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Score confidence intervals and top-k stability from Monte Carlo draws over the ACS margins of error.
+ */
+@RestController
+@RequestMapping("/api")
+public class UncertaintyController {
+
+    private final MonteCarloService monteCarloService;
+
+    public UncertaintyController(MonteCarloService monteCarloService) {
+        this.monteCarloService = monteCarloService;
+    }
+
+    /**
+     * e.g. /api/uncertainty?draws=10000&top=10&confidence=0.9&weights=0.4,0.3,0.2,0.1&ids=37183,37063
+     * The seed is fixed by default so repeated calls return (cached) identical results.
+     */
+    @GetMapping("/uncertainty")
+    public ResponseEntity<?> uncertainty(@RequestParam(defaultValue = "10000") int draws,
+                                         @RequestParam(defaultValue = "10") int top,
+                                         @RequestParam(defaultValue = "0.9") double confidence,
+                                         @RequestParam(defaultValue = "42") long seed,
+                                         @RequestParam(required = false) String weights,
+                                         @RequestParam(required = false) List<Long> ids,
+                                         @RequestParam(defaultValue = "100") int limit) {
+        try {
+            ScoreWeights w = ScoreWeights.parse(weights);
+            return ResponseEntity.ok(monteCarloService.run(w, draws, top, confidence, seed, ids, limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+}
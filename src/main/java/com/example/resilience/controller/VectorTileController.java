@@ -0,0 +1,41 @@
+package com.example.resilience.controller;
+
+import com.example.resilience.service.VectorTileService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Mapbox Vector Tiles of the county layer, so the map only fetches what is in the viewport.
+ * Each feature carries the resilience score and its inputs as attributes.
+ */
+@RestController
+@RequestMapping("/api")
+public class VectorTileController {
+
+    private static final MediaType MVT = MediaType.parseMediaType("application/vnd.mapbox-vector-tile");
+
+    private final VectorTileService tileService;
+
+    public VectorTileController(VectorTileService tileService) {
+        this.tileService = tileService;
+    }
+
+    @GetMapping("/tiles/{z}/{x}/{y}.mvt")
+    public ResponseEntity<byte[]> tile(@PathVariable int z, @PathVariable int x, @PathVariable int y) {
+        byte[] tile;
+        try {
+            tile = tileService.tile(z, x, y);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MVT)
+                .cacheControl(CacheControl.noCache())
+                .body(tile);
+    }
+}
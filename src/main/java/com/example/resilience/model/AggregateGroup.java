@@ -0,0 +1,11 @@
+package com.example.resilience.model;
+
+import java.util.List;
+
+/**
+ * A user-defined set of counties to roll up: every county of the listed states (postal codes or
+ * names) and Census regions, plus the listed county ids, e.g.
+ * {"name": "Carolinas", "states": ["NC", "SC"]} or {"name": "Triangle", "countyIds": [37063, 37135, 37183]}.
+ */
+public record AggregateGroup(String name, List<String> states, List<String> regions, List<Long> countyIds) {
+}
@@ -8,6 +8,14 @@ public class County {
     private double unemploymentRate; // 0-1
     private double costOfLivingIndex; // 0-1
     private double disasterRisk; // 0-1 probability estimate
+    // ACS 90% margins of error, in the same 0-1 units as the values above (0 = unknown)
+    private double medianIncomeMoe;
+    private double unemploymentRateMoe;
+    private double costOfLivingIndexMoe;
+    // Raw inputs behind the min-max normalized fields: household dollars and annual rent / income.
+    // Null when not given (the store derives them from the 0-1 values on its current scale), NaN when unknown.
+    private Double medianIncomeRaw;
+    private Double costOfLivingRaw;
 
     public County() {}
 
@@ -21,6 +29,14 @@ public class County {
         this.disasterRisk = disasterRisk;
     }
 
+    public County(Long id, String name, int population, double medianIncome, double unemploymentRate, double costOfLivingIndex, double disasterRisk,
+                  double medianIncomeMoe, double unemploymentRateMoe, double costOfLivingIndexMoe) {
+        this(id, name, population, medianIncome, unemploymentRate, costOfLivingIndex, disasterRisk);
+        this.medianIncomeMoe = medianIncomeMoe;
+        this.unemploymentRateMoe = unemploymentRateMoe;
+        this.costOfLivingIndexMoe = costOfLivingIndexMoe;
+    }
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     public String getName() { return name; }
@@ -35,4 +51,14 @@ public class County {
     public void setCostOfLivingIndex(double costOfLivingIndex) { this.costOfLivingIndex = costOfLivingIndex; }
     public double getDisasterRisk() { return disasterRisk; }
     public void setDisasterRisk(double disasterRisk) { this.disasterRisk = disasterRisk; }
+    public double getMedianIncomeMoe() { return medianIncomeMoe; }
+    public void setMedianIncomeMoe(double medianIncomeMoe) { this.medianIncomeMoe = medianIncomeMoe; }
+    public double getUnemploymentRateMoe() { return unemploymentRateMoe; }
+    public void setUnemploymentRateMoe(double unemploymentRateMoe) { this.unemploymentRateMoe = unemploymentRateMoe; }
+    public double getCostOfLivingIndexMoe() { return costOfLivingIndexMoe; }
+    public void setCostOfLivingIndexMoe(double costOfLivingIndexMoe) { this.costOfLivingIndexMoe = costOfLivingIndexMoe; }
+    public Double getMedianIncomeRaw() { return medianIncomeRaw; }
+    public void setMedianIncomeRaw(Double medianIncomeRaw) { this.medianIncomeRaw = medianIncomeRaw; }
+    public Double getCostOfLivingRaw() { return costOfLivingRaw; }
+    public void setCostOfLivingRaw(Double costOfLivingRaw) { this.costOfLivingRaw = costOfLivingRaw; }
 }
@@ -0,0 +1,28 @@
+package com.example.resilience.model;
+
+import java.util.Map;
+
+/**
+ * Immutable county outline held by the geometry cache.
+ *
+ * polygons[p][r] is ring r of polygon p (ring 0 is the outer ring) stored as interleaved
+ * lon/lat pairs, which is far smaller than Jackson's nested List<List<List<Double>>>.
+ * baseProperties are the source feature's own attributes; resilience metrics are merged
+ * in per request and never written back here.
+ */
+public record CountyShape(
+        long fips,
+        String name,
+        Map<String, Object> baseProperties,
+        double[][][] polygons,
+        double minLon,
+        double minLat,
+        double maxLon,
+        double maxLat
+) {
+
+    /** Upper-case county name without the " County" suffix, the key the dashboard joins on. */
+    public String joinKey() {
+        return name.replace(" County", "").trim().toUpperCase();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.resilience.model;
+
+/**
+ * Geometry resolution tiers served by the map endpoints. Shapes are simplified once at load
+ * time with shared-border-aware Douglas-Peucker; the LOW and MEDIUM tolerances (degrees) are
+ * geometry.simplify.low-tolerance and geometry.simplify.medium-tolerance.
+ */
+public enum GeometryDetail {
+    LOW,     // ~1 km at the default 0.01, statewide / national views
+    MEDIUM,  // ~200 m at the default 0.002, regional views
+    FULL;    // source resolution
+
+    /** Case-insensitive lookup; null or blank means FULL. */
+    public static GeometryDetail parse(String s) {
+        if (s == null || s.isBlank()) return FULL;
+        try {
+            return valueOf(s.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("detail must be one of low, medium, full");
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.resilience.model;
+
+/**
+ * A county together with its position in a score ranking.
+ * Percentile is the share of other counties ranked below it (0..100).
+ */
+public record RankedCounty(int rank, double percentile, double score, County county) {
+}
@@ -0,0 +1,28 @@
+package com.example.resilience.model;
+
+import java.util.List;
+
+/**
+ * A named what-if: field changes applied to a copy of the dataset before rescoring, e.g.
+ * {"name": "NC unemployment +2pt", "perturbations": [{"field": "unemploymentRate", "add": 0.02, "states": ["NC"]}]}.
+ */
+public record Scenario(String name, List<Perturbation> perturbations) {
+
+    /**
+     * new value = old value * multiply + add, for the counties matching every filter given
+     * (states as postal codes or names, Census regions, explicit county ids); no filter means all.
+     * Fields: medianIncome, unemploymentRate, costOfLivingIndex, disasterRisk, population.
+     * medianIncome and costOfLivingIndex are changed in raw units (dollars, annual rent / income),
+     * so {"multiply": 1.1} is +10% income, and are then renormalized against the perturbed
+     * dataset's range; the other fields are the 0-1 fractions that are scored, clamped when scored.
+     */
+    public record Perturbation(
+            String field,
+            Double add,
+            Double multiply,
+            List<String> states,
+            List<String> regions,
+            List<Long> countyIds
+    ) {
+    }
+}
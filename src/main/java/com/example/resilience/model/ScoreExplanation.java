@@ -0,0 +1,31 @@
+package com.example.resilience.model;
+
+import java.util.List;
+
+/**
+ * Why a county scored what it did: what each weighted factor added, the population penalty,
+ * where the score ranks, and how it compares to the median county of its state.
+ *
+ * weightedSum is the sum of the factor contributions; score is weightedSum minus penalty,
+ * clamped to 0..1. State fields are null when the county id does not identify a state.
+ */
+public record ScoreExplanation(
+        double score,
+        List<Factor> factors,
+        double weightedSum,
+        double penalty,
+        int rank,
+        int rankedCounties,
+        double percentile,
+        String state,
+        Double stateMedianScore,
+        Double deltaToStateMedian
+) {
+
+    /**
+     * One input clamped to 0..1, its weight, and what it added: weight * value for income,
+     * weight * (1 - value) for the factors where lower is better.
+     */
+    public record Factor(String name, double value, double weight, double contribution) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.resilience.model;
+
+import java.util.Map;
+
+/**
+ * Weight vector and small-population penalty thresholds used by the resilience score.
+ * Defaults match the dashboard sliders: income 50%, unemployment 25%, cost 15%, disaster 10%.
+ */
+public record ScoreWeights(
+        double income,
+        double unemployment,
+        double cost,
+        double disaster,
+        int smallPopulation,
+        double smallPenalty,
+        int tinyPopulation,
+        double tinyPenalty
+) {
+
+    public static final ScoreWeights DEFAULT = new ScoreWeights(0.5, 0.25, 0.15, 0.10, 10000, 0.05, 2000, 0.08);
+
+    /** Population penalty for a county of the given size; the tiny tier wins over the small tier. */
+    public double penaltyFor(int population) {
+        if (population < tinyPopulation) return tinyPenalty;
+        if (population < smallPopulation) return smallPenalty;
+        return 0.0;
+    }
+
+    /**
+     * Builds weights from a loose JSON payload (e.g. {"income":0.4,"cost":0.2}).
+     * Missing keys fall back to {@link #DEFAULT}.
+     */
+    public static ScoreWeights fromMap(Map<String, ?> m) {
+        if (m == null || m.isEmpty()) return DEFAULT;
+        ScoreWeights d = DEFAULT;
+        return new ScoreWeights(
+                number(m.get("income"), d.income),
+                number(m.get("unemployment"), d.unemployment),
+                number(m.get("cost"), d.cost),
+                number(m.get("disaster"), d.disaster),
+                (int) number(m.get("smallPopulation"), d.smallPopulation),
+                number(m.get("smallPenalty"), d.smallPenalty),
+                (int) number(m.get("tinyPopulation"), d.tinyPopulation),
+                number(m.get("tinyPenalty"), d.tinyPenalty)
+        );
+    }
+
+    /**
+     * Parses a compact "income,unemployment,cost,disaster" list such as "0.5,0.25,0.15,0.1".
+     * Penalty thresholds keep their defaults. Blank input means {@link #DEFAULT}.
+     */
+    public static ScoreWeights parse(String csv) {
+        if (csv == null || csv.isBlank()) return DEFAULT;
+        String[] parts = csv.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Expected 4 comma-separated weights (income,unemployment,cost,disaster)");
+        }
+        ScoreWeights d = DEFAULT;
+        return new ScoreWeights(number(parts[0], 0), number(parts[1], 0), number(parts[2], 0), number(parts[3], 0),
+                d.smallPopulation, d.smallPenalty, d.tinyPopulation, d.tinyPenalty);
+    }
+
+    private static double number(Object v, double fallback) {
+        if (v instanceof Number n) return n.doubleValue();
+        if (v instanceof String s && !s.isBlank()) {
+            try {
+                return Double.parseDouble(s.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + s);
+            }
+        }
+        return fallback;
+    }
+}
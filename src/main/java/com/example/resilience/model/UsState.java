@@ -0,0 +1,85 @@
+package com.example.resilience.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The 50 states plus DC with their FIPS codes and Census regions. County ids are
+ * state FIPS * 1000 + county FIPS, so {@link #ofCounty(long)} recovers the state.
+ */
+public enum UsState {
+    AL(1, "Alabama", Region.SOUTH), AK(2, "Alaska", Region.WEST), AZ(4, "Arizona", Region.WEST),
+    AR(5, "Arkansas", Region.SOUTH), CA(6, "California", Region.WEST), CO(8, "Colorado", Region.WEST),
+    CT(9, "Connecticut", Region.NORTHEAST), DE(10, "Delaware", Region.SOUTH),
+    DC(11, "District of Columbia", Region.SOUTH), FL(12, "Florida", Region.SOUTH), GA(13, "Georgia", Region.SOUTH),
+    HI(15, "Hawaii", Region.WEST), ID(16, "Idaho", Region.WEST), IL(17, "Illinois", Region.MIDWEST),
+    IN(18, "Indiana", Region.MIDWEST), IA(19, "Iowa", Region.MIDWEST), KS(20, "Kansas", Region.MIDWEST),
+    KY(21, "Kentucky", Region.SOUTH), LA(22, "Louisiana", Region.SOUTH), ME(23, "Maine", Region.NORTHEAST),
+    MD(24, "Maryland", Region.SOUTH), MA(25, "Massachusetts", Region.NORTHEAST), MI(26, "Michigan", Region.MIDWEST),
+    MN(27, "Minnesota", Region.MIDWEST), MS(28, "Mississippi", Region.SOUTH), MO(29, "Missouri", Region.MIDWEST),
+    MT(30, "Montana", Region.WEST), NE(31, "Nebraska", Region.MIDWEST), NV(32, "Nevada", Region.WEST),
+    NH(33, "New Hampshire", Region.NORTHEAST), NJ(34, "New Jersey", Region.NORTHEAST),
+    NM(35, "New Mexico", Region.WEST), NY(36, "New York", Region.NORTHEAST), NC(37, "North Carolina", Region.SOUTH),
+    ND(38, "North Dakota", Region.MIDWEST), OH(39, "Ohio", Region.MIDWEST), OK(40, "Oklahoma", Region.SOUTH),
+    OR(41, "Oregon", Region.WEST), PA(42, "Pennsylvania", Region.NORTHEAST), RI(44, "Rhode Island", Region.NORTHEAST),
+    SC(45, "South Carolina", Region.SOUTH), SD(46, "South Dakota", Region.MIDWEST), TN(47, "Tennessee", Region.SOUTH),
+    TX(48, "Texas", Region.SOUTH), UT(49, "Utah", Region.WEST), VT(50, "Vermont", Region.NORTHEAST),
+    VA(51, "Virginia", Region.SOUTH), WA(53, "Washington", Region.WEST), WV(54, "West Virginia", Region.SOUTH),
+    WI(55, "Wisconsin", Region.MIDWEST), WY(56, "Wyoming", Region.WEST);
+
+    /** The four Census Bureau regions. */
+    public enum Region {
+        NORTHEAST, MIDWEST, SOUTH, WEST;
+
+        /** Case-insensitive lookup ("south"); null if unknown. */
+        public static Region lookup(String name) {
+            if (name == null) return null;
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final UsState[] BY_FIPS = new UsState[57];
+    private static final Map<String, UsState> BY_NAME = new HashMap<>();
+
+    static {
+        for (UsState s : values()) {
+            BY_FIPS[s.fips] = s;
+            BY_NAME.put(s.fullName.toLowerCase(Locale.ROOT), s);
+            BY_NAME.put(s.name().toLowerCase(Locale.ROOT), s);
+        }
+    }
+
+    private final int fips;
+    private final String fullName;
+    private final Region region;
+
+    UsState(int fips, String fullName, Region region) {
+        this.fips = fips;
+        this.fullName = fullName;
+        this.region = region;
+    }
+
+    public int fips() { return fips; }
+    public String fullName() { return fullName; }
+    public Region region() { return region; }
+
+    /** State for a 2-digit FIPS code, or null. */
+    public static UsState ofFips(int fips) {
+        return fips > 0 && fips < BY_FIPS.length ? BY_FIPS[fips] : null;
+    }
+
+    /** State of a county id (5-digit FIPS), or null for ids outside the scheme. */
+    public static UsState ofCounty(long countyId) {
+        return countyId >= 1000 && countyId < 57000 ? ofFips((int) (countyId / 1000)) : null;
+    }
+
+    /** Case-insensitive lookup by full name ("north carolina") or postal code ("nc"); null if unknown. */
+    public static UsState lookup(String nameOrCode) {
+        return nameOrCode == null ? null : BY_NAME.get(nameOrCode.trim().toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.AggregateGroup;
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.model.UsState;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Population-weighted roll-ups of every indicator and the score by state, Census region or
+ * user-defined group, computed live from the county store.
+ *
+ * Per-state sums are the building block: regions and state-based groups just add them up. They
+ * are cached per weight profile and carried forward when the dataset changes: if the new
+ * generation lists the rows that changed since the cached one ({@link Dataset#changedSince}),
+ * only those rows are subtracted and re-added, otherwise (or every aggregation.max-incremental
+ * steps, to keep rounding drift in check) the states are summed again in parallel on a dedicated
+ * fork-join pool (aggregation.parallelism, default one worker per core). Custom groups are
+ * evaluated in parallel across groups.
+ */
+@Service
+public class AggregationService {
+
+    /**
+     * One group. Means are weighted by population (at least 1 per county); medianIncomeRaw is
+     * over the counties with a known raw income, null if there are none. averageScore is unweighted.
+     */
+    public record Aggregate(String key, String name, String region, int counties, long population,
+                            double medianIncome, Double medianIncomeRaw, double unemploymentRate,
+                            double costOfLivingIndex, double disasterRisk, double score, double averageScore) {
+    }
+
+    public record Result(long generation, ScoreWeights weights, String level, List<Aggregate> groups) {
+    }
+
+    /** Per-state sums for one weight profile, valid for one dataset generation. */
+    private record StateTable(Dataset dataset, Sums[] states, int incrementalSteps) {
+    }
+
+    private static final UsState[] STATES = UsState.values();
+
+    private final ResilienceService resilienceService;
+    private final ForkJoinPool pool;
+    private final int maxGroups;
+    private final int maxIncremental;
+    private final Map<ScoreWeights, StateTable> tables;
+
+    public AggregationService(ResilienceService resilienceService,
+                              @Value("${aggregation.parallelism:0}") int parallelism,
+                              @Value("${aggregation.max-groups:100}") int maxGroups,
+                              @Value("${aggregation.max-incremental:1000}") int maxIncremental,
+                              @Value("${aggregation.cache-size:16}") int cacheSize) {
+        this.resilienceService = resilienceService;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.maxGroups = maxGroups;
+        this.maxIncremental = maxIncremental;
+        this.tables = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ScoreWeights, StateTable> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /** Every state with at least one loaded county, in alphabetical order of postal code. */
+    public Result states(ScoreWeights w) {
+        StateTable table = table(w);
+        List<Aggregate> out = new ArrayList<>();
+        for (UsState s : STATES) {
+            Sums sums = table.states()[s.ordinal()];
+            if (sums.count > 0) out.add(sums.toAggregate(s.name(), s.fullName(), label(s.region())));
+        }
+        return new Result(table.dataset().generation(), w, "state", out);
+    }
+
+    /** The four Census regions. */
+    public Result regions(ScoreWeights w) {
+        StateTable table = table(w);
+        List<Aggregate> out = new ArrayList<>();
+        for (UsState.Region region : UsState.Region.values()) {
+            Sums sums = new Sums();
+            for (UsState s : STATES) {
+                if (s.region() == region) sums.add(table.states()[s.ordinal()]);
+            }
+            if (sums.count > 0) out.add(sums.toAggregate(region.name(), label(region), label(region)));
+        }
+        return new Result(table.dataset().generation(), w, "region", out);
+    }
+
+    /** Custom groups, in request order. Invalid groups throw IllegalArgumentException before anything runs. */
+    public Result groups(ScoreWeights w, List<AggregateGroup> groups) {
+        if (groups == null || groups.isEmpty()) throw new IllegalArgumentException("No groups given");
+        if (groups.size() > maxGroups) throw new IllegalArgumentException("At most " + maxGroups + " groups per request");
+        List<Set<UsState>> states = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) states.add(states(groups.get(i), name(groups.get(i), i)));
+
+        StateTable table = table(w);
+        Dataset dataset = table.dataset();
+        CountyStore store = dataset.store();
+        List<Aggregate> out = pool.submit(() -> IntStream.range(0, groups.size()).parallel().mapToObj(i -> {
+            AggregateGroup group = groups.get(i);
+            Sums sums = new Sums();
+            for (UsState s : states.get(i)) sums.add(table.states()[s.ordinal()]);
+            if (group.countyIds() != null) {
+                // Counties of the listed states are already in; count every other county once
+                for (long id : new LinkedHashSet<>(group.countyIds())) {
+                    int row = store.rowOf(id);
+                    if (row >= 0 && !states.get(i).contains(UsState.ofCounty(id))) sums.add(store, row, w, 1);
+                }
+            }
+            String name = name(group, i);
+            return sums.toAggregate(name, name, null);
+        }).toList()).join();
+        return new Result(dataset.generation(), w, "group", out);
+    }
+
+    /** State sums for the current dataset: cached, carried forward from the previous generation, or rebuilt. */
+    private StateTable table(ScoreWeights w) {
+        Dataset dataset = resilienceService.dataset();
+        StateTable cached;
+        synchronized (tables) {
+            cached = tables.get(w);
+        }
+        if (cached != null && cached.dataset() == dataset) return cached;
+
+        StateTable next = null;
+        if (cached != null && cached.incrementalSteps() < maxIncremental) next = carryForward(cached, dataset, w);
+        if (next == null) next = new StateTable(dataset, sumStates(dataset, w), 0);
+        synchronized (tables) {
+            StateTable current = tables.get(w);
+            // Keep whichever is newer if another request raced us
+            if (current == null || current.dataset().generation() <= dataset.generation()) tables.put(w, next);
+        }
+        return next;
+    }
+
+    /** Applies the rows changed since the cached generation; null if they are not known. */
+    private static StateTable carryForward(StateTable cached, Dataset dataset, ScoreWeights w) {
+        Dataset previous = cached.dataset();
+        int[] changed = dataset.changedSince(previous.generation());
+        if (changed == null) return null;
+        Sums[] states = new Sums[STATES.length];
+        for (int s = 0; s < states.length; s++) states[s] = cached.states()[s].copy();
+        CountyStore before = previous.store(), after = dataset.store();
+        for (int row : changed) {
+            if (row < before.size()) {
+                UsState s = UsState.ofCounty(before.id(row));
+                if (s != null) states[s.ordinal()].add(before, row, w, -1);
+            }
+            UsState s = UsState.ofCounty(after.id(row));
+            if (s != null) states[s.ordinal()].add(after, row, w, 1);
+        }
+        return new StateTable(dataset, states, cached.incrementalSteps() + 1);
+    }
+
+    private Sums[] sumStates(Dataset dataset, ScoreWeights w) {
+        CountyNameIndex names = dataset.nameIndex();
+        CountyStore store = dataset.store();
+        Sums[] states = new Sums[STATES.length];
+        pool.submit(() -> IntStream.range(0, STATES.length).parallel().forEach(s -> {
+            Sums sums = new Sums();
+            for (int row : names.stateRows(STATES[s])) sums.add(store, row, w, 1);
+            states[s] = sums;
+        })).join();
+        return states;
+    }
+
+    private static Set<UsState> states(AggregateGroup group, String name) {
+        boolean byState = group.states() != null && !group.states().isEmpty();
+        boolean byRegion = group.regions() != null && !group.regions().isEmpty();
+        boolean byCounty = group.countyIds() != null && !group.countyIds().isEmpty();
+        if (!byState && !byRegion && !byCounty) throw new IllegalArgumentException(name + ": no states, regions or countyIds");
+        Set<UsState> out = EnumSet.noneOf(UsState.class);
+        if (byState) {
+            for (String s : group.states()) {
+                UsState state = UsState.lookup(s);
+                if (state == null) throw new IllegalArgumentException(name + ": unknown state '" + s + "'");
+                out.add(state);
+            }
+        }
+        if (byRegion) {
+            for (String r : group.regions()) {
+                UsState.Region region = UsState.Region.lookup(r);
+                if (region == null) throw new IllegalArgumentException(name + ": unknown region '" + r + "'");
+                for (UsState s : STATES) if (s.region() == region) out.add(s);
+            }
+        }
+        return out;
+    }
+
+    private static String name(AggregateGroup group, int index) {
+        return group.name() == null || group.name().isBlank() ? "group " + (index + 1) : group.name();
+    }
+
+    /** "SOUTH" -> "South" */
+    private static String label(UsState.Region region) {
+        String n = region.name();
+        return n.charAt(0) + n.substring(1).toLowerCase(Locale.ROOT);
+    }
+
+    /** Population-weighted sums over a set of counties; sign -1 takes a county back out. */
+    private static final class Sums {
+        int count;
+        double population;
+        double weight;
+        double income;
+        double unemployment;
+        double cost;
+        double disaster;
+        double score;
+        double scoreSum;
+        double rawWeight;
+        double rawIncome;
+
+        void add(CountyStore store, int row, ScoreWeights w, int sign) {
+            int pop = store.population(row);
+            double p = sign * (double) Math.max(1, pop);
+            double s = BatchScorer.score(store.medianIncome(row), store.unemploymentRate(row),
+                    store.costOfLivingIndex(row), store.disasterRisk(row), pop, w);
+            count += sign;
+            population += sign * (double) Math.max(0, pop);
+            weight += p;
+            income += p * store.medianIncome(row);
+            unemployment += p * store.unemploymentRate(row);
+            cost += p * store.costOfLivingIndex(row);
+            disaster += p * store.disasterRisk(row);
+            score += p * s;
+            scoreSum += sign * s;
+            double raw = store.medianIncomeRaw(row);
+            if (!Double.isNaN(raw)) {
+                rawWeight += p;
+                rawIncome += p * raw;
+            }
+        }
+
+        void add(Sums o) {
+            count += o.count;
+            population += o.population;
+            weight += o.weight;
+            income += o.income;
+            unemployment += o.unemployment;
+            cost += o.cost;
+            disaster += o.disaster;
+            score += o.score;
+            scoreSum += o.scoreSum;
+            rawWeight += o.rawWeight;
+            rawIncome += o.rawIncome;
+        }
+
+        Sums copy() {
+            Sums c = new Sums();
+            c.add(this);
+            return c;
+        }
+
+        Aggregate toAggregate(String key, String name, String region) {
+            if (count == 0) return new Aggregate(key, name, region, 0, 0, 0, null, 0, 0, 0, 0, 0);
+            return new Aggregate(key, name, region, count, Math.round(population), income / weight,
+                    rawWeight >= 0.5 ? rawIncome / rawWeight : null, unemployment / weight, cost / weight,
+                    disaster / weight, score / weight, scoreSum / count);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+}
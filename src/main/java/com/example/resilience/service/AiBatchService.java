@@ -0,0 +1,194 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.ScoreWeights;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Runs many model prompts as one batch, e.g. a narrative for every county in a report.
+ *
+ * The dataset context is built once and shared by every item. Items run on virtual threads, at
+ * most bedrock.batch.parallelism of them at a time per batch (all still pass through
+ * {@link AiGuard}). Failures that may pass on a repeat (throttling, a full bulkhead, timeouts,
+ * upstream 5xx; see {@link AiUnavailableException#retryable()}) are retried up to
+ * bedrock.batch.max-attempts times with jittered exponential backoff that honours Retry-After. Results are handed to the caller as each item
+ * finishes, so they arrive in completion order rather than request order.
+ */
+@Service
+public class AiBatchService {
+
+    /** One batch entry: a county to describe, or a free-form question. */
+    public record Item(Long countyId, String prompt) {
+    }
+
+    private static final String INSTRUCTION = "\n\nProvide a clear, concise answer based on the data above.";
+
+    private final BedrockAiService bedrockAiService;
+    private final PromptContextService promptContextService;
+    private final ResilienceService resilienceService;
+    private final int parallelism;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+
+    public AiBatchService(BedrockAiService bedrockAiService,
+                          PromptContextService promptContextService,
+                          ResilienceService resilienceService,
+                          @Value("${bedrock.batch.parallelism:8}") int parallelism,
+                          @Value("${bedrock.batch.max-attempts:3}") int maxAttempts,
+                          @Value("${bedrock.batch.retry-backoff-ms:500}") long backoffMs,
+                          @Value("${bedrock.batch.max-backoff-ms:10000}") long maxBackoffMs) {
+        this.bedrockAiService = bedrockAiService;
+        this.promptContextService = promptContextService;
+        this.resilienceService = resilienceService;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = backoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Starts the batch and returns at once. Every item produces exactly one result map, passed to
+     * onResult from whichever thread finished it; onResult returning false (the client went away)
+     * stops further items from being started. The future completes with a summary once all
+     * started items are done.
+     */
+    public CompletableFuture<Map<String, Object>> run(ScoreWeights weights, List<Item> items,
+                                                      Predicate<Map<String, Object>> onResult) {
+        Dataset dataset = resilienceService.dataset();
+        String context = promptContextService.context(weights);
+        Semaphore slots = new Semaphore(parallelism);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CompletableFuture<Map<String, Object>> done = new CompletableFuture<>();
+        long start = System.currentTimeMillis();
+
+        Thread.ofVirtual().name("ai-batch").start(() -> {
+            int started = 0;
+            try {
+                for (int i = 0; i < items.size() && !cancelled.get(); i++) {
+                    slots.acquire();
+                    // The item that freed this slot may have been the one that cancelled
+                    if (cancelled.get()) {
+                        slots.release();
+                        break;
+                    }
+                    int index = i;
+                    started++;
+                    Thread.ofVirtual().name("ai-batch-", index).start(() -> {
+                        try {
+                            Map<String, Object> result = runItem(dataset, weights, context, index, items.get(index));
+                            (result.containsKey("error") ? failed : succeeded).incrementAndGet();
+                            if (!onResult.test(result)) cancelled.set(true);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                }
+                // Wait for the items still running
+                slots.acquire(parallelism);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled.set(true);
+            }
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("done", true);
+            summary.put("items", items.size());
+            summary.put("started", started);
+            summary.put("succeeded", succeeded.get());
+            summary.put("failed", failed.get());
+            summary.put("cancelled", cancelled.get());
+            summary.put("elapsedMs", System.currentTimeMillis() - start);
+            System.out.println("AiBatchService: Batch of " + items.size() + " finished: " + succeeded.get()
+                    + " ok, " + failed.get() + " failed in " + summary.get("elapsedMs") + " ms");
+            done.complete(summary);
+        });
+        return done;
+    }
+
+    private Map<String, Object> runItem(Dataset dataset, ScoreWeights weights, String context, int index, Item item) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        String prompt;
+        if (item.countyId() != null) {
+            result.put("countyId", item.countyId());
+            String brief = promptContextService.countyBrief(dataset, weights, item.countyId());
+            if (brief == null) {
+                result.put("status", 404);
+                result.put("error", "County not found");
+                return result;
+            }
+            String name = dataset.findRow(item.countyId()).getName();
+            result.put("county", name);
+            prompt = context + "\nCOUNTY TO DESCRIBE:\n" + brief
+                    + "\n\nUser question: Write a short narrative (3-4 sentences) on the financial resilience of "
+                    + name + ": how it ranks, which factors help or hurt it, and how it compares to similar counties."
+                    + INSTRUCTION;
+        } else {
+            result.put("prompt", item.prompt());
+            prompt = context + "\n\nUser question: " + item.prompt() + INSTRUCTION;
+        }
+
+        long start = System.currentTimeMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                result.put("reply", bedrockAiService.generateAsync(prompt).get());
+                result.put("attempts", attempt);
+                result.put("elapsedMs", System.currentTimeMillis() - start);
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return failure(result, new AiUnavailableException(503, "Batch cancelled", 0), attempt, start);
+            } catch (ExecutionException e) {
+                Throwable cause = AiGuard.unwrap(e);
+                AiUnavailableException failure = cause instanceof AiUnavailableException u ? u
+                        : new AiUnavailableException(502, "Error calling Bedrock: " + cause.getMessage(), 0, null, cause);
+                if (!failure.retryable() || attempt >= maxAttempts || !sleep(backoff(attempt, failure))) {
+                    return failure(result, failure, attempt, start);
+                }
+            }
+        }
+    }
+
+    private static Map<String, Object> failure(Map<String, Object> result, AiUnavailableException failure,
+                                               int attempts, long start) {
+        result.put("status", failure.status());
+        result.put("error", failure.getMessage());
+        if (failure.fallback() != null) {
+            result.put("reply", failure.fallback());
+            result.put("source", "stale-cache");
+        }
+        result.put("attempts", attempts);
+        result.put("elapsedMs", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /** Exponential with full jitter, but never shorter than the server's Retry-After. */
+    private long backoff(int attempt, AiUnavailableException failure) {
+        long exp = Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 20));
+        long wait = ThreadLocalRandom.current().nextLong(exp / 2, exp + 1);
+        return Math.min(maxBackoffMs, Math.max(wait, failure.retryAfterSeconds() * 1000));
+    }
+
+    private static boolean sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.resilience.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Isolates model calls from the rest of the application.
+ *
+ * <ul>
+ *   <li>Bulkhead: callers wait for a slot on their own virtual threads, at most
+ *       bedrock.guard.max-queue of them and for at most bedrock.guard.queue-timeout-ms.</li>
+ *   <li>Adaptive limit (AIMD): the number of calls in flight grows by about one per round of
+ *       successes and halves on throttling or timeouts, between the configured min and max.</li>
+ *   <li>Circuit breaker: once the failure rate over the last calls passes the threshold, calls
+ *       fail fast for bedrock.guard.breaker.open-ms, then a single probe decides whether to close.</li>
+ * </ul>
+ * Every rejection or failure surfaces as an {@link AiUnavailableException} with a status to report.
+ */
+@Service
+public class AiGuard {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private enum Outcome { SUCCESS, CLIENT_ERROR, THROTTLED, TIMEOUT, FAILURE }
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ai-bulkhead-", 0).factory());
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long queueTimeoutMs;
+    private final long callTimeoutMs;
+    private final double failureRateThreshold;
+    private final int minCalls;
+    private final long openMs;
+
+    // Limiter state, guarded by lock (virtual threads wait on it, so no synchronized/wait)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+
+    // Breaker state, guarded by breaker lock: ring buffer of recent outcomes
+    private final Object breaker = new Object();
+    private final boolean[] window;
+    private int windowNext;
+    private int windowCount;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+
+    public AiGuard(@Value("${bedrock.guard.min-concurrency:1}") int minLimit,
+                   @Value("${bedrock.guard.initial-concurrency:4}") int initialLimit,
+                   @Value("${bedrock.guard.max-concurrency:16}") int maxLimit,
+                   @Value("${bedrock.guard.max-queue:64}") int maxQueue,
+                   @Value("${bedrock.guard.queue-timeout-ms:2000}") long queueTimeoutMs,
+                   @Value("${bedrock.guard.call-timeout-ms:60000}") long callTimeoutMs,
+                   @Value("${bedrock.guard.breaker.failure-rate:0.5}") double failureRateThreshold,
+                   @Value("${bedrock.guard.breaker.window:20}") int window,
+                   @Value("${bedrock.guard.breaker.min-calls:10}") int minCalls,
+                   @Value("${bedrock.guard.breaker.open-ms:30000}") long openMs) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.maxQueue = Math.max(0, maxQueue);
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.callTimeoutMs = callTimeoutMs;
+        this.failureRateThreshold = failureRateThreshold;
+        this.window = new boolean[Math.max(1, window)];
+        this.minCalls = Math.max(1, Math.min(minCalls, this.window.length));
+        this.openMs = openMs;
+    }
+
+    /** {@link #execute(Supplier, long)} with bedrock.guard.call-timeout-ms. */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        return execute(call, callTimeoutMs);
+    }
+
+    /**
+     * Runs the call inside the bulkhead, failing it with a 504 after timeoutMs. The slot is held
+     * until the returned future of the call completes, so streaming calls count for their whole
+     * duration and should pass the stream timeout rather than the default call timeout.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call, long timeoutMs) {
+        AiUnavailableException open = checkBreaker();
+        if (open != null) return CompletableFuture.failedFuture(open);
+
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit && queued >= maxQueue) {
+                rejected.incrementAndGet();
+                releaseProbe();
+                return CompletableFuture.failedFuture(new AiUnavailableException(503, "AI request queue is full", 1));
+            }
+            queued++;
+        } finally {
+            lock.unlock();
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            if (!acquire()) {
+                rejected.incrementAndGet();
+                releaseProbe();
+                result.completeExceptionally(new AiUnavailableException(503, "Timed out waiting for an AI slot", 1));
+                return;
+            }
+            CompletableFuture<T> f;
+            try {
+                f = call.get();
+            } catch (RuntimeException e) {
+                f = CompletableFuture.failedFuture(e);
+            }
+            f.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+                Outcome outcome = classify(error);
+                release(outcome);
+                record(outcome);
+                if (error == null) result.complete(value);
+                else result.completeExceptionally(translate(outcome, error));
+            });
+        });
+        return result;
+    }
+
+    /** True while calls are being short-circuited. */
+    public boolean isOpen() {
+        synchronized (breaker) {
+            return state == State.OPEN && System.currentTimeMillis() - openedAt < openMs;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (breaker) {
+            stats.put("state", state.name());
+            stats.put("recentFailureRate", windowCount == 0 ? 0.0 : (double) windowFailures / windowCount);
+        }
+        lock.lock();
+        try {
+            stats.put("limit", Math.round(limit * 100) / 100.0);
+            stats.put("inFlight", inFlight);
+            stats.put("queued", queued);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("successes", successes.get());
+        stats.put("failures", failures.get());
+        stats.put("throttled", throttled.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("rejected", rejected.get());
+        stats.put("shortCircuited", shortCircuited.get());
+        return stats;
+    }
+
+    private boolean acquire() {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) return false;
+                remaining = slotFreed.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued--;
+            lock.unlock();
+        }
+    }
+
+    private void release(Outcome outcome) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (outcome == Outcome.THROTTLED || outcome == Outcome.TIMEOUT) {
+                limit = Math.max(minLimit, limit / 2);
+            } else if (outcome == Outcome.SUCCESS && inFlight + 1 >= (int) limit) {
+                // Only grow when the limit was actually the constraint
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Null if the call may proceed, otherwise the fail-fast error. */
+    private AiUnavailableException checkBreaker() {
+        synchronized (breaker) {
+            long now = System.currentTimeMillis();
+            if (state == State.OPEN && now - openedAt >= openMs) {
+                state = State.HALF_OPEN;
+                probeInFlight = false;
+            }
+            if (state == State.CLOSED) return null;
+            if (state == State.HALF_OPEN && !probeInFlight) {
+                probeInFlight = true;
+                return null;
+            }
+            shortCircuited.incrementAndGet();
+            long retryAfter = state == State.OPEN ? Math.max(1, (openMs - (now - openedAt) + 999) / 1000) : 1;
+            return new AiUnavailableException(503, "AI service temporarily unavailable (circuit open)", retryAfter,
+                    null, null, false);
+        }
+    }
+
+    /** A half-open probe that never reached the model must not keep the breaker stuck. */
+    private void releaseProbe() {
+        synchronized (breaker) {
+            if (state == State.HALF_OPEN) probeInFlight = false;
+        }
+    }
+
+    private void record(Outcome outcome) {
+        boolean failed = outcome == Outcome.THROTTLED || outcome == Outcome.TIMEOUT || outcome == Outcome.FAILURE;
+        switch (outcome) {
+            case SUCCESS, CLIENT_ERROR -> successes.incrementAndGet();
+            case THROTTLED -> throttled.incrementAndGet();
+            case TIMEOUT -> timeouts.incrementAndGet();
+            case FAILURE -> failures.incrementAndGet();
+        }
+        synchronized (breaker) {
+            if (state == State.HALF_OPEN) {
+                if (failed) trip();
+                else reset();
+                return;
+            }
+            if (windowCount == window.length && window[windowNext]) windowFailures--;
+            window[windowNext] = failed;
+            if (failed) windowFailures++;
+            windowNext = (windowNext + 1) % window.length;
+            windowCount = Math.min(windowCount + 1, window.length);
+            if (state == State.CLOSED && windowCount >= minCalls
+                    && (double) windowFailures / windowCount >= failureRateThreshold) {
+                trip();
+            }
+        }
+    }
+
+    private void trip() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        probeInFlight = false;
+        System.err.println("AiGuard: Circuit opened after " + windowFailures + "/" + windowCount + " failed AI calls");
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        probeInFlight = false;
+        windowNext = windowCount = windowFailures = 0;
+        System.out.println("AiGuard: Circuit closed");
+    }
+
+    private static Outcome classify(Throwable error) {
+        if (error == null) return Outcome.SUCCESS;
+        Throwable e = unwrap(error);
+        if (e instanceof TimeoutException) return Outcome.TIMEOUT;
+        if (e instanceof SdkServiceException s) {
+            if (s.isThrottlingException() || s.statusCode() == 429) return Outcome.THROTTLED;
+            if (s.statusCode() >= 400 && s.statusCode() < 500) return Outcome.CLIENT_ERROR;
+        }
+        return Outcome.FAILURE;
+    }
+
+    private static AiUnavailableException translate(Outcome outcome, Throwable error) {
+        Throwable e = unwrap(error);
+        if (e instanceof AiUnavailableException u) return u;
+        return switch (outcome) {
+            case THROTTLED -> new AiUnavailableException(429, "AI service is throttling requests", 2, null, e);
+            case TIMEOUT -> new AiUnavailableException(504, "AI service timed out", 0, null, e);
+            // Bedrock rejected the request itself (validation, access, unknown model): keep its status
+            case CLIENT_ERROR -> new AiUnavailableException(((SdkServiceException) e).statusCode(),
+                    "Bedrock rejected the request: " + e.getMessage(), 0, null, e, false);
+            default -> new AiUnavailableException(502, "Error calling Bedrock: " + e.getMessage(), 0, null, e,
+                    e instanceof SdkServiceException s && s.statusCode() >= 500);
+        };
+    }
+
+    static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.resilience.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of model answers in front of {@link BedrockAiService}.
+ *
+ * Entries are keyed by a SHA-256 of model id, temperature, max tokens and the full prompt, expire
+ * after bedrock.cache.ttl-minutes and are evicted least-recently-used beyond
+ * bedrock.cache.max-entries. With bedrock.cache.normalize=true the prompt is case-folded,
+ * stripped of punctuation and filler words first, so "Which county is most resilient?" and
+ * "which county is the most resilient" share an answer. Expired answers stay until evicted and
+ * are still offered through {@link #getStale} when the model cannot be reached.
+ *
+ * If bedrock.cache.file is set the cache is written there as JSON lines (periodically and on
+ * shutdown) and reloaded at startup.
+ */
+@Service
+public class AiResponseCache {
+
+    private static final Set<String> FILLER = Set.of("a", "an", "the", "please", "pls", "can", "you", "tell", "me");
+
+    private record Entry(String reply, long storedAt) {
+    }
+
+    private final boolean enabled;
+    private final long ttlMs;
+    private final int maxEntries;
+    private final boolean normalize;
+    private final Path file;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private volatile boolean dirty;
+
+    public AiResponseCache(@Value("${bedrock.cache.enabled:true}") boolean enabled,
+                           @Value("${bedrock.cache.ttl-minutes:60}") long ttlMinutes,
+                           @Value("${bedrock.cache.max-entries:500}") int maxEntries,
+                           @Value("${bedrock.cache.normalize:false}") boolean normalize,
+                           @Value("${bedrock.cache.file:}") String file) {
+        this.enabled = enabled;
+        this.ttlMs = ttlMinutes * 60_000;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.normalize = normalize;
+        this.file = file == null || file.isBlank() ? null : Paths.get(file);
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= AiResponseCache.this.maxEntries) return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /** Cache key for one model call; the same inputs always hash to the same key. */
+    public String key(String modelId, double temperature, int maxTokens, String prompt) {
+        String text = modelId + '\n' + temperature + '\n' + maxTokens + '\n' + (normalize ? normalizePrompt(prompt) : prompt);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Cached answer, or null on a miss (including expired entries). */
+    public String get(String key) {
+        if (!enabled) return null;
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e != null && isExpired(e, System.currentTimeMillis())) {
+                // Left in place (until LRU eviction) as a fallback for when the model is unavailable
+                expirations.incrementAndGet();
+                e = null;
+            }
+            if (e == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return e.reply();
+        }
+    }
+
+    /** Cached answer regardless of age, for degraded responses; null if there is none. */
+    public String getStale(String key) {
+        if (!enabled) return null;
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            return e == null ? null : e.reply();
+        }
+    }
+
+    public void put(String key, String reply) {
+        if (!enabled || reply == null) return;
+        synchronized (entries) {
+            entries.put(key, new Entry(reply, System.currentTimeMillis()));
+        }
+        dirty = true;
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.get(), m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("normalize", normalize);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        return stats;
+    }
+
+    /** Lower-case words only, filler words dropped, single spaces. */
+    static String normalizePrompt(String prompt) {
+        StringBuilder sb = new StringBuilder(prompt.length());
+        for (String word : prompt.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}.]+")) {
+            // Keep decimal points inside numbers (scores in the context), drop trailing sentence dots
+            String w = word.endsWith(".") ? word.substring(0, word.length() - 1) : word;
+            if (w.isEmpty() || FILLER.contains(w)) continue;
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(w);
+        }
+        return sb.toString();
+    }
+
+    private boolean isExpired(Entry e, long now) {
+        return ttlMs > 0 && now - e.storedAt() > ttlMs;
+    }
+
+    @PostConstruct
+    void load() {
+        if (!enabled || file == null || !Files.isRegularFile(file)) return;
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            synchronized (entries) {
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    JsonNode node = mapper.readTree(line);
+                    Entry e = new Entry(node.path("reply").asText(), node.path("storedAt").asLong());
+                    if (isExpired(e, now)) continue;
+                    entries.put(node.path("key").asText(), e);
+                    loaded++;
+                }
+            }
+            System.out.println("AiResponseCache: Loaded " + loaded + " cached answers from " + file);
+        } catch (IOException e) {
+            System.err.println("AiResponseCache: Ignoring unreadable cache file " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bedrock.cache.flush-interval-ms:60000}")
+    @PreDestroy
+    void flush() {
+        if (!dirty || file == null) return;
+        dirty = false;
+        List<Map<String, Object>> snapshot = new ArrayList<>();
+        synchronized (entries) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                snapshot.add(Map.of("key", e.getKey(), "reply", e.getValue().reply(), "storedAt", e.getValue().storedAt()));
+            }
+        }
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map<String, Object> row : snapshot) {
+                    writer.write(mapper.writeValueAsString(row));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("AiResponseCache: Could not write cache file " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.resilience.service;
+
+/**
+ * The AI path could not produce an answer: rejected by the bulkhead or circuit breaker, throttled,
+ * timed out, or failed upstream. Carries the HTTP status to report and, when one exists, an
+ * older cached answer to fall back on.
+ */
+public class AiUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final long retryAfterSeconds;
+    private final String fallback;
+    private final boolean retryable;
+
+    /** Retryable when the status is 429, 503 or 504. */
+    public AiUnavailableException(int status, String message, long retryAfterSeconds) {
+        this(status, message, retryAfterSeconds, null, null);
+    }
+
+    /** Retryable when the status is 429, 503 or 504. */
+    public AiUnavailableException(int status, String message, long retryAfterSeconds, String fallback, Throwable cause) {
+        this(status, message, retryAfterSeconds, fallback, cause, status == 429 || status == 503 || status == 504);
+    }
+
+    public AiUnavailableException(int status, String message, long retryAfterSeconds, String fallback, Throwable cause,
+                                  boolean retryable) {
+        super(message, cause);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.fallback = fallback;
+        this.retryable = retryable;
+    }
+
+    /** Copy of this failure carrying a fallback answer. */
+    AiUnavailableException withFallback(String fallback) {
+        return new AiUnavailableException(status, getMessage(), retryAfterSeconds, fallback, getCause(), retryable);
+    }
+
+    public int status() {
+        return status;
+    }
+
+    /** Seconds the client should wait before retrying; 0 if unknown. */
+    public long retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Whether the same call may succeed if simply repeated: throttling, a full bulkhead, timeouts
+     * and upstream 5xx errors. Rejected requests (4xx) and an open circuit are not.
+     */
+    public boolean retryable() {
+        return retryable;
+    }
+
+    /** Expired cached answer for the same prompt, or null. */
+    public String fallback() {
+        return fallback;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.ScoreExplanation;
+import com.example.resilience.model.ScoreWeights;
+
+import java.util.List;
+
+/**
+ * Scores every row of a {@link CountyStore} in one pass over the primitive columns.
+ *
+ * The loop is kept branch-light and free of calls/boxing so HotSpot's superword pass can
+ * auto-vectorize it; we deliberately avoid jdk.incubator.vector so the app builds and runs
+ * without --add-modules flags.
+ */
+final class BatchScorer {
+
+    private BatchScorer() {}
+
+    static double[] scoreAll(CountyStore store, ScoreWeights w) {
+        int n = store.size();
+        double[] out = new double[n];
+        scoreInto(store, w, out, 0, n);
+        return out;
+    }
+
+    /** Scores rows [from, to) into out[from..to). */
+    static void scoreInto(CountyStore store, ScoreWeights w, double[] out, int from, int to) {
+        scoreInto(store.medianIncomeColumn(), store.unemploymentRateColumn(), store.costOfLivingIndexColumn(),
+                store.disasterRiskColumn(), store.populationColumn(), w, out, from, to);
+    }
+
+    /** Same loop over explicit columns, for overlays that replace some of a store's columns. */
+    static void scoreInto(double[] income, double[] unemp, double[] cost, double[] disaster, int[] pop,
+                          ScoreWeights w, double[] out, int from, int to) {
+        double wi = w.income(), wu = w.unemployment(), wc = w.cost(), wd = w.disaster();
+        // Fold the constant "1 - x" terms out of the loop: wu*(1-u) = wu - wu*u
+        double base = wu + wc + wd;
+        int small = w.smallPopulation(), tiny = w.tinyPopulation();
+        double smallPenalty = w.smallPenalty(), tinyPenalty = w.tinyPenalty();
+
+        for (int i = from; i < to; i++) {
+            double s = base
+                    + wi * unit(income[i])
+                    - wu * unit(unemp[i])
+                    - wc * unit(cost[i])
+                    - wd * unit(disaster[i]);
+            int p = pop[i];
+            double penalty = p < tiny ? tinyPenalty : (p < small ? smallPenalty : 0.0);
+            out[i] = unit(s - penalty);
+        }
+    }
+
+    /** Single-row variant with the same arithmetic as the loop, so both paths agree bit-for-bit. */
+    static double score(double income, double unemp, double cost, double disaster, int population, ScoreWeights w) {
+        double s = (w.unemployment() + w.cost() + w.disaster())
+                + w.income() * unit(income)
+                - w.unemployment() * unit(unemp)
+                - w.cost() * unit(cost)
+                - w.disaster() * unit(disaster);
+        return unit(s - w.penaltyFor(population));
+    }
+
+    /**
+     * {@link #score} with its parts kept: per-factor contributions and the penalty. The score is
+     * computed with exactly the same expression, so it matches the other paths bit-for-bit.
+     */
+    static ScoreExplanation explain(double income, double unemp, double cost, double disaster, int population,
+                                    ScoreWeights w) {
+        double ui = unit(income), uu = unit(unemp), uc = unit(cost), ud = unit(disaster);
+        double s = (w.unemployment() + w.cost() + w.disaster())
+                + w.income() * ui
+                - w.unemployment() * uu
+                - w.cost() * uc
+                - w.disaster() * ud;
+        double penalty = w.penaltyFor(population);
+        List<ScoreExplanation.Factor> factors = List.of(
+                new ScoreExplanation.Factor("income", ui, w.income(), w.income() * ui),
+                new ScoreExplanation.Factor("unemployment", uu, w.unemployment(), w.unemployment() * (1 - uu)),
+                new ScoreExplanation.Factor("costOfLiving", uc, w.cost(), w.cost() * (1 - uc)),
+                new ScoreExplanation.Factor("disasterRisk", ud, w.disaster(), w.disaster() * (1 - ud)));
+        // Rank and state fields are filled in by the caller, which knows the dataset
+        return new ScoreExplanation(unit(s - penalty), factors, s, penalty, 0, 0, 0.0, null, null, null);
+    }
+
+    /** Clamp to 0..1, mapping NaN to 0 like the original heuristic. */
+    private static double unit(double v) {
+        return v >= 0.0 ? (v <= 1.0 ? v : 1.0) : 0.0;
+    }
+}
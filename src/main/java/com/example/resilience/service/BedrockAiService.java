@@ -4,122 +4,396 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
-import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponseHandler;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+/**
+ * Bedrock model calls. Everything is asynchronous: callers get a CompletableFuture (or token
+ * callbacks for streaming) and no request thread waits on the model.
+ *
+ * Identical prompts that arrive while a call for them is still running are coalesced onto that
+ * call (single flight) instead of starting another one; late joiners of a stream first receive
+ * the text produced so far. Each stream caller has its own token queue, drained on a virtual
+ * thread, so a slow client delays neither the others nor the SDK callback thread.
+ */
 @Service
 public class BedrockAiService {
 
-    private final BedrockRuntimeClient client;
+    private final BedrockRuntimeAsyncClient client;
+    private final AiResponseCache cache;
+    private final AiGuard guard;
     private final ObjectMapper mapper = new ObjectMapper();
 
+    // In-flight calls by cache key, removed as soon as the call completes
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, SharedStream> inFlightStreams = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
     private final String modelId;
     private final int maxTokens;
     private final double temperature;
+    private final long streamTimeoutMs;
 
     public BedrockAiService(
-            @Value("${bedrock.region:us-east-1}") String region,
+            BedrockRuntimeAsyncClient client,
+            AiResponseCache cache,
+            AiGuard guard,
             @Value("${bedrock.modelId:anthropic.claude-3-haiku-20240307-v1:0}") String modelId,
             @Value("${bedrock.maxTokens:300}") int maxTokens,
-            @Value("${bedrock.temperature:0.2}") double temperature
+            @Value("${bedrock.temperature:0.2}") double temperature,
+            @Value("${bedrock.stream-timeout-ms:120000}") long streamTimeoutMs
     ) {
-        this.client = BedrockRuntimeClient.builder()
-                .region(Region.of(region))
-                .credentialsProvider(DefaultCredentialsProvider.create())
-                .build();
+        this.client = client;
+        this.cache = cache;
+        this.guard = guard;
         this.modelId = modelId;
         this.maxTokens = maxTokens;
         this.temperature = temperature;
+        this.streamTimeoutMs = streamTimeoutMs;
     }
 
-    public String generate(String prompt) {
-        try {
-            String body;
-            // Different request formats for different model families
-            if (modelId.startsWith("anthropic.claude")) {
-                // Claude 3 messages format
-                body = mapper.writeValueAsString(Map.of(
-                        "anthropic_version", "bedrock-2023-05-31",
-                        "max_tokens", maxTokens,
-                        "temperature", temperature,
-                        "messages", List.of(Map.of(
-                                "role", "user",
-                                "content", List.of(Map.of("type", "text", "text", prompt))
-                        ))
-                ));
-            } else if (modelId.startsWith("amazon.titan")) {
-                // Titan text format
-                body = mapper.writeValueAsString(Map.of(
-                        "inputText", prompt,
-                        "textGenerationConfig", Map.of(
-                                "maxTokenCount", maxTokens,
-                                "temperature", temperature,
-                                "topP", 0.9
-                        )
-                ));
-            } else {
-                // Generic fallback
-                body = mapper.writeValueAsString(Map.of(
-                        "prompt", prompt,
-                        "max_tokens", maxTokens,
-                        "temperature", temperature
-                ));
+    public String modelId() {
+        return modelId;
+    }
+
+    /**
+     * Model answer for the prompt, served from {@link AiResponseCache} when an identical call was
+     * made recently, or shared with an identical call that is still running.
+     */
+    public CompletableFuture<String> generateAsync(String prompt) {
+        String key = cache.key(modelId, temperature, maxTokens, prompt);
+        String cached = cache.get(key);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+
+        CompletableFuture<String> shared = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, shared);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return running.copy();
+        }
+        invoke(prompt, key).whenComplete((reply, error) -> {
+            inFlight.remove(key, shared);
+            if (error != null) shared.completeExceptionally(error);
+            else shared.complete(reply);
+        });
+        // Each caller gets its own dependent future so one cancelling doesn't affect the others
+        return shared.copy();
+    }
+
+    private CompletableFuture<String> invoke(String prompt, String key) {
+        InvokeModelRequest request = InvokeModelRequest.builder()
+                .modelId(modelId)
+                .contentType("application/json")
+                .accept("application/json")
+                .body(SdkBytes.fromUtf8String(requestBody(prompt)))
+                .build();
+        CompletableFuture<String> reply = guard.execute(() -> client.invokeModel(request)).thenApply(response -> {
+            String text = parseReply(response.body().asString(StandardCharsets.UTF_8));
+            // Only successful answers reach the cache
+            cache.put(key, text);
+            return text;
+        });
+        return withFallback(reply, key);
+    }
+
+    /**
+     * Streams the answer through the response-stream API, passing each text fragment to onToken as
+     * it arrives. The future completes with the full answer, which is then cached like
+     * {@link #generateAsync}; a cache hit is delivered as a single fragment.
+     */
+    public CompletableFuture<String> stream(String prompt, Consumer<String> onToken) {
+        String key = cache.key(modelId, temperature, maxTokens, prompt);
+        String cached = cache.get(key);
+        if (cached != null) {
+            onToken.accept(cached);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        SharedStream shared = new SharedStream();
+        SharedStream running = inFlightStreams.putIfAbsent(key, shared);
+        if (running != null) {
+            Listener joined = running.join(onToken);
+            if (joined != null) {
+                coalesced.incrementAndGet();
+                return joined.done.copy();
             }
+            // It finished between the lookup and the join; start a fresh call
+            inFlightStreams.remove(key, running);
+            return stream(prompt, onToken);
+        }
+        Listener listener = shared.join(onToken);
+
+        InvokeModelWithResponseStreamRequest request = InvokeModelWithResponseStreamRequest.builder()
+                .modelId(modelId)
+                .contentType("application/json")
+                .accept("application/json")
+                .body(SdkBytes.fromUtf8String(requestBody(prompt)))
+                .build();
+        InvokeModelWithResponseStreamResponseHandler handler = InvokeModelWithResponseStreamResponseHandler.builder()
+                .subscriber(InvokeModelWithResponseStreamResponseHandler.Visitor.builder()
+                        .onChunk(chunk -> {
+                            String text = chunkText(chunk.bytes().asUtf8String());
+                            if (!text.isEmpty()) shared.publish(text);
+                        })
+                        .build())
+                .build();
+        // A stream may legitimately run as long as its response does, not the single-call timeout
+        CompletableFuture<String> result = guard.execute(() -> client.invokeModelWithResponseStream(request, handler),
+                        streamTimeoutMs)
+                .thenApply(ignored -> {
+                    String full = shared.text();
+                    cache.put(key, full);
+                    return full;
+                });
+        withFallback(result, key).whenComplete((reply, error) -> {
+            inFlightStreams.remove(key, shared);
+            shared.finish(reply, error);
+        });
+        return listener.done.copy();
+    }
+
+    /** One streaming call fanned out to every caller that asked for the same prompt. */
+    private static final class SharedStream {
+        private final StringBuilder text = new StringBuilder();
+        private final List<Listener> listeners = new ArrayList<>();
+        private boolean closed;
+
+        /** Queues what has streamed so far, then subscribes; null if the stream already ended. */
+        Listener join(Consumer<String> onToken) {
+            Listener listener = new Listener(onToken);
+            synchronized (this) {
+                if (closed) return null;
+                if (!text.isEmpty()) listener.offer(text.toString());
+                listeners.add(listener);
+            }
+            listener.signal();
+            return listener;
+        }
+
+        /** Queues the token for every listener under the lock (keeping order with joins) and delivers outside it. */
+        void publish(String token) {
+            Listener[] targets;
+            synchronized (this) {
+                text.append(token);
+                for (Listener listener : listeners) listener.offer(token);
+                targets = listeners.toArray(new Listener[0]);
+            }
+            for (Listener listener : targets) listener.signal();
+        }
+
+        synchronized String text() {
+            return text.toString();
+        }
+
+        /** Ends the stream; each listener's future completes once its queued tokens are delivered. */
+        void finish(String reply, Throwable error) {
+            Listener[] targets;
+            synchronized (this) {
+                closed = true;
+                targets = listeners.toArray(new Listener[0]);
+            }
+            for (Listener listener : targets) listener.finish(reply, error);
+        }
+    }
+
+    /**
+     * One caller of a shared stream. Tokens are queued without blocking and delivered in order by
+     * at most one virtual thread at a time; done completes after the last token went out.
+     */
+    private static final class Listener {
+        private final Consumer<String> onToken;
+        private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger work = new AtomicInteger();
+        private final CompletableFuture<String> done = new CompletableFuture<>();
+        private volatile boolean finished;
+        private volatile String reply;
+        private volatile Throwable error;
+
+        Listener(Consumer<String> onToken) {
+            this.onToken = onToken;
+        }
+
+        void offer(String token) {
+            pending.add(token);
+        }
 
-            InvokeModelRequest request = InvokeModelRequest.builder()
-                    .modelId(modelId)
-                    .contentType("application/json")
-                    .accept("application/json")
-                    .body(SdkBytes.fromUtf8String(body))
-                    .build();
-
-            InvokeModelResponse response = client.invokeModel(request);
-            String json = response.body().asString(StandardCharsets.UTF_8);
-            JsonNode root = mapper.readTree(json);
-            
-            // Parse response based on model type
-            if (modelId.startsWith("anthropic.claude")) {
-                // Claude 3: content[0].text
-                JsonNode content = root.path("content");
-                if (content.isArray() && content.size() > 0) {
-                    JsonNode first = content.get(0);
-                    if (first.has("text")) {
-                        return first.get("text").asText();
+        void finish(String reply, Throwable error) {
+            this.reply = reply;
+            this.error = error;
+            finished = true;
+            signal();
+        }
+
+        /** Starts a drain unless one is running; a running drain picks the new work up before it exits. */
+        void signal() {
+            if (work.getAndIncrement() == 0) Thread.ofVirtual().name("bedrock-stream").start(this::drain);
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                for (String token = pending.poll(); token != null; token = pending.poll()) {
+                    try {
+                        onToken.accept(token);
+                    } catch (RuntimeException e) {
+                        System.err.println("BedrockAiService: Stream listener failed: " + e.getMessage());
                     }
                 }
-            } else if (modelId.startsWith("amazon.titan")) {
-                // Titan: results[0].outputText
-                JsonNode results = root.path("results");
-                if (results.isArray() && results.size() > 0) {
-                    JsonNode first = results.get(0);
-                    if (first.has("outputText")) {
-                        return first.get("outputText").asText();
-                    }
+                if (finished && pending.isEmpty()) {
+                    if (error != null) done.completeExceptionally(error);
+                    else done.complete(reply);
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+
+    public boolean isCircuitOpen() {
+        return guard.isOpen();
+    }
+
+    public Map<String, Object> guardStats() {
+        return guard.stats();
+    }
+
+    /** Failures become {@link AiUnavailableException}, carrying an expired cached answer if one exists. */
+    private CompletableFuture<String> withFallback(CompletableFuture<String> reply, String key) {
+        return reply.exceptionallyCompose(error -> {
+            Throwable e = AiGuard.unwrap(error);
+            AiUnavailableException failure = e instanceof AiUnavailableException u ? u
+                    : new AiUnavailableException(502, "Error calling Bedrock: " + e.getMessage(), 0, null, e);
+            String stale = cache.getStale(key);
+            return CompletableFuture.failedFuture(stale == null ? failure : failure.withFallback(stale));
+        });
+    }
+
+    /** Response cache counters plus the number of calls saved by coalescing. */
+    public Map<String, Object> cacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(cache.stats());
+        stats.put("coalesced", coalesced.get());
+        stats.put("inFlight", inFlight.size() + inFlightStreams.size());
+        return stats;
+    }
+
+    private String requestBody(String prompt) {
+        try {
+            return mapper.writeValueAsString(requestPayload(prompt));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<String, Object> requestPayload(String prompt) {
+        Map<String, Object> body;
+        // Different request formats for different model families
+        if (modelId.startsWith("anthropic.claude")) {
+            // Claude 3 messages format
+            body = Map.of(
+                    "anthropic_version", "bedrock-2023-05-31",
+                    "max_tokens", maxTokens,
+                    "temperature", temperature,
+                    "messages", List.of(Map.of(
+                            "role", "user",
+                            "content", List.of(Map.of("type", "text", "text", prompt))
+                    ))
+            );
+        } else if (modelId.startsWith("amazon.titan")) {
+            // Titan text format
+            body = Map.of(
+                    "inputText", prompt,
+                    "textGenerationConfig", Map.of(
+                            "maxTokenCount", maxTokens,
+                            "temperature", temperature,
+                            "topP", 0.9
+                    )
+            );
+        } else {
+            // Generic fallback
+            body = Map.of(
+                    "prompt", prompt,
+                    "max_tokens", maxTokens,
+                    "temperature", temperature
+            );
+        }
+        return body;
+    }
+
+    private String parseReply(String json) {
+        JsonNode root;
+        try {
+            root = mapper.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        // Parse response based on model type
+        if (modelId.startsWith("anthropic.claude")) {
+            // Claude 3: content[0].text
+            JsonNode content = root.path("content");
+            if (content.isArray() && content.size() > 0) {
+                JsonNode first = content.get(0);
+                if (first.has("text")) {
+                    return first.get("text").asText();
                 }
             }
-            
-            // Fallbacks for other providers
-            if (root.has("outputText")) {
-                return root.get("outputText").asText();
-            }
-            if (root.has("generation")) {
-                return root.get("generation").asText();
-            }
-            if (root.has("completions") && root.get("completions").isArray()) {
-                return root.get("completions").get(0).asText();
+        } else if (modelId.startsWith("amazon.titan")) {
+            // Titan: results[0].outputText
+            JsonNode results = root.path("results");
+            if (results.isArray() && results.size() > 0) {
+                JsonNode first = results.get(0);
+                if (first.has("outputText")) {
+                    return first.get("outputText").asText();
+                }
             }
-            
-            return json;
-        } catch (Exception e) {
-            return "Error calling Bedrock: " + e.getMessage();
         }
+        
+        // Fallbacks for other providers
+        if (root.has("outputText")) {
+            return root.get("outputText").asText();
+        }
+        if (root.has("generation")) {
+            return root.get("generation").asText();
+        }
+        if (root.has("completions") && root.get("completions").isArray()) {
+            return root.get("completions").get(0).asText();
+        }
+        
+        return json;
+    }
+
+    /** Text carried by one streamed chunk; empty for metadata-only chunks (message_start, stop reasons...). */
+    private String chunkText(String json) {
+        JsonNode root;
+        try {
+            root = mapper.readTree(json);
+        } catch (IOException e) {
+            return "";
+        }
+        if (modelId.startsWith("anthropic.claude")) {
+            // Claude 3: {"type":"content_block_delta","delta":{"type":"text_delta","text":"..."}}
+            return "content_block_delta".equals(root.path("type").asText()) ? root.path("delta").path("text").asText("") : "";
+        }
+        if (root.has("outputText")) return root.get("outputText").asText();
+        if (root.has("generation")) return root.get("generation").asText();
+        if (root.has("completion")) return root.get("completion").asText();
+        return "";
     }
 }
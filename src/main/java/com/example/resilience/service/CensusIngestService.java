@@ -0,0 +1,381 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.County;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Loads county indicators from the Census ACS 5-year API for every configured state.
+ *
+ * Each state is fetched on its own virtual thread (bounded by census.concurrency), parsed
+ * with Jackson's streaming token API, and checkpointed to census.checkpoint-dir. A restart
+ * reuses fresh checkpoints, and a failing state is retried on its own without affecting the rest.
+ * County ids are stable 5-digit state+county FIPS codes. Disaster risk is not measured yet; see
+ * {@link #PLACEHOLDER_DISASTER_RISK}.
+ *
+ * The result is a plain list of normalized counties; {@link DatasetReloadService} decides
+ * when it becomes the active dataset.
+ */
+@Service
+public class CensusIngestService {
+
+    /** 50 states plus DC. */
+    static final List<String> ALL_STATES = List.of(
+            "01", "02", "04", "05", "06", "08", "09", "10", "11", "12", "13", "15", "16", "17", "18", "19",
+            "20", "21", "22", "23", "24", "25", "26", "27", "28", "29", "30", "31", "32", "33", "34", "35",
+            "36", "37", "38", "39", "40", "41", "42", "44", "45", "46", "47", "48", "49", "50", "51", "53",
+            "54", "55", "56");
+
+    // Median household income, population, civilian labor force, unemployed, median gross rent,
+    // then the 90% margins of error (the _M variables) of the estimates that feed the score
+    private static final String VARIABLES = "NAME,B19013_001E,B01003_001E,B23025_003E,B23025_005E,B25064_001E,"
+            + "B19013_001M,B23025_003M,B23025_005M,B25064_001M";
+
+    /**
+     * Disaster risk given to every county. Placeholder: the ACS carries no hazard data and no
+     * other source is wired in yet, so the disaster term adds the same amount to every score
+     * and never changes a ranking.
+     */
+    static final double PLACEHOLDER_DISASTER_RISK = 0.1;
+
+    @Value("${census.api.key:}")
+    private String censusApiKey;
+
+    @Value("${census.year:2022}")
+    private int censusYear;
+
+    @Value("${census.states:}")
+    private String censusStates;
+
+    @Value("${census.concurrency:8}")
+    private int concurrency;
+
+    @Value("${census.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${census.checkpoint-dir:data/census-checkpoints}")
+    private String checkpointDir;
+
+    @Value("${census.checkpoint-max-age-hours:24}")
+    private long checkpointMaxAgeHours;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /** One county as reported by the ACS, before normalization. Margins of error are 0 when not reported. */
+    record RawCounty(long fips, String name, int population, double medianIncome,
+                     double laborForce, double unemployed, double medianRent,
+                     double medianIncomeMoe, double laborForceMoe, double unemployedMoe, double medianRentMoe) {
+    }
+
+    /**
+     * Fetches every configured state and returns normalized counties. Runs entirely on the
+     * caller's thread (plus the per-state virtual threads); nothing is published here.
+     */
+    public List<County> load() throws InterruptedException {
+        List<String> states = states();
+        System.out.println("CensusIngestService: Fetching county data for " + states.size() + " states from Census API...");
+        List<RawCounty> raw = loadStates(states);
+        if (raw.isEmpty()) {
+            System.err.println("CensusIngestService: No county data loaded");
+            return List.of();
+        }
+        return normalize(raw);
+    }
+
+    private List<String> states() {
+        if (censusStates == null || censusStates.isBlank()) return ALL_STATES;
+        return Arrays.stream(censusStates.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(s -> s.length() == 1 ? "0" + s : s)
+                .toList();
+    }
+
+    /** Fetches all states concurrently; states that still fail after retries are logged and skipped. */
+    List<RawCounty> loadStates(List<String> states) throws InterruptedException {
+        Semaphore permits = new Semaphore(Math.max(1, concurrency));
+        Map<String, Future<List<RawCounty>>> futures = new TreeMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String state : states) {
+                futures.put(state, executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return loadState(state);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+        List<RawCounty> all = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, Future<List<RawCounty>>> e : futures.entrySet()) {
+            try {
+                all.addAll(e.getValue().get());
+            } catch (Exception ex) {
+                failed.add(e.getKey());
+                System.err.println("CensusIngestService: State " + e.getKey() + " failed: " + rootMessage(ex));
+            }
+        }
+        if (!failed.isEmpty()) {
+            System.err.println("CensusIngestService: Skipped states " + failed + "; they will be retried on the next load");
+        }
+        return all;
+    }
+
+    private List<RawCounty> loadState(String state) throws IOException, InterruptedException {
+        Path checkpoint = Paths.get(checkpointDir, "state-" + state + ".json");
+        if (isFresh(checkpoint)) {
+            try {
+                return parse(Files.readAllBytes(checkpoint), state);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("CensusIngestService: Discarding bad checkpoint " + checkpoint + ": " + e.getMessage());
+            }
+        }
+
+        IOException last = null;
+        for (int attempt = 1; attempt <= Math.max(1, maxAttempts); attempt++) {
+            try {
+                byte[] body = fetch(state);
+                List<RawCounty> counties = parse(body, state);
+                writeCheckpoint(checkpoint, body);
+                return counties;
+            } catch (IOException | RuntimeException e) {
+                last = e instanceof IOException io ? io : new IOException(e.getMessage(), e);
+                // A bad key, year or state code fails the same way every time
+                if (!retryable(e)) throw last;
+                if (attempt < maxAttempts) {
+                    Thread.sleep(1000L << (attempt - 1)); // 1s, 2s, 4s...
+                }
+            }
+        }
+        throw last;
+    }
+
+    /** Everything but a 4xx from the Census API; 429 is only a rate limit and worth waiting out. */
+    private static boolean retryable(Exception e) {
+        return !(e instanceof HttpClientErrorException http) || http.getStatusCode().value() == 429;
+    }
+
+    private byte[] fetch(String state) throws IOException {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(10000);
+        factory.setReadTimeout(30000);
+        RestTemplate restTemplate = new RestTemplate(factory);
+        String url = "https://api.census.gov/data/" + censusYear + "/acs/acs5?get=" + VARIABLES
+                + "&for=county:*&in=state:" + state
+                + (censusApiKey != null && !censusApiKey.isBlank() ? "&key=" + censusApiKey : "");
+        byte[] body = restTemplate.getForObject(url, byte[].class);
+        if (body == null || body.length == 0) throw new IOException("Empty Census API response");
+        return body;
+    }
+
+    /**
+     * Streams the ACS array-of-arrays response. The header row tells us which column holds
+     * which variable, so the query's column order is not assumed. Rows without a usable FIPS code
+     * or name are logged and skipped rather than failing the whole state.
+     */
+    List<RawCounty> parse(byte[] body, String state) throws IOException {
+        List<RawCounty> out = new ArrayList<>();
+        try (JsonParser p = jsonFactory.createParser(body)) {
+            if (p.nextToken() != JsonToken.START_ARRAY) throw new IOException("Invalid Census API response");
+            List<String> header = readRow(p);
+            if (header == null) throw new IOException("Invalid Census API response");
+            int name = header.indexOf("NAME"), income = header.indexOf("B19013_001E"), pop = header.indexOf("B01003_001E");
+            int labor = header.indexOf("B23025_003E"), unemployed = header.indexOf("B23025_005E");
+            int rent = header.indexOf("B25064_001E");
+            // Absent from checkpoints written before margins were requested; those read as 0
+            int incomeMoe = header.indexOf("B19013_001M"), laborMoe = header.indexOf("B23025_003M");
+            int unemployedMoe = header.indexOf("B23025_005M"), rentMoe = header.indexOf("B25064_001M");
+            int stateCol = header.indexOf("state"), countyCol = header.indexOf("county");
+            if (name < 0 || countyCol < 0) throw new IOException("Census response missing NAME/county columns");
+
+            List<String> row;
+            while ((row = readRow(p)) != null) {
+                long fips = fips(row, stateCol, countyCol, state);
+                if (fips < 0 || name >= row.size() || row.get(name) == null) {
+                    System.err.println("CensusIngestService: Skipping malformed row for state " + state + ": " + row);
+                    continue;
+                }
+                out.add(new RawCounty(
+                        fips,
+                        countyName(row.get(name)),
+                        (int) number(row, pop, 50000),
+                        number(row, income, Double.NaN),
+                        number(row, labor, 0),
+                        number(row, unemployed, 0),
+                        number(row, rent, 0),
+                        number(row, incomeMoe, 0),
+                        number(row, laborMoe, 0),
+                        number(row, unemployedMoe, 0),
+                        number(row, rentMoe, 0)));
+            }
+        }
+        return out;
+    }
+
+    /** 5-digit state+county FIPS code of the row, or -1 when either part is missing or not a number. */
+    private static long fips(List<String> row, int stateCol, int countyCol, String state) {
+        String st = stateCol < 0 ? state : stateCol < row.size() ? row.get(stateCol) : null;
+        String county = countyCol < row.size() ? row.get(countyCol) : null;
+        if (st == null || county == null) return -1;
+        try {
+            long s = Long.parseLong(st.trim()), c = Long.parseLong(county.trim());
+            return s >= 0 && s < 100 && c >= 0 && c < 1000 ? s * 1000 + c : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Next inner array as strings (JSON nulls kept as null), or null at the end of the outer array. */
+    private static List<String> readRow(JsonParser p) throws IOException {
+        JsonToken t = p.nextToken();
+        if (t == JsonToken.END_ARRAY || t == null) return null;
+        if (t != JsonToken.START_ARRAY) throw new IOException("Expected row array, got " + t);
+        List<String> row = new ArrayList<>(10);
+        while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+            row.add(t == JsonToken.VALUE_NULL ? null : p.getText());
+        }
+        return row;
+    }
+
+    /**
+     * ACS uses nulls and large negative sentinels (e.g. -666666666) for missing estimates; for
+     * margins the sentinels mean "not computed" or "controlled", both read as the fallback 0.
+     */
+    private static double number(List<String> row, int col, double fallback) {
+        if (col < 0 || col >= row.size() || row.get(col) == null) return fallback;
+        try {
+            double v = Double.parseDouble(row.get(col));
+            return v < 0 ? fallback : v;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /** "Wake County, North Carolina" -> "Wake" */
+    private static String countyName(String acsName) {
+        int comma = acsName.indexOf(',');
+        String n = comma >= 0 ? acsName.substring(0, comma) : acsName;
+        return n.replace(" County", "").trim();
+    }
+
+    /**
+     * Turns raw ACS values into 0-1 indicators: median income and rent burden (annual rent over
+     * household income) are min-max normalized across all loaded counties; unemployment is
+     * unemployed / civilian labor force. Missing incomes are left out of the range and score as 0.
+     * The ACS has no hazard variable, so disaster risk keeps its previous default.
+     *
+     * Margins of error are carried into the same units with the Census Bureau's approximations
+     * for derived estimates: proportions for unemployment, ratios for rent burden, then divided
+     * by the min-max range like the values themselves.
+     */
+    List<County> normalize(List<RawCounty> raw) {
+        double[] income = raw.stream().mapToDouble(RawCounty::medianIncome).toArray();
+        double[] burden = raw.stream()
+                .mapToDouble(r -> r.medianIncome() > 0 && r.medianRent() > 0 ? r.medianRent() * 12 / r.medianIncome() : Double.NaN)
+                .toArray();
+        double[] burdenMoe = new double[raw.size()];
+        for (int i = 0; i < raw.size(); i++) {
+            RawCounty r = raw.get(i);
+            if (Double.isNaN(burden[i])) continue;
+            burdenMoe[i] = ratioMoe(burden[i], r.medianRentMoe() * 12, r.medianIncome(), r.medianIncomeMoe());
+        }
+        double[] rawBurden = burden.clone();
+        double incomeRange = minMax(income, 0.0);
+        double burdenRange = minMax(burden, 0.5);
+
+        List<County> counties = new ArrayList<>(raw.size());
+        for (int i = 0; i < raw.size(); i++) {
+            RawCounty r = raw.get(i);
+            double unemployment = r.laborForce() > 0 ? r.unemployed() / r.laborForce() : 0.05;
+            double unemploymentMoe = r.laborForce() > 0
+                    ? proportionMoe(unemployment, r.unemployedMoe(), r.laborForce(), r.laborForceMoe()) : 0.0;
+            double incomeMoe = incomeRange > 0 && !Double.isNaN(r.medianIncome()) ? r.medianIncomeMoe() / incomeRange : 0.0;
+            County c = new County(r.fips(), r.name(), r.population(), income[i], unemployment, burden[i], PLACEHOLDER_DISASTER_RISK,
+                    incomeMoe, unemploymentMoe, burdenRange > 0 ? burdenMoe[i] / burdenRange : 0.0);
+            // Raw values let the store keep the scale consistent as counties change; NaN marks missing
+            c.setMedianIncomeRaw(r.medianIncome());
+            c.setCostOfLivingRaw(rawBurden[i]);
+            counties.add(c);
+        }
+        return counties;
+    }
+
+    /** MOE of p = x / y where x is a subset of y; falls back to the ratio formula when the root goes negative. */
+    static double proportionMoe(double p, double xMoe, double y, double yMoe) {
+        double radicand = xMoe * xMoe - p * p * yMoe * yMoe;
+        if (radicand < 0) radicand = xMoe * xMoe + p * p * yMoe * yMoe;
+        return Math.sqrt(radicand) / y;
+    }
+
+    /** MOE of r = x / y for independent estimates x and y. */
+    static double ratioMoe(double r, double xMoe, double y, double yMoe) {
+        return Math.sqrt(xMoe * xMoe + r * r * yMoe * yMoe) / y;
+    }
+
+    /** In-place min-max scaling to 0..1; NaN entries get the fallback. Returns the range (max - min). */
+    private static double minMax(double[] v, double fallback) {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (double x : v) {
+            if (Double.isNaN(x)) continue;
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+        }
+        double range = max - min;
+        for (int i = 0; i < v.length; i++) {
+            if (Double.isNaN(v[i])) v[i] = fallback;
+            else if (range > 0) v[i] = (v[i] - min) / range;
+        }
+        return range;
+    }
+
+    private boolean isFresh(Path checkpoint) {
+        try {
+            if (!Files.isRegularFile(checkpoint)) return false;
+            Instant modified = Files.getLastModifiedTime(checkpoint).toInstant();
+            return modified.isAfter(Instant.now().minus(Duration.ofHours(checkpointMaxAgeHours)));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void writeCheckpoint(Path checkpoint, byte[] body) {
+        try {
+            Files.createDirectories(checkpoint.getParent());
+            Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            Files.write(tmp, body);
+            Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("CensusIngestService: Could not write checkpoint " + checkpoint + ": " + e.getMessage());
+        }
+    }
+
+    private static String rootMessage(Throwable t) {
+        while (t.getCause() != null) t = t.getCause();
+        return t.getMessage();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.resilience.service;
+
+/**
+ * Min-max scale of one raw column, kept up to date as rows change.
+ *
+ * Besides the running min and max it counts how many rows sit on each extreme, so replacing a
+ * value costs O(1) unless the last row holding an extreme moves away from it; only then is the
+ * column rescanned. NaN values are not on the scale.
+ *
+ * The scale the normalized column was last computed with ("applied") is kept separately, so
+ * {@link CountyStore} can tell whether anything needs renormalizing at all.
+ */
+final class ColumnScale {
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private int minCount;
+    private int maxCount;
+    // The last row on an extreme left it; min and max are unknown until the next rescan
+    private boolean rescan;
+
+    private double appliedMin = Double.NaN;
+    private double appliedRange;
+
+    ColumnScale() {
+    }
+
+    private ColumnScale(ColumnScale other) {
+        min = other.min;
+        max = other.max;
+        minCount = other.minCount;
+        maxCount = other.maxCount;
+        rescan = other.rescan;
+        appliedMin = other.appliedMin;
+        appliedRange = other.appliedRange;
+    }
+
+    ColumnScale copy() {
+        return new ColumnScale(this);
+    }
+
+    /** Records that a row's raw value changed from old to v (either may be NaN). */
+    void replace(double old, double v) {
+        if (Double.compare(old, v) == 0) return;
+        if (!Double.isNaN(old)) {
+            if (old == min && --minCount == 0) rescan = true;
+            if (old == max && --maxCount == 0) rescan = true;
+        }
+        if (!Double.isNaN(v)) {
+            if (v < min) {
+                min = v;
+                minCount = 1;
+            } else if (v == min) {
+                minCount++;
+            }
+            if (v > max) {
+                max = v;
+                maxCount = 1;
+            } else if (v == max) {
+                maxCount++;
+            }
+        }
+    }
+
+    /**
+     * Brings min and max up to date (rescanning the first size values if needed) and makes them
+     * the applied scale. Returns false when the applied scale did not change.
+     */
+    boolean apply(double[] raw, int size) {
+        if (rescan) {
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            minCount = 0;
+            maxCount = 0;
+            for (int i = 0; i < size; i++) replace(Double.NaN, raw[i]);
+            rescan = false;
+        }
+        double range = max >= min ? max - min : 0;
+        double nextMin = max >= min ? min : Double.NaN;
+        if (Double.compare(nextMin, appliedMin) == 0 && range == appliedRange) return false;
+        appliedMin = nextMin;
+        appliedRange = range;
+        return true;
+    }
+
+    /** True when the applied scale is known to still match the data. */
+    boolean isApplied() {
+        return !rescan && (max >= min ? min == appliedMin && max - min == appliedRange : Double.isNaN(appliedMin));
+    }
+
+    /** 0-1 position on the applied scale; 0.5 when every value is the same. */
+    double normalize(double raw) {
+        return appliedRange > 0 ? (raw - appliedMin) / appliedRange : 0.5;
+    }
+
+    /** Raw value for a 0-1 input on the applied scale, or NaN when there is no usable scale. */
+    double denormalize(double v) {
+        return appliedRange > 0 && v >= 0 && v <= 1 ? appliedMin + v * appliedRange : Double.NaN;
+    }
+
+    double appliedRange() {
+        return appliedRange;
+    }
+}
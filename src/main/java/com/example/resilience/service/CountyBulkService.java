@@ -0,0 +1,192 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.County;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk county upserts, e.g. the nightly indicator feed.
+ *
+ * The body is either a JSON array of counties or NDJSON (one county per line) and is read as a
+ * stream, one county at a time. Rows that fail to parse or validate are reported by position and
+ * skipped; the rest go to {@link ResilienceService#saveCounties} as one copy-on-write batch, so
+ * the columns are copied and the cached rankings rescored once per request rather than per row.
+ * A county listed twice keeps its last entry.
+ */
+@Service
+public class CountyBulkService {
+
+    /** A rejected row: 1-based position in the body (the line for NDJSON) and why. */
+    public record RowError(int row, Long id, String error) {
+    }
+
+    public record Result(int received, int applied, int rejected, long generation, long elapsedMs,
+                         List<RowError> errors, boolean errorsTruncated) {
+    }
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final ResilienceService resilienceService;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final int maxRows;
+
+    public CountyBulkService(ResilienceService resilienceService,
+                             @Value("${counties.bulk.max-rows:100000}") int maxRows) {
+        this.resilienceService = resilienceService;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Parses, validates and applies the body. Throws IllegalArgumentException, with nothing
+     * applied, when a JSON array is malformed or the body has more than counties.bulk.max-rows rows.
+     */
+    public Result upsert(InputStream body) throws IOException {
+        long start = System.currentTimeMillis();
+        List<County> valid = new ArrayList<>();
+        List<RowError> errors = new ArrayList<>();
+        int[] received = {0};
+        RowSink sink = (row, node, parseError) -> {
+            if (++received[0] > maxRows) throw new IllegalArgumentException("At most " + maxRows + " rows per request");
+            County c = null;
+            String error = parseError;
+            if (error == null) {
+                try {
+                    c = mapper.treeToValue(node, County.class);
+                    error = validate(c);
+                } catch (JsonProcessingException e) {
+                    error = e.getOriginalMessage();
+                }
+            }
+            if (error == null) {
+                valid.add(c);
+            } else {
+                errors.add(new RowError(row, c != null ? c.getId() : idOf(node), error));
+            }
+        };
+
+        BufferedInputStream in = new BufferedInputStream(body);
+        if (firstSignificantByte(in) == '[') {
+            readArray(in, sink);
+        } else {
+            readLines(in, sink);
+        }
+
+        Dataset dataset = resilienceService.saveCounties(valid);
+        long elapsed = System.currentTimeMillis() - start;
+        System.out.println("CountyBulkService: Applied " + valid.size() + " of " + received[0] + " counties as generation "
+                + dataset.generation() + " in " + elapsed + " ms");
+        boolean truncated = errors.size() > MAX_REPORTED_ERRORS;
+        return new Result(received[0], valid.size(), errors.size(), dataset.generation(), elapsed,
+                truncated ? errors.subList(0, MAX_REPORTED_ERRORS) : errors, truncated);
+    }
+
+    /** Receives each row as a tree, or with a parse error instead. */
+    private interface RowSink {
+        void accept(int row, JsonNode node, String parseError);
+    }
+
+    /** Streams the array element by element; a syntax error leaves no way to resync, so it fails the request. */
+    private void readArray(InputStream in, RowSink sink) throws IOException {
+        try (JsonParser p = mapper.getFactory().createParser(in)) {
+            p.nextToken();
+            int row = 0;
+            JsonToken t;
+            while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (t == null) throw new IllegalArgumentException("Unterminated JSON array");
+                row++;
+                if (t == JsonToken.START_OBJECT) {
+                    sink.accept(row, p.readValueAsTree(), null);
+                } else {
+                    p.skipChildren();
+                    sink.accept(row, null, "Expected a county object, got " + t);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON at line " + e.getLocation().getLineNr()
+                    + ", column " + e.getLocation().getColumnNr() + ": " + e.getOriginalMessage());
+        }
+    }
+
+    /** NDJSON: every line is parsed on its own, so a bad line is just a rejected row. Blank lines are skipped. */
+    private void readLines(InputStream in, RowSink sink) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        int lineNr = 0;
+        while ((line = reader.readLine()) != null) {
+            if (lineNr++ == 0 && line.startsWith("\uFEFF")) line = line.substring(1);
+            if (line.isBlank()) continue;
+            try {
+                JsonNode node = mapper.readTree(line);
+                if (node.isObject()) {
+                    sink.accept(lineNr, node, null);
+                } else {
+                    sink.accept(lineNr, null, "Expected a county object");
+                }
+            } catch (JsonProcessingException e) {
+                sink.accept(lineNr, null, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    /** Null when the county can be stored; otherwise the first problem found. */
+    public static String validate(County c) {
+        if (c.getId() == null || c.getId() <= 0) return "id is required and must be positive";
+        if (c.getPopulation() < 0) return "population must not be negative";
+        if (!unit(c.getMedianIncome())) return "medianIncome must be between 0 and 1 (send dollars as medianIncomeRaw)";
+        if (c.getMedianIncomeRaw() != null && !finiteAtLeastZero(c.getMedianIncomeRaw())) {
+            return "medianIncomeRaw must be a non-negative number";
+        }
+        if (c.getCostOfLivingRaw() != null && !finiteAtLeastZero(c.getCostOfLivingRaw())) {
+            return "costOfLivingRaw must be a non-negative number";
+        }
+        if (!unit(c.getUnemploymentRate())) return "unemploymentRate must be between 0 and 1";
+        if (!unit(c.getCostOfLivingIndex())) return "costOfLivingIndex must be between 0 and 1 (send rent burden as costOfLivingRaw)";
+        if (!unit(c.getDisasterRisk())) return "disasterRisk must be between 0 and 1";
+        if (!finiteAtLeastZero(c.getMedianIncomeMoe()) || !finiteAtLeastZero(c.getUnemploymentRateMoe())
+                || !finiteAtLeastZero(c.getCostOfLivingIndexMoe())) {
+            return "margins of error must be non-negative numbers";
+        }
+        return null;
+    }
+
+    private static boolean unit(double v) {
+        return v >= 0 && v <= 1;
+    }
+
+    private static boolean finiteAtLeastZero(double v) {
+        return Double.isFinite(v) && v >= 0;
+    }
+
+    private static Long idOf(JsonNode node) {
+        JsonNode id = node == null ? null : node.get("id");
+        return id != null && id.canConvertToLong() ? id.asLong() : null;
+    }
+
+    /** First non-whitespace byte (after a UTF-8 BOM), leaving the stream where it was; -1 if empty. */
+    private static int firstSignificantByte(BufferedInputStream in) throws IOException {
+        in.mark(4096);
+        try {
+            for (int i = 0; i < 4096; i++) {
+                int b = in.read();
+                if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != 0xEF && b != 0xBB && b != 0xBF) return b;
+            }
+            return -1;
+        } finally {
+            in.reset();
+        }
+    }
+}
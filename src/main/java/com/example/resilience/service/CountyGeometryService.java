@@ -0,0 +1,339 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.CountyShape;
+import com.example.resilience.model.GeometryDetail;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps county polygons in memory so map requests never wait on the upstream GIS service.
+ *
+ * On startup the cache is filled from the last persisted download, or from the bundled
+ * static/nc-counties.geojson. A scheduled refresh then re-checks the upstream with
+ * If-None-Match / If-Modified-Since and only re-parses when it actually changed.
+ * Failures leave the current geometry in place.
+ *
+ * Each load also precomputes simplified LOW and MEDIUM tiers (see {@link GeometrySimplifier})
+ * so zoomed-out maps don't ship full-resolution borders.
+ */
+@Service
+public class CountyGeometryService {
+
+    private static final String BUNDLED_GEOJSON = "static/nc-counties.geojson";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final RestTemplate restTemplate;
+    private final String upstreamUrl;
+    private final Path cacheFile;
+    private final Path metaFile;
+    private final Set<String> states;
+
+    private final Map<GeometryDetail, Double> tolerances = new EnumMap<>(GeometryDetail.class);
+
+    private final AtomicReference<GeometrySet> current = new AtomicReference<>(
+            new GeometrySet(List.of(), Map.of(), Map.of(), "none"));
+    private volatile String etag;
+    private volatile String lastModified;
+
+    public CountyGeometryService(
+            @Value("${geometry.upstream-url:}") String upstreamUrl,
+            @Value("${geometry.cache-file:data/county-geometry.geojson}") String cacheFile,
+            @Value("${geometry.states:}") String states,
+            @Value("${geometry.simplify.low-tolerance:0.01}") double lowTolerance,
+            @Value("${geometry.simplify.medium-tolerance:0.002}") double mediumTolerance
+    ) {
+        this.upstreamUrl = upstreamUrl;
+        this.cacheFile = Paths.get(cacheFile);
+        this.metaFile = Paths.get(cacheFile + ".meta");
+        this.states = Arrays.stream(states.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        tolerances.put(GeometryDetail.LOW, lowTolerance);
+        tolerances.put(GeometryDetail.MEDIUM, mediumTolerance);
+        tolerances.put(GeometryDetail.FULL, 0.0);
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(30000);
+        factory.setReadTimeout(30000);
+        this.restTemplate = new RestTemplate(factory);
+    }
+
+    @PostConstruct
+    void loadLocal() {
+        if (Files.isRegularFile(cacheFile)) {
+            try (InputStream in = Files.newInputStream(cacheFile)) {
+                publish(parse(mapper.readTree(in)), "cache:" + cacheFile);
+                readMeta();
+                return;
+            } catch (Exception e) {
+                System.err.println("CountyGeometryService: Ignoring unreadable cache " + cacheFile + ": " + e.getMessage());
+            }
+        }
+        try (InputStream in = new ClassPathResource(BUNDLED_GEOJSON).getInputStream()) {
+            publish(parse(mapper.readTree(in)), "bundled:" + BUNDLED_GEOJSON);
+        } catch (Exception e) {
+            System.err.println("CountyGeometryService: Failed to load bundled geometry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shapes plus, per detail tier, their (simplified) polygons and pre-serialized GeoJSON
+     * geometry, all index-aligned. Replaced wholesale on refresh, so one call gives a consistent set.
+     */
+    public record GeometrySet(List<CountyShape> shapes,
+                              Map<GeometryDetail, List<double[][][]>> polygons,
+                              Map<GeometryDetail, List<byte[]>> geometryJson,
+                              String source) {
+
+        public List<double[][][]> polygons(GeometryDetail detail) {
+            return polygons.getOrDefault(detail, List.of());
+        }
+
+        public List<byte[]> geometryJson(GeometryDetail detail) {
+            return geometryJson.getOrDefault(detail, List.of());
+        }
+    }
+
+    public GeometrySet current() {
+        return current.get();
+    }
+
+    /** Current county outlines; the list is immutable and replaced wholesale on refresh. */
+    public List<CountyShape> shapes() {
+        return current.get().shapes();
+    }
+
+    public String source() {
+        return current.get().source();
+    }
+
+    /** Conditional re-download from the upstream; a 304 or any failure keeps the cached geometry. */
+    @Scheduled(initialDelayString = "${geometry.refresh-initial-delay-ms:60000}",
+            fixedDelayString = "${geometry.refresh-interval-ms:21600000}")
+    public void refresh() {
+        if (upstreamUrl == null || upstreamUrl.isBlank()) return;
+        HttpHeaders headers = new HttpHeaders();
+        if (etag != null) headers.setIfNoneMatch(etag);
+        if (lastModified != null) headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        try {
+            ResponseEntity<byte[]> response = restTemplate.exchange(upstreamUrl, HttpMethod.GET,
+                    new HttpEntity<>(headers), byte[].class);
+            if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) return;
+            byte[] body = response.getBody();
+            if (body == null) return;
+            List<CountyShape> parsed = parse(mapper.readTree(body));
+            if (parsed.isEmpty()) {
+                System.err.println("CountyGeometryService: Upstream returned no usable features; keeping cache");
+                return;
+            }
+            publish(parsed, "upstream:" + upstreamUrl);
+            etag = response.getHeaders().getETag();
+            lastModified = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+            persist(body);
+        } catch (Exception e) {
+            System.err.println("CountyGeometryService: Refresh failed, serving cached geometry: " + e.getMessage());
+        }
+    }
+
+    private void publish(List<CountyShape> parsed, String from) throws IOException {
+        Map<GeometryDetail, List<double[][][]>> polygons = new EnumMap<>(GeometryDetail.class);
+        Map<GeometryDetail, List<byte[]>> json = new EnumMap<>(GeometryDetail.class);
+        StringBuilder sizes = new StringBuilder();
+        for (GeometryDetail detail : GeometryDetail.values()) {
+            List<double[][][]> tier = GeometrySimplifier.simplify(parsed, tolerances.get(detail));
+            // Serialize each geometry once here so responses can copy the bytes verbatim
+            List<byte[]> bytes = new ArrayList<>(tier.size());
+            for (double[][][] p : tier) bytes.add(geometryJson(p));
+            polygons.put(detail, Collections.unmodifiableList(tier));
+            json.put(detail, Collections.unmodifiableList(bytes));
+            sizes.append(' ').append(detail.name().toLowerCase()).append('=')
+                    .append(GeometrySimplifier.vertexCount(tier));
+        }
+        current.set(new GeometrySet(parsed, polygons, json, from));
+        System.out.println("CountyGeometryService: Loaded " + parsed.size() + " county shapes from " + from
+                + " (vertices:" + sizes + ")");
+    }
+
+    private byte[] geometryJson(double[][][] polygons) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(buf)) {
+            boolean multi = polygons.length > 1;
+            gen.writeStartObject();
+            gen.writeStringField("type", multi ? "MultiPolygon" : "Polygon");
+            gen.writeArrayFieldStart("coordinates");
+            for (double[][] polygon : polygons) {
+                if (multi) gen.writeStartArray();
+                for (double[] ring : polygon) {
+                    gen.writeStartArray();
+                    for (int i = 0; i < ring.length; i += 2) {
+                        gen.writeStartArray();
+                        gen.writeNumber(ring[i]);
+                        gen.writeNumber(ring[i + 1]);
+                        gen.writeEndArray();
+                    }
+                    gen.writeEndArray();
+                }
+                if (multi) gen.writeEndArray();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+        return buf.toByteArray();
+    }
+
+    List<CountyShape> parse(JsonNode root) {
+        if (root == null || !"FeatureCollection".equals(root.path("type").asText())) {
+            throw new IllegalArgumentException("Not a GeoJSON FeatureCollection");
+        }
+        List<CountyShape> out = new ArrayList<>();
+        for (JsonNode feature : root.path("features")) {
+            CountyShape shape = toShape(feature);
+            if (shape != null) out.add(shape);
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    private CountyShape toShape(JsonNode feature) {
+        JsonNode props = feature.path("properties");
+        JsonNode geometry = feature.path("geometry");
+        String state = text(props, "STATE", "STATEFP");
+        if (state == null && states.size() == 1) state = states.iterator().next();
+        if (!states.isEmpty() && (state == null || !states.contains(state))) return null;
+
+        String name = text(props, "NAME", "CountyName");
+        if (name == null) return null;
+
+        double[][][] polygons;
+        String type = geometry.path("type").asText();
+        if ("Polygon".equals(type)) {
+            polygons = new double[][][]{polygon(geometry.path("coordinates"))};
+        } else if ("MultiPolygon".equals(type)) {
+            JsonNode coords = geometry.path("coordinates");
+            polygons = new double[coords.size()][][];
+            for (int i = 0; i < coords.size(); i++) polygons[i] = polygon(coords.get(i));
+        } else {
+            return null;
+        }
+
+        double minLon = Double.POSITIVE_INFINITY, minLat = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        for (double[][] polygon : polygons) {
+            double[] outer = polygon[0];
+            for (int i = 0; i < outer.length; i += 2) {
+                minLon = Math.min(minLon, outer[i]);
+                maxLon = Math.max(maxLon, outer[i]);
+                minLat = Math.min(minLat, outer[i + 1]);
+                maxLat = Math.max(maxLat, outer[i + 1]);
+            }
+        }
+
+        Map<String, Object> base = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = props.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> f = fields.next();
+            JsonNode v = f.getValue();
+            base.put(f.getKey(), v.isNumber() ? v.numberValue() : v.isNull() ? null : v.asText());
+        }
+        return new CountyShape(fips(feature, props, state), name, Collections.unmodifiableMap(base),
+                polygons, minLon, minLat, maxLon, maxLat);
+    }
+
+    private static double[][] polygon(JsonNode rings) {
+        double[][] out = new double[rings.size()][];
+        for (int r = 0; r < rings.size(); r++) {
+            JsonNode ring = rings.get(r);
+            double[] xy = new double[ring.size() * 2];
+            for (int i = 0; i < ring.size(); i++) {
+                xy[2 * i] = ring.get(i).get(0).asDouble();
+                xy[2 * i + 1] = ring.get(i).get(1).asDouble();
+            }
+            out[r] = xy;
+        }
+        return out;
+    }
+
+    /** 5-digit state+county FIPS code, or 0 when the source does not carry one. */
+    private static long fips(JsonNode feature, JsonNode props, String state) {
+        String id = feature.path("id").asText("");
+        if (id.length() == 5 && id.chars().allMatch(Character::isDigit)) return Long.parseLong(id);
+        String county = text(props, "COUNTY", "COUNTYFP", "FIPS");
+        try {
+            if (state != null && county != null) return Long.parseLong(state) * 1000 + Long.parseLong(county) % 1000;
+        } catch (NumberFormatException ignored) {
+            // fall through
+        }
+        return 0L;
+    }
+
+    private static String text(JsonNode props, String... keys) {
+        for (String k : keys) {
+            JsonNode v = props.get(k);
+            if (v != null && !v.isNull() && !v.asText().isBlank()) return v.asText().trim();
+        }
+        return null;
+    }
+
+    private void persist(byte[] body) {
+        try {
+            if (cacheFile.getParent() != null) Files.createDirectories(cacheFile.getParent());
+            Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            Files.write(tmp, body);
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Properties meta = new Properties();
+            if (etag != null) meta.setProperty("etag", etag);
+            if (lastModified != null) meta.setProperty("lastModified", lastModified);
+            try (Writer w = Files.newBufferedWriter(metaFile)) {
+                meta.store(w, "County geometry cache validators");
+            }
+        } catch (IOException e) {
+            System.err.println("CountyGeometryService: Could not persist geometry cache: " + e.getMessage());
+        }
+    }
+
+    private void readMeta() {
+        if (!Files.isRegularFile(metaFile)) return;
+        try (Reader r = Files.newBufferedReader(metaFile)) {
+            Properties meta = new Properties();
+            meta.load(r);
+            etag = meta.getProperty("etag");
+            lastModified = meta.getProperty("lastModified");
+        } catch (IOException e) {
+            System.err.println("CountyGeometryService: Ignoring unreadable cache metadata: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.CountyShape;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Matches geometry features to store rows: by FIPS id, which is how DataLoader keys counties,
+ * falling back to the upper-case county name for geometry sources that carry no FIPS code.
+ * Meant to be created per request over one dataset generation; the name lookup is only built if a fallback is needed.
+ */
+public final class CountyJoin {
+
+    private final Dataset dataset;
+    private Map<String, CountyRow> byName;
+
+    public CountyJoin(Dataset dataset) {
+        this.dataset = dataset;
+    }
+
+    public CountyRow rowFor(CountyShape shape) {
+        if (shape.fips() > 0) return dataset.findRow(shape.fips());
+        if (byName == null) {
+            byName = dataset.rows().stream()
+                    .collect(Collectors.toMap(
+                            c -> c.getName().replace(" County", "").trim().toUpperCase(),
+                            c -> c,
+                            (a, b) -> a
+                    ));
+        }
+        return byName.get(shape.joinKey());
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.UsState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the counties and states a free-text question refers to.
+ *
+ * Built once per {@link Dataset} generation: normalized county name to rows, rows per state,
+ * and names bucketed by first letter for fuzzy lookups. Matching tries 3-, 2- and 1-word phrases
+ * exactly, then single words and pairs within a small edit distance ("Durhm" finds Durham).
+ * Names shared by several states are narrowed to the states the question mentions, otherwise
+ * the most populous few are kept.
+ */
+final class CountyNameIndex {
+
+    private static final int MAX_AMBIGUOUS = 3;
+    private static final int MAX_MATCHES = 8;
+
+    // Words that never start a county lookup on their own
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "best", "better", "between", "bottom", "by", "compare",
+            "compared", "cost", "counties", "county", "data", "disaster", "does", "do", "for", "from", "has",
+            "have", "high", "higher", "highest", "how", "i", "in", "income", "is", "it", "least", "less",
+            "living", "low", "lower", "lowest", "median", "more", "most", "of", "on", "or", "population",
+            "rank", "ranking", "resilience", "resilient", "risk", "score", "scores", "state", "states",
+            "than", "the", "to", "top", "unemployment", "versus", "vs", "what", "which", "who", "why",
+            "with", "worst", "average", "about", "tell", "me", "show", "list", "parish", "borough");
+
+    // English words that are also county names; only matched when written capitalized
+    private static final Set<String> COMMON_WORDS = Set.of(
+            "union", "lake", "grant", "clay", "hall", "young", "love", "king", "day", "bath", "cross",
+            "early", "hood", "white", "black", "green", "gray", "ocean", "summit", "story", "park", "page",
+            "price", "worth", "wayne", "washington", "lincoln", "jefferson", "franklin",
+            "marion", "jackson", "madison", "lee", "long", "mercer", "major", "harmon", "power", "rich",
+            "sharp", "stone", "butte", "custer", "pike", "hill", "field", "hale", "bell", "hart", "trinity");
+
+    /** A county row the question refers to, and whether it was found by fuzzy matching. */
+    record Match(int row, String matched, boolean fuzzy) {
+    }
+
+    /** Everything found in one question. */
+    record Retrieval(List<Match> counties, List<UsState> states) {
+        boolean isEmpty() {
+            return counties.isEmpty() && states.isEmpty();
+        }
+    }
+
+    private final CountyStore store;
+    private final Map<String, int[]> byName = new HashMap<>();
+    private final Map<Character, List<String>> byInitial = new HashMap<>();
+    private final Map<UsState, int[]> byState = new HashMap<>();
+
+    CountyNameIndex(CountyStore store) {
+        this.store = store;
+        Map<String, List<Integer>> names = new HashMap<>();
+        Map<UsState, List<Integer>> states = new HashMap<>();
+        for (int r = 0; r < store.size(); r++) {
+            String key = normalize(store.name(r));
+            if (!key.isEmpty()) names.computeIfAbsent(key, k -> new ArrayList<>()).add(r);
+            UsState state = UsState.ofCounty(store.id(r));
+            if (state != null) states.computeIfAbsent(state, k -> new ArrayList<>()).add(r);
+        }
+        names.forEach((k, rows) -> {
+            byName.put(k, toArray(rows));
+            byInitial.computeIfAbsent(k.charAt(0), c -> new ArrayList<>()).add(k);
+        });
+        states.forEach((s, rows) -> byState.put(s, toArray(rows)));
+    }
+
+    /** Rows of every county in the state, in row order; empty if none are loaded. */
+    int[] stateRows(UsState state) {
+        return byState.getOrDefault(state, new int[0]);
+    }
+
+    Retrieval find(String question) {
+        if (question == null || question.isBlank()) return new Retrieval(List.of(), List.of());
+        String[] raw = question.split("[^\\p{L}\\p{N}'.]+");
+        List<String> original = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        for (String w : raw) {
+            String n = normalizeWord(w);
+            if (n.isEmpty()) continue;
+            original.add(w.replace(".", ""));
+            words.add(n);
+        }
+
+        boolean[] used = new boolean[words.size()];
+        List<UsState> states = statesIn(original, words, used);
+        List<Match> matches = new ArrayList<>();
+        Set<Integer> seen = new LinkedHashSet<>();
+
+        for (int n = 3; n >= 1; n--) {
+            for (int i = 0; i + n <= words.size(); i++) {
+                if (anyUsed(used, i, n) || !mayStart(original, words, i, n)) continue;
+                String phrase = String.join(" ", words.subList(i, i + n));
+                int[] rows = byName.get(phrase);
+                boolean fuzzy = false;
+                if (rows == null && n <= 2 && phrase.length() >= 5) {
+                    String near = nearest(phrase);
+                    if (near != null) {
+                        rows = byName.get(near);
+                        fuzzy = true;
+                    }
+                }
+                if (rows == null) continue;
+                for (int k = i; k < i + n; k++) used[k] = true;
+                for (int row : narrow(rows, states)) {
+                    if (seen.add(row)) matches.add(new Match(row, phrase, fuzzy));
+                }
+            }
+        }
+        // Keep question order, capped so a long list doesn't crowd out everything else
+        matches.sort((a, b) -> Integer.compare(position(words, a.matched()), position(words, b.matched())));
+        return new Retrieval(matches.size() > MAX_MATCHES ? matches.subList(0, MAX_MATCHES) : matches, states);
+    }
+
+    /**
+     * State names ("North Carolina") in any case, postal codes ("NC") only in upper case. Their
+     * words are marked used so they aren't also read as county names, unless followed by
+     * "county" ("Washington County" is a county, not the state).
+     */
+    private static List<UsState> statesIn(List<String> original, List<String> words, boolean[] used) {
+        Set<UsState> found = new LinkedHashSet<>();
+        for (int i = 0; i < words.size(); i++) {
+            for (int n = 3; n >= 1; n--) {
+                if (i + n > words.size()) continue;
+                String phrase = String.join(" ", words.subList(i, i + n));
+                UsState s = UsState.lookup(phrase);
+                if (s == null) continue;
+                boolean postal = n == 1 && phrase.length() == 2;
+                if (postal && !original.get(i).equals(phrase.toUpperCase(Locale.ROOT))) continue;
+                String next = i + n < words.size() ? words.get(i + n) : "";
+                if (next.equals("county") || next.equals("parish")) continue;
+                found.add(s);
+                for (int k = i; k < i + n; k++) used[k] = true;
+                i += n - 1;
+                break;
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    private int[] narrow(int[] rows, List<UsState> states) {
+        if (rows.length == 1) return rows;
+        if (!states.isEmpty()) {
+            int[] inStates = Arrays.stream(rows)
+                    .filter(r -> states.contains(UsState.ofCounty(store.id(r))))
+                    .toArray();
+            if (inStates.length > 0) return inStates;
+        }
+        // Ambiguous without a state: the most populous few
+        return Arrays.stream(rows).boxed()
+                .sorted((a, b) -> Integer.compare(store.population(b), store.population(a)))
+                .limit(MAX_AMBIGUOUS)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static boolean mayStart(List<String> original, List<String> words, int i, int n) {
+        if (n > 1) return !STOPWORDS.contains(words.get(i)) && !STOPWORDS.contains(words.get(i + n - 1));
+        String w = words.get(i);
+        if (STOPWORDS.contains(w)) return false;
+        return !COMMON_WORDS.contains(w) || Character.isUpperCase(original.get(i).charAt(0));
+    }
+
+    /** Closest indexed name within 1 edit (2 for names of 8+ letters), or null if none or tied. */
+    private String nearest(String phrase) {
+        List<String> candidates = byInitial.get(phrase.charAt(0));
+        if (candidates == null) return null;
+        int limit = phrase.length() >= 8 ? 2 : 1;
+        String best = null;
+        int bestDistance = limit + 1;
+        boolean tied = false;
+        for (String c : candidates) {
+            if (Math.abs(c.length() - phrase.length()) > limit) continue;
+            int d = distance(phrase, c, limit);
+            if (d < bestDistance) {
+                best = c;
+                bestDistance = d;
+                tied = false;
+            } else if (d == bestDistance) {
+                tied = true;
+            }
+        }
+        return best == null || tied ? null : best;
+    }
+
+    /** Levenshtein distance with adjacent transpositions, giving up (returning limit + 1) once past limit. */
+    static int distance(String a, String b, int limit) {
+        int[] prev2 = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    v = Math.min(v, prev2[j - 2] + 1);
+                }
+                cur[j] = v;
+                rowMin = Math.min(rowMin, v);
+            }
+            if (rowMin > limit) return limit + 1;
+            int[] t = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[b.length()];
+    }
+
+    /** "St. Mary's County" -> "st marys" */
+    static String normalize(String name) {
+        if (name == null) return "";
+        String n = name.toLowerCase(Locale.ROOT)
+                .replace("saint ", "st ")
+                .replace("ste. ", "ste ")
+                .replace("st. ", "st ");
+        for (String suffix : new String[]{" city and borough", " census area", " municipality", " borough",
+                " parish", " county"}) {
+            if (n.endsWith(suffix)) {
+                n = n.substring(0, n.length() - suffix.length());
+                break;
+            }
+        }
+        StringBuilder sb = new StringBuilder(n.length());
+        for (String w : n.split("\\s+")) {
+            String word = normalizeWord(w);
+            if (word.isEmpty()) continue;
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(word);
+        }
+        return sb.toString();
+    }
+
+    private static String normalizeWord(String w) {
+        StringBuilder sb = new StringBuilder(w.length());
+        for (int i = 0; i < w.length(); i++) {
+            char c = Character.toLowerCase(w.charAt(i));
+            if (Character.isLetterOrDigit(c)) sb.append(c);
+        }
+        String s = sb.toString();
+        return s.equals("saint") ? "st" : s;
+    }
+
+    private static boolean anyUsed(boolean[] used, int from, int n) {
+        for (int k = from; k < from + n; k++) if (used[k]) return true;
+        return false;
+    }
+
+    private static int position(List<String> words, String phrase) {
+        String first = phrase.split(" ")[0];
+        int i = words.indexOf(first);
+        return i < 0 ? Integer.MAX_VALUE : i;
+    }
+
+    private static int[] toArray(List<Integer> rows) {
+        return rows.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
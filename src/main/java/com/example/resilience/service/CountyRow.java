@@ -0,0 +1,33 @@
+package com.example.resilience.service;
+
+/**
+ * Read-only view of one row in a {@link CountyStore}. Exposes the same getters as
+ * {@link com.example.resilience.model.County} so it serializes to the same JSON shape.
+ */
+public final class CountyRow {
+
+    private final CountyStore store;
+    private final int row;
+
+    CountyRow(CountyStore store, int row) {
+        this.store = store;
+        this.row = row;
+    }
+
+    int row() { return row; }
+
+    CountyStore store() { return store; }
+
+    public Long getId() { return store.id(row); }
+    public String getName() { return store.name(row); }
+    public int getPopulation() { return store.population(row); }
+    public double getMedianIncome() { return store.medianIncome(row); }
+    public double getUnemploymentRate() { return store.unemploymentRate(row); }
+    public double getCostOfLivingIndex() { return store.costOfLivingIndex(row); }
+    public double getDisasterRisk() { return store.disasterRisk(row); }
+    public double getMedianIncomeMoe() { return store.medianIncomeMoe(row); }
+    public double getUnemploymentRateMoe() { return store.unemploymentRateMoe(row); }
+    public double getCostOfLivingIndexMoe() { return store.costOfLivingIndexMoe(row); }
+    public Double getMedianIncomeRaw() { return CountyStore.orNull(store.medianIncomeRaw(row)); }
+    public Double getCostOfLivingRaw() { return CountyStore.orNull(store.costOfLivingRaw(row)); }
+}
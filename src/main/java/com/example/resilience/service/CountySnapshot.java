@@ -0,0 +1,126 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.County;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of the county dataset so startup doesn't depend on the Census API.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   magic "CRSN" | format version:int | row count:int | written at (epoch ms):long
+ *   ids:long[n] | population:int[n] | medianIncome:double[n] | unemploymentRate:double[n]
+ *   costOfLivingIndex:double[n] | disasterRisk:double[n]
+ *   medianIncomeMoe:double[n] | unemploymentRateMoe:double[n] | costOfLivingIndexMoe:double[n]   (version 2+)
+ *   medianIncomeRaw:double[n] | costOfLivingRaw:double[n]                                       (version 3+)
+ *   names: n x (byte length:int, UTF-8 bytes)
+ *   CRC32 of everything above:long
+ * </pre>
+ * Reads memory-map the file and verify the checksum before trusting any of it. Older files are
+ * still read: version 1 with zero margins of error, versions 1 and 2 with unknown (NaN) raw values.
+ */
+public final class CountySnapshot {
+
+    private static final int MAGIC = 0x4352534E; // "CRSN"
+    private static final int FORMAT_VERSION = 3;
+    private static final int COLUMNS = 9;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+
+    private CountySnapshot() {}
+
+    /** Writes the store atomically (temp file + rename). */
+    public static void write(CountyStore store, Path file) throws IOException {
+        int n = store.size();
+        List<byte[]> names = new ArrayList<>(n);
+        int nameBytes = 0;
+        for (int i = 0; i < n; i++) {
+            String name = store.name(i);
+            byte[] b = (name == null ? "" : name).getBytes(StandardCharsets.UTF_8);
+            names.add(b);
+            nameBytes += 4 + b.length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + n * (8 + 4 + COLUMNS * 8) + nameBytes + 8);
+        buf.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(n).putLong(System.currentTimeMillis());
+        buf.asLongBuffer().put(store.idColumn(), 0, n);
+        buf.position(buf.position() + n * 8);
+        buf.asIntBuffer().put(store.populationColumn(), 0, n);
+        buf.position(buf.position() + n * 4);
+        for (double[] column : new double[][]{store.medianIncomeColumn(), store.unemploymentRateColumn(),
+                store.costOfLivingIndexColumn(), store.disasterRiskColumn(), store.medianIncomeMoeColumn(),
+                store.unemploymentRateMoeColumn(), store.costOfLivingIndexMoeColumn(), store.medianIncomeRawColumn(),
+                store.costOfLivingRawColumn()}) {
+            buf.asDoubleBuffer().put(column, 0, n);
+            buf.position(buf.position() + n * 8);
+        }
+        for (byte[] b : names) buf.putInt(b.length).put(b);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putLong(crc.getValue());
+
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, buf.array());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Maps and decodes a snapshot; throws IOException if it is truncated, corrupt or a different version. */
+    public static List<County> read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES + 8 || size > Integer.MAX_VALUE) throw new IOException("Bad snapshot size " + size);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, (int) size - 8));
+            if (crc.getValue() != buf.getLong((int) size - 8)) throw new IOException("Snapshot checksum mismatch");
+
+            if (buf.getInt() != MAGIC) throw new IOException("Not a county snapshot");
+            int version = buf.getInt();
+            if (version < 1 || version > FORMAT_VERSION) throw new IOException("Unsupported snapshot version " + version);
+            int columnCount = version == 1 ? 4 : version == 2 ? 7 : COLUMNS;
+            int n = buf.getInt();
+            buf.getLong(); // written at
+            if (n < 0 || (long) n * (8 + 4 + columnCount * 8) > size) throw new IOException("Bad snapshot row count " + n);
+
+            long[] ids = new long[n];
+            int[] population = new int[n];
+            double[][] columns = new double[COLUMNS][n];
+            buf.asLongBuffer().get(ids);
+            buf.position(buf.position() + n * 8);
+            buf.asIntBuffer().get(population);
+            buf.position(buf.position() + n * 4);
+            for (int c = 0; c < columnCount; c++) {
+                double[] column = columns[c];
+                buf.asDoubleBuffer().get(column);
+                buf.position(buf.position() + n * 8);
+            }
+            for (int c = Math.max(columnCount, 7); c < COLUMNS; c++) Arrays.fill(columns[c], Double.NaN);
+
+            List<County> counties = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                byte[] name = new byte[buf.getInt()];
+                buf.get(name);
+                County c = new County(ids[i], new String(name, StandardCharsets.UTF_8), population[i],
+                        columns[0][i], columns[1][i], columns[2][i], columns[3][i],
+                        columns[4][i], columns[5][i], columns[6][i]);
+                c.setMedianIncomeRaw(columns[7][i]);
+                c.setCostOfLivingRaw(columns[8][i]);
+                counties.add(c);
+            }
+            return counties;
+        }
+    }
+}
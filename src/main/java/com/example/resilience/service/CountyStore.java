@@ -0,0 +1,261 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.County;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Columnar county store. Each indicator lives in its own primitive array so scoring
+ * and aggregation can run as tight loops over the columns instead of walking County objects.
+ *
+ * Column accessors hand out the backing arrays (valid for the first {@link #size()} rows)
+ * and are package-private so only the service layer can reach them.
+ *
+ * Median income and cost of living are min-max normalized. Their raw values are kept in their
+ * own columns with an incrementally maintained {@link ColumnScale}; an upsert normalizes its row
+ * on the current scale, and {@link #renormalize()} redoes the whole column only when an extreme
+ * actually moved. Rows whose raw value is unknown (NaN) keep the normalized value they were given.
+ *
+ * {@link #copy()} is the basis of copy-on-write updates and is O(n): the value columns are
+ * cloned up front. The id column, the id index and the names are shared with the original
+ * and cloned only when the copy inserts a county or renames one, so updating existing counties
+ * skips the index, which is the most expensive part to copy.
+ */
+public final class CountyStore {
+
+    private static final int INITIAL_CAPACITY = 128;
+
+    private long[] ids;
+    private String[] names;
+    private int[] population;
+    private double[] medianIncome;
+    private double[] unemploymentRate;
+    private double[] costOfLivingIndex;
+    private double[] disasterRisk;
+    private double[] medianIncomeMoe;
+    private double[] unemploymentRateMoe;
+    private double[] costOfLivingIndexMoe;
+    private double[] medianIncomeRaw;
+    private double[] costOfLivingRaw;
+    private int size;
+    // Shared with the store this one was copied from until first written
+    private boolean keysShared;
+    private boolean namesShared;
+
+    private LongIntIndex index;
+    private final ColumnScale incomeScale;
+    private final ColumnScale costScale;
+
+    public CountyStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public CountyStore(int capacity) {
+        int cap = Math.max(1, capacity);
+        ids = new long[cap];
+        names = new String[cap];
+        population = new int[cap];
+        medianIncome = new double[cap];
+        unemploymentRate = new double[cap];
+        costOfLivingIndex = new double[cap];
+        disasterRisk = new double[cap];
+        medianIncomeMoe = new double[cap];
+        unemploymentRateMoe = new double[cap];
+        costOfLivingIndexMoe = new double[cap];
+        medianIncomeRaw = new double[cap];
+        costOfLivingRaw = new double[cap];
+        index = new LongIntIndex(cap);
+        incomeScale = new ColumnScale();
+        costScale = new ColumnScale();
+    }
+
+    private CountyStore(CountyStore other) {
+        ids = other.ids;
+        names = other.names;
+        keysShared = true;
+        namesShared = true;
+        population = other.population.clone();
+        medianIncome = other.medianIncome.clone();
+        unemploymentRate = other.unemploymentRate.clone();
+        costOfLivingIndex = other.costOfLivingIndex.clone();
+        disasterRisk = other.disasterRisk.clone();
+        medianIncomeMoe = other.medianIncomeMoe.clone();
+        unemploymentRateMoe = other.unemploymentRateMoe.clone();
+        costOfLivingIndexMoe = other.costOfLivingIndexMoe.clone();
+        medianIncomeRaw = other.medianIncomeRaw.clone();
+        costOfLivingRaw = other.costOfLivingRaw.clone();
+        size = other.size;
+        index = other.index;
+        incomeScale = other.incomeScale.copy();
+        costScale = other.costScale.copy();
+    }
+
+    /** Copy that never writes through to this store; see the class comment for what is cloned when. */
+    CountyStore copy() {
+        return new CountyStore(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Row number for the county id, or -1 if the id is unknown. */
+    public int rowOf(long id) {
+        return index.get(id);
+    }
+
+    /**
+     * Inserts the county or overwrites its existing row, normalizing its raw values on the
+     * current scale. Returns the row number. Call {@link #renormalize()} once the batch is done.
+     */
+    int upsert(County c) {
+        long id = c.getId();
+        int row = index.get(id);
+        if (row < 0) {
+            if (keysShared) {
+                ids = ids.clone();
+                index = index.copy();
+                keysShared = false;
+            }
+            if (size == ids.length) grow();
+            row = size++;
+            ids[row] = id;
+            index.put(id, row);
+            medianIncomeRaw[row] = Double.NaN;
+            costOfLivingRaw[row] = Double.NaN;
+        }
+        if (!Objects.equals(names[row], c.getName())) {
+            if (namesShared) {
+                names = names.clone();
+                namesShared = false;
+            }
+            names[row] = c.getName();
+        }
+        population[row] = c.getPopulation();
+        medianIncome[row] = scaled(incomeScale, medianIncomeRaw, row, c.getMedianIncomeRaw(), c.getMedianIncome());
+        unemploymentRate[row] = c.getUnemploymentRate();
+        costOfLivingIndex[row] = scaled(costScale, costOfLivingRaw, row, c.getCostOfLivingRaw(), c.getCostOfLivingIndex());
+        disasterRisk[row] = c.getDisasterRisk();
+        medianIncomeMoe[row] = c.getMedianIncomeMoe();
+        unemploymentRateMoe[row] = c.getUnemploymentRateMoe();
+        costOfLivingIndexMoe[row] = c.getCostOfLivingIndexMoe();
+        return row;
+    }
+
+    /** Stores the row's raw value (given, or derived from the 0-1 value) and returns its normalized value. */
+    private static double scaled(ColumnScale scale, double[] raw, int row, Double given, double normalized) {
+        double v = given != null ? given : scale.denormalize(normalized);
+        scale.replace(raw[row], v);
+        raw[row] = v;
+        return Double.isNaN(v) ? normalized : scale.normalize(v);
+    }
+
+    /**
+     * Recomputes the normalized income and cost columns if upserts moved an extreme. Margins of
+     * error of those columns are rescaled to the new range too. O(1) when nothing moved; returns
+     * true when scores may have changed for every row.
+     */
+    boolean renormalize() {
+        boolean income = renormalize(incomeScale, medianIncomeRaw, medianIncome, medianIncomeMoe);
+        boolean cost = renormalize(costScale, costOfLivingRaw, costOfLivingIndex, costOfLivingIndexMoe);
+        return income || cost;
+    }
+
+    private boolean renormalize(ColumnScale scale, double[] raw, double[] normalized, double[] moe) {
+        if (scale.isApplied()) return false;
+        double previousRange = scale.appliedRange();
+        if (!scale.apply(raw, size)) return false;
+        // Margins given against the previous scale; on the first one they already match it
+        double factor = previousRange > 0 && scale.appliedRange() > 0 ? previousRange / scale.appliedRange() : 1.0;
+        for (int r = 0; r < size; r++) {
+            if (Double.isNaN(raw[r])) continue;
+            normalized[r] = scale.normalize(raw[r]);
+            moe[r] *= factor;
+        }
+        return true;
+    }
+
+    public long id(int row) { return ids[row]; }
+    public String name(int row) { return names[row]; }
+    public int population(int row) { return population[row]; }
+    public double medianIncome(int row) { return medianIncome[row]; }
+    public double unemploymentRate(int row) { return unemploymentRate[row]; }
+    public double costOfLivingIndex(int row) { return costOfLivingIndex[row]; }
+    public double disasterRisk(int row) { return disasterRisk[row]; }
+    public double medianIncomeMoe(int row) { return medianIncomeMoe[row]; }
+    public double unemploymentRateMoe(int row) { return unemploymentRateMoe[row]; }
+    public double costOfLivingIndexMoe(int row) { return costOfLivingIndexMoe[row]; }
+    /** Raw median household income in dollars; NaN when unknown. */
+    public double medianIncomeRaw(int row) { return medianIncomeRaw[row]; }
+    /** Raw annual rent / household income; NaN when unknown. */
+    public double costOfLivingRaw(int row) { return costOfLivingRaw[row]; }
+
+    // Bulk column access for the scoring / aggregation loops
+    long[] idColumn() { return ids; }
+    int[] populationColumn() { return population; }
+    double[] medianIncomeColumn() { return medianIncome; }
+    double[] unemploymentRateColumn() { return unemploymentRate; }
+    double[] costOfLivingIndexColumn() { return costOfLivingIndex; }
+    double[] disasterRiskColumn() { return disasterRisk; }
+    double[] medianIncomeMoeColumn() { return medianIncomeMoe; }
+    double[] unemploymentRateMoeColumn() { return unemploymentRateMoe; }
+    double[] costOfLivingIndexMoeColumn() { return costOfLivingIndexMoe; }
+    double[] medianIncomeRawColumn() { return medianIncomeRaw; }
+    double[] costOfLivingRawColumn() { return costOfLivingRaw; }
+
+    /** Read-only view of a single row. */
+    public CountyRow row(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException(row);
+        return new CountyRow(this, row);
+    }
+
+    /** Read-only views over every row, in row order. */
+    public List<CountyRow> rows() {
+        return new AbstractList<>() {
+            @Override
+            public CountyRow get(int i) {
+                return row(i);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /** Detached mutable copy of a row, for callers that still work with County objects. */
+    public County toCounty(int row) {
+        County c = new County(ids[row], names[row], population[row], medianIncome[row],
+                unemploymentRate[row], costOfLivingIndex[row], disasterRisk[row],
+                medianIncomeMoe[row], unemploymentRateMoe[row], costOfLivingIndexMoe[row]);
+        c.setMedianIncomeRaw(orNull(medianIncomeRaw[row]));
+        c.setCostOfLivingRaw(orNull(costOfLivingRaw[row]));
+        return c;
+    }
+
+    /** Boxed raw value for JSON, which has no NaN. */
+    static Double orNull(double v) {
+        return Double.isNaN(v) ? null : v;
+    }
+
+    private void grow() {
+        int cap = ids.length * 2;
+        ids = Arrays.copyOf(ids, cap);
+        names = Arrays.copyOf(names, cap);
+        namesShared = false;
+        population = Arrays.copyOf(population, cap);
+        medianIncome = Arrays.copyOf(medianIncome, cap);
+        unemploymentRate = Arrays.copyOf(unemploymentRate, cap);
+        costOfLivingIndex = Arrays.copyOf(costOfLivingIndex, cap);
+        disasterRisk = Arrays.copyOf(disasterRisk, cap);
+        medianIncomeMoe = Arrays.copyOf(medianIncomeMoe, cap);
+        unemploymentRateMoe = Arrays.copyOf(unemploymentRateMoe, cap);
+        costOfLivingIndexMoe = Arrays.copyOf(costOfLivingIndexMoe, cap);
+        medianIncomeRaw = Arrays.copyOf(medianIncomeRaw, cap);
+        costOfLivingRaw = Arrays.copyOf(costOfLivingRaw, cap);
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.County;
+import com.example.resilience.model.RankedCounty;
+import com.example.resilience.model.ScoreExplanation;
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.model.UsState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One immutable generation of the county data. {@link ResilienceService} publishes a new
+ * Dataset through a single atomic reference swap, so a request that grabbed this instance
+ * sees the same rows, scores and rankings for its whole lifetime without coordinating with writers.
+ *
+ * Rankings are derived lazily per weight profile and cached on the instance, least recently
+ * used profile evicted first; the default profile is never evicted.
+ */
+public final class Dataset {
+
+    private static final int MAX_RANKING_PROFILES = 16;
+    // Batches changing more rows than this rebuild each cached ranking instead of repairing it
+    private static final int REPAIR_LIMIT = 64;
+
+    private final CountyStore store;
+    private final long generation;
+    private final long createdAt;
+    private final String source;
+    private final Map<ScoreWeights, RankingIndex> rankings;
+    // Rows whose values differ from generation parentGeneration; null when everything may have changed
+    private final long parentGeneration;
+    private final int[] changedRows;
+    private volatile CountyNameIndex nameIndex;
+
+    private Dataset(CountyStore store, long generation, String source, Map<ScoreWeights, RankingIndex> rankings) {
+        this(store, generation, source, rankings, -1, null);
+    }
+
+    private Dataset(CountyStore store, long generation, String source, Map<ScoreWeights, RankingIndex> rankings,
+                    long parentGeneration, int[] changedRows) {
+        this.store = store;
+        this.generation = generation;
+        this.createdAt = System.currentTimeMillis();
+        this.source = source;
+        this.rankings = rankings;
+        this.parentGeneration = parentGeneration;
+        this.changedRows = changedRows;
+    }
+
+    static Dataset empty() {
+        return new Dataset(new CountyStore(), 0, "empty", newRankings());
+    }
+
+    /** Fresh dataset built from scratch; rankings start cold. */
+    static Dataset of(List<County> counties, long generation, String source) {
+        CountyStore store = new CountyStore(Math.max(1, counties.size()));
+        for (County c : counties) store.upsert(c);
+        store.renormalize();
+        return new Dataset(store, generation, source, newRankings());
+    }
+
+    /** Copy-on-write single-county change, see {@link #withCounties}. */
+    Dataset withCounty(County c, long generation) {
+        return withCounties(List.of(c), generation);
+    }
+
+    /**
+     * Copy-on-write batch change: the store is copied once for the whole batch (O(n) in the
+     * value columns, see {@link CountyStore}) and renormalized at most once, at the end. Cached rankings are repaired row by row for small
+     * batches and rebuilt once for larger ones; if the batch moved a normalization extreme every
+     * score changed, so rankings start cold and are rebuilt on first use.
+     */
+    Dataset withCounties(List<County> counties, long generation) {
+        CountyStore next = store.copy();
+        int[] changed = new int[counties.size()];
+        for (int i = 0; i < changed.length; i++) changed[i] = next.upsert(counties.get(i));
+        Map<ScoreWeights, RankingIndex> nextRankings = newRankings();
+        if (next.renormalize()) return new Dataset(next, generation, source, nextRankings, this.generation, null);
+        List<RankingIndex> cached;
+        synchronized (rankings) {
+            // Least recently used first, so the copy keeps the same order
+            cached = new ArrayList<>(rankings.values());
+        }
+        for (RankingIndex index : cached) {
+            RankingIndex repaired;
+            if (changed.length > REPAIR_LIMIT) {
+                repaired = RankingIndex.build(next, index.weights());
+            } else {
+                // Rows are repaired in upsert order, so new rows are appended densely
+                repaired = index.copy();
+                for (int row : changed) {
+                    repaired.update(row, BatchScorer.score(next.medianIncome(row), next.unemploymentRate(row),
+                            next.costOfLivingIndex(row), next.disasterRisk(row), next.population(row), index.weights()));
+                }
+            }
+            nextRankings.put(index.weights(), repaired);
+        }
+        return new Dataset(next, generation, source, nextRankings, this.generation,
+                Arrays.stream(changed).distinct().toArray());
+    }
+
+    public long generation() { return generation; }
+
+    public long createdAt() { return createdAt; }
+
+    public String source() { return source; }
+
+    public int size() { return store.size(); }
+
+    public CountyStore store() { return store; }
+
+    public List<CountyRow> rows() { return store.rows(); }
+
+    /** Read-only view of one county, or null if the id is unknown. */
+    public CountyRow findRow(long id) {
+        int row = store.rowOf(id);
+        return row < 0 ? null : store.row(row);
+    }
+
+    /** County ids in row order. */
+    public long[] ids() {
+        return Arrays.copyOf(store.idColumn(), store.size());
+    }
+
+    /** Scores every county in row order in a single columnar pass. */
+    public double[] scoreAll(ScoreWeights w) {
+        return BatchScorer.scoreAll(store, w);
+    }
+
+    /** The k most resilient counties under the given weights, best first. */
+    public List<RankedCounty> top(ScoreWeights w, int k) {
+        RankingIndex index = ranking(w);
+        return ranked(index, index.top(k));
+    }
+
+    /** The k least resilient counties under the given weights, worst first. */
+    public List<RankedCounty> bottom(ScoreWeights w, int k) {
+        RankingIndex index = ranking(w);
+        return ranked(index, index.bottom(k));
+    }
+
+    /** Rank, percentile and score of one county, or null if the id is unknown. */
+    public RankedCounty rankOf(long id, ScoreWeights w) {
+        int row = store.rowOf(id);
+        if (row < 0) return null;
+        return ranked(ranking(w), row);
+    }
+
+    /**
+     * Score breakdown for a county, computed once. Rank and percentile are its own when the county
+     * is stored with these values, otherwise where its score would place it: among the other
+     * counties if its id is stored with different values, or as one extra county if it is not
+     * stored. The state median is over the loaded counties of the state its id belongs to.
+     */
+    public ScoreExplanation explain(County c, ScoreWeights w) {
+        ScoreExplanation e = BatchScorer.explain(c.getMedianIncome(), c.getUnemploymentRate(),
+                c.getCostOfLivingIndex(), c.getDisasterRisk(), c.getPopulation(), w);
+        RankingIndex index = ranking(w);
+        int row = c.getId() == null ? -1 : store.rowOf(c.getId());
+        int rank, ranked;
+        if (row >= 0 && index.score(row) == e.score()) {
+            rank = index.rank(row);
+            ranked = index.size();
+        } else if (row >= 0) {
+            // Its stored row would move, so it is not counted against itself
+            rank = index.rankFor(e.score()) - (index.score(row) >= e.score() ? 1 : 0);
+            ranked = index.size();
+        } else {
+            rank = index.rankFor(e.score());
+            ranked = index.size() + 1;
+        }
+        double percentile = RankingIndex.percentile(rank - 1, ranked);
+
+        UsState state = c.getId() == null ? null : UsState.ofCounty(c.getId());
+        Double median = state == null ? null : stateMedian(index, state);
+        return new ScoreExplanation(e.score(), e.factors(), e.weightedSum(), e.penalty(), rank, ranked,
+                percentile, state == null ? null : state.name(), median, median == null ? null : e.score() - median);
+    }
+
+    private Double stateMedian(RankingIndex index, UsState state) {
+        int[] rows = nameIndex().stateRows(state);
+        if (rows.length == 0) return null;
+        double[] scores = new double[rows.length];
+        for (int i = 0; i < rows.length; i++) scores[i] = index.score(rows[i]);
+        Arrays.sort(scores);
+        int mid = scores.length / 2;
+        return scores.length % 2 == 1 ? scores[mid] : (scores[mid - 1] + scores[mid]) / 2;
+    }
+
+    public double averageScore(ScoreWeights w) {
+        return ranking(w).averageScore();
+    }
+
+    public double averageMedianIncome() {
+        int n = store.size();
+        if (n == 0) return 0.0;
+        double[] income = store.medianIncomeColumn();
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) sum += income[i];
+        return sum / n;
+    }
+
+    /**
+     * Rows that differ from the given earlier generation, for consumers maintaining derived data
+     * incrementally; null if that generation is not this one's direct parent or every row may
+     * have changed. Rows at or beyond the parent's size are new.
+     */
+    int[] changedSince(long earlier) {
+        return earlier == parentGeneration ? changedRows : null;
+    }
+
+    /** Name and state lookup for this generation, built on first use. */
+    CountyNameIndex nameIndex() {
+        CountyNameIndex index = nameIndex;
+        if (index == null) {
+            // Racing builders produce equal indexes; whichever lands last is kept
+            index = new CountyNameIndex(store);
+            nameIndex = index;
+        }
+        return index;
+    }
+
+    RankingIndex ranking(ScoreWeights w) {
+        RankingIndex index;
+        synchronized (rankings) {
+            index = rankings.get(w);
+        }
+        if (index != null) return index;
+        // Built outside the lock so other profiles stay readable; racing builders produce equal indexes
+        index = RankingIndex.build(store, w);
+        synchronized (rankings) {
+            RankingIndex raced = rankings.putIfAbsent(w, index);
+            return raced != null ? raced : index;
+        }
+    }
+
+    /** Access-ordered LRU of ranking indexes, guarded by its own monitor, that keeps the default profile. */
+    private static Map<ScoreWeights, RankingIndex> newRankings() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ScoreWeights, RankingIndex> eldest) {
+                if (size() <= MAX_RANKING_PROFILES) return false;
+                if (!eldest.getKey().equals(ScoreWeights.DEFAULT)) return true;
+                // The default is pinned: touch it so it becomes most recent, then drop the next eldest
+                get(ScoreWeights.DEFAULT);
+                remove(keySet().iterator().next());
+                return false;
+            }
+        };
+    }
+
+    private List<RankedCounty> ranked(RankingIndex index, int[] rows) {
+        List<RankedCounty> out = new ArrayList<>(rows.length);
+        for (int row : rows) out.add(ranked(index, row));
+        return out;
+    }
+
+    private RankedCounty ranked(RankingIndex index, int row) {
+        return new RankedCounty(index.rank(row), index.percentile(row), index.score(row), store.toCounty(row));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.County;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Builds new dataset generations off the request path and publishes them through
+ * {@link ResilienceService#replaceAll}. Fetching and normalization happen on a background
+ * virtual thread; the only thing readers ever observe is the final reference swap.
+ *
+ * At most one reload runs at a time: asking again while one is in flight returns the same future.
+ * Single-county writes that land during a reload are superseded by the reloaded data.
+ */
+@Service
+public class DatasetReloadService {
+
+    private final ResilienceService resilienceService;
+    private final CensusIngestService censusIngestService;
+    private final Path snapshotFile;
+    private final AtomicReference<CompletableFuture<Dataset>> inFlight = new AtomicReference<>();
+
+    public DatasetReloadService(ResilienceService resilienceService,
+                                CensusIngestService censusIngestService,
+                                @Value("${dataset.snapshot-file:data/counties.snap}") String snapshotFile) {
+        this.resilienceService = resilienceService;
+        this.censusIngestService = censusIngestService;
+        this.snapshotFile = Paths.get(snapshotFile);
+    }
+
+    /** Publishes the binary snapshot if there is a usable one. Returns false otherwise. */
+    public boolean loadSnapshot() {
+        if (!Files.isRegularFile(snapshotFile)) return false;
+        try {
+            long start = System.nanoTime();
+            List<County> counties = CountySnapshot.read(snapshotFile);
+            if (counties.isEmpty()) return false;
+            Dataset dataset = resilienceService.replaceAll(counties, "snapshot");
+            System.out.println("DatasetReloadService: Loaded " + counties.size() + " counties from snapshot "
+                    + snapshotFile + " as generation " + dataset.generation()
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
+        } catch (IOException e) {
+            System.err.println("DatasetReloadService: Ignoring unreadable snapshot " + snapshotFile + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Starts a Census reload unless one is already running. The future completes with the
+     * published dataset, or with null if the load produced nothing and the old data was kept.
+     */
+    public CompletableFuture<Dataset> reload() {
+        CompletableFuture<Dataset> future = new CompletableFuture<>();
+        if (!inFlight.compareAndSet(null, future)) {
+            CompletableFuture<Dataset> running = inFlight.get();
+            if (running != null) return running;
+            return reload();
+        }
+        Thread.ofVirtual().name("dataset-reload").start(() -> {
+            try {
+                future.complete(loadFromCensus());
+            } catch (Throwable t) {
+                System.err.println("DatasetReloadService: Reload failed: " + t.getMessage());
+                future.completeExceptionally(t);
+            } finally {
+                inFlight.set(null);
+            }
+        });
+        return future;
+    }
+
+    public boolean isReloading() {
+        return inFlight.get() != null;
+    }
+
+    private Dataset loadFromCensus() throws InterruptedException {
+        List<County> counties = censusIngestService.load();
+        if (counties.isEmpty()) {
+            System.err.println("DatasetReloadService: Reload returned no counties; keeping generation "
+                    + resilienceService.version());
+            return null;
+        }
+        Dataset dataset = resilienceService.replaceAll(counties, "census");
+        System.out.println("DatasetReloadService: Published " + dataset.size() + " counties as generation "
+                + dataset.generation());
+        try {
+            // The published store is never mutated again, so it can be written without locking
+            CountySnapshot.write(dataset.store(), snapshotFile);
+        } catch (IOException e) {
+            System.err.println("DatasetReloadService: Could not write snapshot " + snapshotFile + ": " + e.getMessage());
+        }
+        return dataset;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.CountyShape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Douglas-Peucker simplification that keeps shared county borders identical.
+ *
+ * Every ring is cut into arcs at "junction" vertices, i.e. vertices whose set of owning
+ * shapes differs from a neighbour's (where a border between two counties starts or ends).
+ * Each arc is simplified in a canonical direction with its endpoints pinned, so the two
+ * counties on either side of a border make exactly the same keep/drop decisions and no
+ * slivers or gaps open up between them.
+ */
+final class GeometrySimplifier {
+
+    private GeometrySimplifier() {}
+
+    /** Per-vertex ownership summary across all shapes. */
+    private static final class Owners {
+        int count;
+        long signature;
+        int last = -1;
+    }
+
+    /** Simplified polygons for each shape (index-aligned with the input). */
+    static List<double[][][]> simplify(List<CountyShape> shapes, double tolerance) {
+        List<double[][][]> out = new ArrayList<>(shapes.size());
+        if (tolerance <= 0) {
+            for (CountyShape s : shapes) out.add(s.polygons());
+            return out;
+        }
+        Map<Long, Owners> owners = ownership(shapes);
+        for (CountyShape shape : shapes) {
+            List<double[][]> polygons = new ArrayList<>(shape.polygons().length);
+            for (int p = 0; p < shape.polygons().length; p++) {
+                double[][] polygon = shape.polygons()[p];
+                List<double[]> rings = new ArrayList<>(polygon.length);
+                for (int r = 0; r < polygon.length; r++) {
+                    double[] ring = simplifyRing(polygon[r], owners, tolerance);
+                    if (ring != null) {
+                        rings.add(ring);
+                    } else if (r == 0 && p == 0) {
+                        rings.add(polygon[r]); // never drop a shape's main outline
+                    } else if (r == 0) {
+                        break; // collapsed island: drop it together with its holes
+                    }
+                }
+                if (!rings.isEmpty()) polygons.add(rings.toArray(new double[0][]));
+            }
+            out.add(polygons.toArray(new double[0][][]));
+        }
+        return out;
+    }
+
+    private static Map<Long, Owners> ownership(List<CountyShape> shapes) {
+        Map<Long, Owners> owners = new HashMap<>();
+        for (int s = 0; s < shapes.size(); s++) {
+            long mixed = mix(s);
+            for (double[][] polygon : shapes.get(s).polygons()) {
+                for (double[] ring : polygon) {
+                    for (int i = 0; i < ring.length; i += 2) {
+                        Owners o = owners.computeIfAbsent(key(ring[i], ring[i + 1]), k -> new Owners());
+                        if (o.last != s) {
+                            o.last = s;
+                            o.count++;
+                            o.signature += mixed;
+                        }
+                    }
+                }
+            }
+        }
+        return owners;
+    }
+
+    /** Returns the simplified closed ring, or null if it collapses below a triangle. */
+    private static double[] simplifyRing(double[] ring, Map<Long, Owners> owners, double tolerance) {
+        int n = ring.length / 2;
+        if (n > 1 && ring[0] == ring[ring.length - 2] && ring[1] == ring[ring.length - 1]) n--; // drop closing point
+        if (n < 4) return n >= 3 ? ring : null;
+
+        long[] keys = new long[n];
+        long[] sig = new long[n];
+        int[] count = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = key(ring[2 * i], ring[2 * i + 1]);
+            Owners o = owners.get(keys[i]);
+            sig[i] = o.signature;
+            count[i] = o.count;
+        }
+
+        boolean[] fixed = new boolean[n];
+        int fixedCount = 0;
+        for (int i = 0; i < n; i++) {
+            int prev = (i + n - 1) % n, next = (i + 1) % n;
+            if (count[i] >= 3 || sig[i] != sig[prev] || sig[i] != sig[next]) {
+                fixed[i] = true;
+                fixedCount++;
+            }
+        }
+        if (fixedCount < 2) {
+            // Ring with no junctions (island or fully enclosed border): pin extreme keys,
+            // which both sides of an enclosed border agree on.
+            int lo = 0, hi = 0;
+            for (int i = 1; i < n; i++) {
+                if (keys[i] < keys[lo]) lo = i;
+                if (keys[i] > keys[hi]) hi = i;
+            }
+            fixed[lo] = true;
+            fixed[hi] = true;
+        }
+
+        boolean[] keep = fixed.clone();
+        int start = 0;
+        while (!fixed[start]) start++;
+        int a = start;
+        do {
+            int b = (a + 1) % n;
+            while (!fixed[b]) b = (b + 1) % n;
+            keepArc(ring, keys, n, a, b, tolerance, keep);
+            a = b;
+        } while (a != start);
+
+        int kept = 0;
+        for (boolean k : keep) if (k) kept++;
+        if (kept < 3) return null;
+        double[] out = new double[(kept + 1) * 2];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            int idx = (start + i) % n;
+            if (!keep[idx]) continue;
+            out[j++] = ring[2 * idx];
+            out[j++] = ring[2 * idx + 1];
+        }
+        out[j++] = out[0];
+        out[j] = out[1];
+        return out;
+    }
+
+    /** Marks the vertices to keep on the arc a..b (cyclic, endpoints already kept). */
+    private static void keepArc(double[] ring, long[] keys, int n, int a, int b, double tolerance, boolean[] keep) {
+        int len = (b - a + n) % n + 1;
+        if (len <= 2) return;
+        int[] idx = new int[len];
+        for (int i = 0; i < len; i++) idx[i] = (a + i) % n;
+        // Canonical direction so both owners of a shared arc run the identical computation
+        if (keys[a] > keys[b]) {
+            for (int i = 0, k = len - 1; i < k; i++, k--) {
+                int t = idx[i];
+                idx[i] = idx[k];
+                idx[k] = t;
+            }
+        }
+        double tol2 = tolerance * tolerance;
+        int[] stack = new int[2 * len];
+        int sp = 0;
+        stack[sp++] = 0;
+        stack[sp++] = len - 1;
+        while (sp > 0) {
+            int hi = stack[--sp], lo = stack[--sp];
+            if (hi - lo < 2) continue;
+            double ax = ring[2 * idx[lo]], ay = ring[2 * idx[lo] + 1];
+            double bx = ring[2 * idx[hi]], by = ring[2 * idx[hi] + 1];
+            int best = -1;
+            double bestDist = tol2;
+            for (int i = lo + 1; i < hi; i++) {
+                double d = segmentDistance2(ring[2 * idx[i]], ring[2 * idx[i] + 1], ax, ay, bx, by);
+                if (d > bestDist) {
+                    bestDist = d;
+                    best = i;
+                }
+            }
+            if (best < 0) continue;
+            keep[idx[best]] = true;
+            stack[sp++] = lo;
+            stack[sp++] = best;
+            stack[sp++] = best;
+            stack[sp++] = hi;
+        }
+    }
+
+    private static double segmentDistance2(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax, dy = by - ay;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / len2;
+        t = Math.max(0, Math.min(1, t));
+        double ex = ax + t * dx - px, ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+
+    /** Vertex identity at ~0.1 m resolution so equal border points from two rings collide. */
+    static long key(double lon, double lat) {
+        long x = Math.round(lon * 1e6);
+        long y = Math.round(lat * 1e6);
+        return (x << 32) ^ (y & 0xffffffffL);
+    }
+
+    private static long mix(int s) {
+        long h = (s + 1) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /** Total vertex count, for logging payload reductions. */
+    static int vertexCount(List<double[][][]> shapes) {
+        return shapes.stream()
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream)
+                .mapToInt(r -> r.length / 2)
+                .sum();
+    }
+}
@@ -0,0 +1,416 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.CountyShape;
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.service.CountyGeometryService.GeometrySet;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Spatial clustering of resilience scores: global Moran's I and local Getis-Ord Gi* over the
+ * counties that have both geometry and data.
+ *
+ * Spatial weights are binary, either queen contiguity from the {@link SpatialIndex} adjacency or
+ * a distance band (centroids within the given miles); Moran's I row-standardizes them and Gi*
+ * includes each county itself. A positive Gi* z-score is a cluster of high scores (a hot spot),
+ * a negative one a cluster of low resilience (a cold spot).
+ *
+ * Significance comes from permutations on a dedicated fork-join pool (hotspots.parallelism,
+ * default one worker per core): whole score vectors are shuffled for Moran's I, and each county's
+ * neighbours are redrawn from the other counties with its own value held fixed for Gi*
+ * (conditional randomization). Work is split into fixed chunks, each with a {@link SplittableRandom}
+ * split from one seeded root and its own scratch arrays, so results are reproducible and the
+ * permutation loops allocate nothing. Results are cached per (weights, generation, spatial weights,
+ * permutations, seed) and dropped when the geometry is reloaded.
+ */
+@Service
+public class HotspotService {
+
+    public static final int DEFAULT_PERMUTATIONS = 999;
+    public static final long DEFAULT_SEED = 42;
+    public static final double DEFAULT_ALPHA = 0.05;
+
+    /**
+     * One county: Gi* z-score and pseudo p-value, one-sided in the direction of the z-score; both
+     * null for counties without neighbours.
+     */
+    public record Spot(long id, String name, double score, int neighbors, Double giZScore, Double pValue,
+                       String cluster) {
+    }
+
+    /** Global Moran's I with its expectation under no autocorrelation and the permutation test. */
+    public record MoransI(double value, double expected, double permutationMean, double permutationSd,
+                          double zScore, double pValue) {
+    }
+
+    public record Result(long generation, ScoreWeights weights, String spatialWeights, Double bandMiles,
+                         int permutations, long seed, double alpha, int analyzed, int islands, int hotSpots,
+                         int coldSpots, MoransI moransI, long elapsedMs, int matched, List<Spot> counties) {
+    }
+
+    private record Key(ScoreWeights weights, long generation, String mode, double bandMiles, int permutations,
+                       long seed) {
+    }
+
+    /** Per-county outputs of one analysis, in shape order of the geometry it was computed on. */
+    private record Analysis(GeometrySet geometry, long[] ids, String[] names, double[] scores, int[] neighbors,
+                            double[] z, double[] p, MoransI moransI, long elapsedMs) {
+    }
+
+    private static final String CONTIGUITY = "contiguity";
+    private static final String DISTANCE = "distance";
+    // Permutations per Moran's I task and counties per Gi* task
+    private static final int PERMUTATION_CHUNK = 32;
+    private static final int COUNTY_CHUNK = 64;
+    // Permuted sums within this of the observed one count as ties
+    private static final double TIE = 1e-12;
+
+    private final SpatialService spatialService;
+    private final ResilienceService resilienceService;
+    private final ForkJoinPool pool;
+    private final int maxPermutations;
+    private final Map<Key, Analysis> cache;
+
+    public HotspotService(SpatialService spatialService, ResilienceService resilienceService,
+                          @Value("${hotspots.parallelism:0}") int parallelism,
+                          @Value("${hotspots.max-permutations:9999}") int maxPermutations,
+                          @Value("${hotspots.cache-size:8}") int cacheSize) {
+        this.spatialService = spatialService;
+        this.resilienceService = resilienceService;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.maxPermutations = maxPermutations;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Analysis> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Analyzes the current dataset. spatialWeights is "contiguity" or "distance" (bandMiles
+     * apart, centroid to centroid). cluster selects what is listed: "cold", "hot", "significant"
+     * (either, at alpha) or "all"; cold spots come lowest z first, everything else highest |z|
+     * first. limit <= 0 lists every match.
+     */
+    public Result analyze(ScoreWeights w, String spatialWeights, double bandMiles, int permutations, long seed,
+                          double alpha, String cluster, int limit) {
+        if (permutations < 9 || permutations > maxPermutations) {
+            throw new IllegalArgumentException("permutations must be between 9 and " + maxPermutations);
+        }
+        if (!(alpha > 0 && alpha <= 0.5)) throw new IllegalArgumentException("alpha must be between 0 and 0.5");
+        String mode = spatialWeights == null ? CONTIGUITY : spatialWeights.toLowerCase(Locale.ROOT);
+        if (mode.equals(CONTIGUITY)) {
+            bandMiles = 0;
+        } else if (!mode.equals(DISTANCE)) {
+            throw new IllegalArgumentException("spatialWeights must be 'contiguity' or 'distance'");
+        } else if (!(bandMiles > 0 && bandMiles <= 500)) {
+            throw new IllegalArgumentException("miles must be between 0 and 500");
+        }
+        String filter = cluster == null ? "significant" : cluster.toLowerCase(Locale.ROOT);
+        if (!List.of("cold", "hot", "significant", "all").contains(filter)) {
+            throw new IllegalArgumentException("cluster must be 'cold', 'hot', 'significant' or 'all'");
+        }
+
+        Dataset dataset = resilienceService.dataset();
+        Analysis a = analysis(dataset, w, mode, bandMiles, permutations, seed);
+        List<Spot> spots = new ArrayList<>();
+        int hot = 0, cold = 0, islands = 0;
+        for (int u = 0; u < a.ids().length; u++) {
+            Spot s = spot(a, u, alpha);
+            if (s.giZScore() == null) islands++;
+            if (s.cluster().equals("hot")) hot++;
+            if (s.cluster().equals("cold")) cold++;
+            boolean listed = switch (filter) {
+                case "cold", "hot" -> s.cluster().equals(filter);
+                case "significant" -> !s.cluster().equals("none");
+                default -> true;
+            };
+            if (listed) spots.add(s);
+        }
+        Comparator<Spot> order = filter.equals("cold")
+                ? Comparator.comparingDouble(s -> s.giZScore())
+                : Comparator.comparingDouble(s -> s.giZScore() == null ? 1 : -Math.abs(s.giZScore()));
+        spots.sort(order.thenComparingLong(Spot::id));
+        int matched = spots.size();
+        return new Result(dataset.generation(), w, mode, mode.equals(DISTANCE) ? bandMiles : null, permutations, seed,
+                alpha, a.ids().length, islands, hot, cold, a.moransI(), a.elapsedMs(), matched,
+                limit > 0 && limit < matched ? spots.subList(0, limit) : spots);
+    }
+
+    /**
+     * Every county's Gi* result under contiguity weights and the default permutations, seed and
+     * alpha, by county id; for decorating map layers.
+     */
+    public Map<Long, Spot> spots(ScoreWeights w) {
+        Analysis a = analysis(resilienceService.dataset(), w, CONTIGUITY, 0, DEFAULT_PERMUTATIONS, DEFAULT_SEED);
+        Map<Long, Spot> out = new HashMap<>(a.ids().length * 2);
+        for (int u = 0; u < a.ids().length; u++) out.put(a.ids()[u], spot(a, u, DEFAULT_ALPHA));
+        return out;
+    }
+
+    private static Spot spot(Analysis a, int u, double alpha) {
+        double z = a.z()[u], p = a.p()[u];
+        if (Double.isNaN(z)) return new Spot(a.ids()[u], a.names()[u], a.scores()[u], 0, null, null, "none");
+        String cluster = p > alpha ? "none" : z > 0 ? "hot" : "cold";
+        return new Spot(a.ids()[u], a.names()[u], a.scores()[u], a.neighbors()[u], z, p, cluster);
+    }
+
+    private Analysis analysis(Dataset dataset, ScoreWeights w, String mode, double bandMiles, int permutations,
+                              long seed) {
+        SpatialService.Built b = spatialService.index();
+        Key key = new Key(w, dataset.generation(), mode, bandMiles, permutations, seed);
+        Analysis a;
+        synchronized (cache) {
+            a = cache.get(key);
+        }
+        if (a != null && a.geometry() == b.geometry()) return a;
+        a = compute(b, dataset, w, mode, bandMiles, permutations, seed);
+        synchronized (cache) {
+            cache.put(key, a);
+        }
+        return a;
+    }
+
+    private Analysis compute(SpatialService.Built b, Dataset dataset, ScoreWeights w, String mode, double bandMiles,
+                             int permutations, long seed) {
+        long start = System.currentTimeMillis();
+        List<CountyShape> shapes = b.geometry().shapes();
+        CountyJoin join = new CountyJoin(dataset);
+        RankingIndex ranking = dataset.ranking(w);
+
+        // Units are shapes joined to a row, each row at most once
+        int[] unitOf = new int[shapes.size()];
+        int[] shapeOf = new int[shapes.size()];
+        boolean[] taken = new boolean[dataset.size()];
+        List<CountyRow> rows = new ArrayList<>();
+        int n = 0;
+        for (int s = 0; s < shapes.size(); s++) {
+            CountyRow row = join.rowFor(shapes.get(s));
+            unitOf[s] = -1;
+            if (row == null || taken[row.row()]) continue;
+            taken[row.row()] = true;
+            unitOf[s] = n;
+            shapeOf[n++] = s;
+            rows.add(row);
+        }
+        if (n < 3) throw new IllegalArgumentException("Need at least 3 counties with geometry and data");
+
+        long[] ids = new long[n];
+        String[] names = new String[n];
+        double[] x = new double[n];
+        for (int u = 0; u < n; u++) {
+            CountyRow row = rows.get(u);
+            ids[u] = row.getId();
+            names[u] = row.getName();
+            x[u] = ranking.score(row.row());
+        }
+        int[][] csr = mode.equals(DISTANCE)
+                ? distanceBand(b.index(), unitOf, shapeOf, n, bandMiles)
+                : contiguity(b.index(), unitOf, shapeOf, n);
+        int[] first = csr[0], adj = csr[1];
+        int[] neighbors = new int[n];
+        for (int u = 0; u < n; u++) neighbors[u] = first[u + 1] - first[u];
+
+        SplittableRandom root = new SplittableRandom(seed);
+        MoransI moransI = moransI(x, first, adj, permutations, root.split());
+        double[] z = new double[n], p = new double[n];
+        localGi(x, first, adj, permutations, root.split(), z, p);
+
+        long elapsed = System.currentTimeMillis() - start;
+        System.out.println("HotspotService: " + n + " counties, " + adj.length / 2 + " " + mode + " links, "
+                + permutations + " permutations in " + elapsed + " ms");
+        return new Analysis(b.geometry(), ids, names, x, neighbors, z, p, moransI, elapsed);
+    }
+
+    /** Global Moran's I on row-standardized weights, with a one-sided permutation p-value. */
+    private MoransI moransI(double[] x, int[] first, int[] adj, int permutations, SplittableRandom rnd) {
+        int n = x.length;
+        double mean = Arrays.stream(x).sum() / n;
+        double[] dev = new double[n];
+        double m2 = 0;
+        int linked = 0;
+        for (int u = 0; u < n; u++) {
+            dev[u] = x[u] - mean;
+            m2 += dev[u] * dev[u];
+            if (first[u + 1] > first[u]) linked++;
+        }
+        double expected = -1.0 / (n - 1);
+        if (m2 == 0 || linked == 0) return new MoransI(0, expected, 0, 0, 0, 1);
+        double scale = (double) n / linked / m2;
+        double observed = scale * lagProduct(dev, first, adj);
+
+        int chunks = (permutations + PERMUTATION_CHUNK - 1) / PERMUTATION_CHUNK;
+        SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) streams[c] = rnd.split();
+        double[] sums = new double[chunks], squares = new double[chunks];
+        int[] above = new int[chunks], below = new int[chunks];
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(c -> {
+            SplittableRandom r = streams[c];
+            double[] shuffled = dev.clone();
+            int count = Math.min(PERMUTATION_CHUNK, permutations - c * PERMUTATION_CHUNK);
+            double s = 0, sq = 0;
+            int hi = 0, lo = 0;
+            for (int k = 0; k < count; k++) {
+                for (int i = n - 1; i > 0; i--) {
+                    int j = r.nextInt(i + 1);
+                    double t = shuffled[i];
+                    shuffled[i] = shuffled[j];
+                    shuffled[j] = t;
+                }
+                double v = scale * lagProduct(shuffled, first, adj);
+                s += v;
+                sq += v * v;
+                if (v >= observed - TIE) hi++;
+                if (v <= observed + TIE) lo++;
+            }
+            sums[c] = s;
+            squares[c] = sq;
+            above[c] = hi;
+            below[c] = lo;
+        })).join();
+
+        double s = 0, sq = 0;
+        int hi = 0, lo = 0;
+        for (int c = 0; c < chunks; c++) {
+            s += sums[c];
+            sq += squares[c];
+            hi += above[c];
+            lo += below[c];
+        }
+        double permMean = s / permutations;
+        double permSd = Math.sqrt(Math.max(0, sq / permutations - permMean * permMean));
+        double zScore = permSd == 0 ? 0 : (observed - permMean) / permSd;
+        double pValue = (Math.min(observed >= expected ? hi : lo, permutations) + 1.0) / (permutations + 1);
+        return new MoransI(observed, expected, permMean, permSd, zScore, pValue);
+    }
+
+    /** Sum over counties of the deviation times the mean deviation of its neighbours. */
+    private static double lagProduct(double[] dev, int[] first, int[] adj) {
+        double total = 0;
+        for (int u = 0; u < dev.length; u++) {
+            int from = first[u], to = first[u + 1];
+            if (from == to) continue;
+            double lag = 0;
+            for (int e = from; e < to; e++) lag += dev[adj[e]];
+            total += dev[u] * lag / (to - from);
+        }
+        return total;
+    }
+
+    /**
+     * Gi* z-scores (analytic, binary weights including self) into z and pseudo p-values from
+     * conditional permutations into p; NaN for counties without neighbours. Each draw is a
+     * partial Fisher-Yates over the other counties in a per-task index array, with the county
+     * itself parked at the end so it is never drawn.
+     */
+    private void localGi(double[] x, int[] first, int[] adj, int permutations, SplittableRandom rnd,
+                         double[] z, double[] p) {
+        int n = x.length;
+        double mean = 0, squares = 0;
+        for (double v : x) {
+            mean += v;
+            squares += v * v;
+        }
+        mean /= n;
+        double sd = Math.sqrt(Math.max(0, squares / n - mean * mean));
+        double xBar = mean;
+
+        int chunks = (n + COUNTY_CHUNK - 1) / COUNTY_CHUNK;
+        SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) streams[c] = rnd.split();
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(c -> {
+            SplittableRandom r = streams[c];
+            int[] perm = new int[n], pos = new int[n];
+            for (int i = 0; i < n; i++) perm[i] = pos[i] = i;
+            for (int u = c * COUNTY_CHUNK, end = Math.min(n, u + COUNTY_CHUNK); u < end; u++) {
+                int k = first[u + 1] - first[u];
+                if (k == 0) {
+                    z[u] = p[u] = Double.NaN;
+                    continue;
+                }
+                double lag = 0;
+                for (int e = first[u]; e < first[u + 1]; e++) lag += x[adj[e]];
+                double weight = k + 1;
+                double denominator = sd * Math.sqrt((n * weight - weight * weight) / (n - 1));
+                double gi = denominator > 0 ? (x[u] + lag - xBar * weight) / denominator : 0;
+
+                swap(perm, pos, pos[u], n - 1);
+                int others = n - 1, extreme = 0;
+                for (int d = 0; d < permutations; d++) {
+                    double drawn = 0;
+                    for (int t = 0; t < k; t++) {
+                        swap(perm, pos, t, t + r.nextInt(others - t));
+                        drawn += x[perm[t]];
+                    }
+                    if (gi >= 0 ? drawn >= lag - TIE : drawn <= lag + TIE) extreme++;
+                }
+                z[u] = gi;
+                p[u] = (extreme + 1.0) / (permutations + 1);
+            }
+        })).join();
+    }
+
+    private static void swap(int[] perm, int[] pos, int i, int j) {
+        int a = perm[i], b = perm[j];
+        perm[i] = b;
+        perm[j] = a;
+        pos[b] = i;
+        pos[a] = j;
+    }
+
+    /** CSR {start, neighbours} over units from the shape adjacency, dropping shapes without data. */
+    private static int[][] contiguity(SpatialIndex index, int[] unitOf, int[] shapeOf, int n) {
+        int[] first = new int[n + 1];
+        int[] adj = new int[16];
+        int k = 0;
+        for (int u = 0; u < n; u++) {
+            first[u] = k;
+            for (int shape : index.neighbors(shapeOf[u])) {
+                int v = unitOf[shape];
+                if (v < 0 || v == u) continue;
+                if (k == adj.length) adj = Arrays.copyOf(adj, k * 2);
+                adj[k++] = v;
+            }
+        }
+        first[n] = k;
+        return new int[][]{first, Arrays.copyOf(adj, k)};
+    }
+
+    /** CSR {start, neighbours} over units whose centroids are within miles of each other. */
+    private static int[][] distanceBand(SpatialIndex index, int[] unitOf, int[] shapeOf, int n, double miles) {
+        int[] first = new int[n + 1];
+        int[] adj = new int[16];
+        int k = 0;
+        for (int u = 0; u < n; u++) {
+            first[u] = k;
+            int s = shapeOf[u];
+            for (int shape : SpatialService.within(index, index.centroidLat(s), index.centroidLon(s), miles)) {
+                int v = unitOf[shape];
+                if (v < 0 || v == u) continue;
+                if (k == adj.length) adj = Arrays.copyOf(adj, k * 2);
+                adj[k++] = v;
+            }
+        }
+        first[n] = k;
+        return new int[][]{first, Arrays.copyOf(adj, k)};
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.ScoreWeights;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Monte Carlo uncertainty for the resilience score.
+ *
+ * Each draw perturbs every county's income, unemployment and cost inputs with normal noise whose
+ * standard deviation comes from the ACS 90% margin of error (MOE / 1.645), then rescores with
+ * {@link BatchScorer}. Every county has its own {@link SplittableRandom} stream split from one
+ * seeded root, so results are reproducible and do not depend on how work is scheduled.
+ *
+ * Draws are processed in blocks: counties are sampled in parallel into a block buffer, then
+ * groups of draws are scanned in parallel for their top k. Per-county score distributions are
+ * kept as 1/1024-wide histograms, so interval bounds are accurate to about 0.001. The inner loops
+ * allocate nothing. Results are cached per (weights, generation, draws, k, confidence, seed).
+ */
+@Service
+public class MonteCarloService {
+
+    /** One county: point score and rank, mean and central interval over the draws, and P(in top k). */
+    public record CountyBand(long id, String name, double score, int rank, double mean, double lower,
+                             double upper, double probTopK) {
+    }
+
+    public record Result(long generation, ScoreWeights weights, int draws, int topK, double confidence, long seed,
+                         long elapsedMs, List<CountyBand> counties) {
+    }
+
+    private record Key(ScoreWeights weights, long generation, int draws, int topK, double confidence, long seed) {
+    }
+
+    /** Per-row outputs of one simulation. */
+    private record Bands(double[] mean, double[] lower, double[] upper, double[] probTopK, long elapsedMs) {
+    }
+
+    private static final double Z90 = 1.6448536269514722;
+    private static final int BINS = 1024;
+    private static final int BLOCK = 512;
+    // Draws scanned together for the top k; 8 doubles share a cache line of the block buffer
+    private static final int GROUP = 8;
+
+    private final ResilienceService resilienceService;
+    private final ForkJoinPool pool;
+    private final int maxDraws;
+    private final Map<Key, Bands> cache;
+
+    public MonteCarloService(ResilienceService resilienceService,
+                             @Value("${montecarlo.parallelism:0}") int parallelism,
+                             @Value("${montecarlo.max-draws:50000}") int maxDraws,
+                             @Value("${montecarlo.cache-size:8}") int cacheSize) {
+        this.resilienceService = resilienceService;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.maxDraws = maxDraws;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Bands> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Simulates the current dataset. ids selects counties to report (all known ids, any order);
+     * otherwise the first limit counties by point rank are returned (limit <= 0: all).
+     */
+    public Result run(ScoreWeights weights, int draws, int topK, double confidence, long seed,
+                      List<Long> ids, int limit) {
+        if (draws < 1 || draws > maxDraws) throw new IllegalArgumentException("draws must be between 1 and " + maxDraws);
+        if (topK < 0 || topK > 100) throw new IllegalArgumentException("top must be between 0 and 100");
+        if (!(confidence > 0 && confidence < 1)) throw new IllegalArgumentException("confidence must be between 0 and 1");
+
+        Dataset dataset = resilienceService.dataset();
+        Key key = new Key(weights, dataset.generation(), draws, topK, confidence, seed);
+        Bands bands;
+        synchronized (cache) {
+            bands = cache.get(key);
+        }
+        if (bands == null) {
+            bands = simulate(dataset, weights, draws, topK, confidence, seed);
+            synchronized (cache) {
+                cache.put(key, bands);
+            }
+        }
+
+        CountyStore store = dataset.store();
+        RankingIndex ranking = dataset.ranking(weights);
+        List<CountyBand> counties = new ArrayList<>();
+        if (ids != null && !ids.isEmpty()) {
+            for (long id : ids) {
+                int row = store.rowOf(id);
+                if (row >= 0) counties.add(band(store, ranking, bands, row));
+            }
+        } else {
+            int n = limit <= 0 ? ranking.size() : Math.min(limit, ranking.size());
+            for (int p = 0; p < n; p++) counties.add(band(store, ranking, bands, ranking.rowAt(p)));
+        }
+        return new Result(dataset.generation(), weights, draws, topK, confidence, seed, bands.elapsedMs(), counties);
+    }
+
+    private static CountyBand band(CountyStore store, RankingIndex ranking, Bands bands, int row) {
+        return new CountyBand(store.id(row), store.name(row), ranking.score(row), ranking.rank(row),
+                bands.mean()[row], bands.lower()[row], bands.upper()[row], bands.probTopK()[row]);
+    }
+
+    private Bands simulate(Dataset dataset, ScoreWeights w, int draws, int k, double confidence, long seed) {
+        long start = System.currentTimeMillis();
+        CountyStore store = dataset.store();
+        int n = store.size();
+        double[] income = store.medianIncomeColumn();
+        double[] unemp = store.unemploymentRateColumn();
+        double[] cost = store.costOfLivingIndexColumn();
+        double[] disaster = store.disasterRiskColumn();
+        int[] pop = store.populationColumn();
+        double[] incomeSd = sd(store.medianIncomeMoeColumn(), n);
+        double[] unempSd = sd(store.unemploymentRateMoeColumn(), n);
+        double[] costSd = sd(store.costOfLivingIndexMoeColumn(), n);
+
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[n];
+        for (int r = 0; r < n; r++) streams[r] = root.split();
+
+        int[] hist = new int[n * BINS];
+        double[] sum = new double[n];
+        long[] inTop = new long[n];
+        double[] block = new double[n * BLOCK];
+        int[] winners = new int[BLOCK * Math.max(1, k)];
+
+        for (int from = 0; from < draws; from += BLOCK) {
+            int m = Math.min(BLOCK, draws - from);
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(r -> {
+                SplittableRandom rnd = streams[r];
+                double inc = income[r], incSd = incomeSd[r];
+                double un = unemp[r], unSd = unempSd[r];
+                double co = cost[r], coSd = costSd[r];
+                double dis = disaster[r];
+                int p = pop[r];
+                int base = r * BLOCK, hbase = r * BINS;
+                double s = 0;
+                for (int j = 0; j < m; j++) {
+                    double v = BatchScorer.score(inc + incSd * rnd.nextGaussian(), un + unSd * rnd.nextGaussian(),
+                            co + coSd * rnd.nextGaussian(), dis, p, w);
+                    block[base + j] = v;
+                    hist[hbase + Math.min(BINS - 1, (int) (v * BINS))]++;
+                    s += v;
+                }
+                sum[r] += s;
+            })).join();
+
+            if (k > 0) {
+                int groups = (m + GROUP - 1) / GROUP;
+                pool.submit(() -> IntStream.range(0, groups).parallel()
+                        .forEach(g -> topK(block, n, g * GROUP, Math.min(GROUP, m - g * GROUP), k, winners))).join();
+                for (int i = 0; i < m * k; i++) {
+                    if (winners[i] >= 0) inTop[winners[i]]++;
+                }
+            }
+        }
+
+        double tail = (1 - confidence) / 2;
+        double[] mean = new double[n], lower = new double[n], upper = new double[n], probTop = new double[n];
+        for (int r = 0; r < n; r++) {
+            mean[r] = sum[r] / draws;
+            lower[r] = quantile(hist, r * BINS, draws, tail);
+            upper[r] = quantile(hist, r * BINS, draws, 1 - tail);
+            probTop[r] = (double) inTop[r] / draws;
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        System.out.println("MonteCarloService: " + draws + " draws x " + n + " counties in " + elapsed + " ms");
+        return new Bands(mean, lower, upper, probTop, elapsed);
+    }
+
+    /**
+     * Top k rows of draws j0 .. j0+count-1 of the block, written to winners[j * k ..] (-1 when
+     * there are fewer than k counties). Earlier rows win exact ties, as in {@link RankingIndex}.
+     */
+    private static void topK(double[] block, int n, int j0, int count, int k, int[] winners) {
+        double[] best = new double[GROUP * k];
+        int[] rows = new int[GROUP * k];
+        Arrays.fill(best, Double.NEGATIVE_INFINITY);
+        Arrays.fill(rows, -1);
+        for (int r = 0; r < n; r++) {
+            int base = r * BLOCK + j0;
+            for (int j = 0; j < count; j++) {
+                double v = block[base + j];
+                int o = j * k;
+                if (!(v > best[o + k - 1])) continue;
+                int i = k - 1;
+                while (i > 0 && v > best[o + i - 1]) {
+                    best[o + i] = best[o + i - 1];
+                    rows[o + i] = rows[o + i - 1];
+                    i--;
+                }
+                best[o + i] = v;
+                rows[o + i] = r;
+            }
+        }
+        System.arraycopy(rows, 0, winners, j0 * k, count * k);
+    }
+
+    /** Score at quantile q of one county's histogram, interpolated within the bin. */
+    private static double quantile(int[] hist, int base, int draws, double q) {
+        double target = q * draws;
+        long cumulative = 0;
+        for (int b = 0; b < BINS; b++) {
+            int c = hist[base + b];
+            if (c > 0 && cumulative + c >= target) {
+                return (b + (target - cumulative) / c) / BINS;
+            }
+            cumulative += c;
+        }
+        return 1.0;
+    }
+
+    private static double[] sd(double[] moe, int n) {
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++) out[i] = Math.max(0, moe[i]) / Z90;
+        return out;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+}
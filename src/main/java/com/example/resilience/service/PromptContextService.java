@@ -0,0 +1,508 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.RankedCounty;
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.model.UsState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the dataset context that is prepended to every AI prompt.
+ *
+ * The context is packed into a token budget: the lesser of bedrock.context-budget-tokens and
+ * what the model's window (bedrock.contextWindow) leaves after bedrock.maxTokens and the question.
+ * In order of priority it holds the scoring formula and dataset statistics, the counties named
+ * in the question (found through the dataset's {@link CountyNameIndex}) with the counties
+ * bordering them (from {@link SpatialService}) and their ranking neighbours, summaries of the
+ * states involved, and finally as much of the top/bottom 10 as still fits. Tokens are estimated at four characters each.
+ *
+ * The question-independent part only depends on the weights and the dataset generation, so it is
+ * kept in a bounded LRU keyed by both. The per-county part of each line ("(Pop: ..., Income: ...)")
+ * does not depend on the weights at all and is cached per generation. Numbers are formatted by
+ * hand; this runs on every /ai/query.
+ */
+@Service
+public class PromptContextService {
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MAX_LISTED = 10;
+    private static final int NEIGHBOURS = 2;
+    private static final int MAX_BORDERING = 8;
+    // "User question: " plus the closing instruction added by the controller
+    private static final int PROMPT_OVERHEAD_TOKENS = 40;
+
+    private record ContextKey(ScoreWeights weights, long generation) {
+    }
+
+    /** Question-independent part: formula and statistics, then top and bottom lines (best and worst first). */
+    private record Base(String header, List<String> top, List<String> bottom) {
+    }
+
+    /** County id -> weight-independent line suffix, valid for one dataset generation. */
+    private record Fragments(long generation, Map<Long, String> suffixes) {
+    }
+
+    private final ResilienceService resilienceService;
+    private final SpatialService spatialService;
+    private final Map<ContextKey, Base> bases;
+    private final int budgetTokens;
+    private final int contextWindow;
+    private final int maxTokens;
+
+    private volatile Fragments fragments = new Fragments(-1, Map.of());
+
+    public PromptContextService(ResilienceService resilienceService, SpatialService spatialService,
+                                @Value("${bedrock.context-cache-size:64}") int cacheSize,
+                                @Value("${bedrock.context-budget-tokens:1500}") int budgetTokens,
+                                @Value("${bedrock.contextWindow:8192}") int contextWindow,
+                                @Value("${bedrock.maxTokens:300}") int maxTokens) {
+        this.resilienceService = resilienceService;
+        this.spatialService = spatialService;
+        this.budgetTokens = budgetTokens;
+        this.contextWindow = contextWindow;
+        this.maxTokens = maxTokens;
+        this.bases = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ContextKey, Base> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /** Dataset context for the given weights without question-specific retrieval. */
+    public String context(ScoreWeights weights) {
+        return context(weights, "");
+    }
+
+    /** Dataset context for the given weights, with the counties and states the question mentions. */
+    public String context(ScoreWeights weights, String question) {
+        Dataset dataset = resilienceService.dataset();
+        Base base = base(dataset, weights);
+        int budget = budgetChars(question);
+
+        StringBuilder context = new StringBuilder(Math.min(budget, 16_384) + 256);
+        context.append(base.header());
+        CountyNameIndex.Retrieval found = dataset.nameIndex().find(question);
+        if (!found.isEmpty()) {
+            appendRetrieved(context, dataset, weights, found, budget);
+        }
+        appendRankings(context, base, budget);
+        return context.toString();
+    }
+
+    /**
+     * One county's line (score, overall and in-state rank, inputs), the counties bordering it and
+     * its ranking neighbours, for prompts about that county; null if the id is not in the dataset.
+     */
+    public String countyBrief(Dataset dataset, ScoreWeights weights, long countyId) {
+        int row = dataset.store().rowOf(countyId);
+        if (row < 0) return null;
+        RankingIndex ranking = dataset.ranking(weights);
+        StringBuilder sb = new StringBuilder(384);
+        appendMatch(sb, dataset.store(), ranking, dataset.nameIndex(), new CountyNameIndex.Match(row, "", false),
+                fragmentsFor(dataset));
+        appendBordering(sb, dataset, ranking, row);
+        appendNeighbours(sb, dataset.store(), ranking, row);
+        return sb.toString();
+    }
+
+    /** Characters available for the context, never below the formula and statistics. */
+    private int budgetChars(String question) {
+        int reserve = estimateTokens(question) + PROMPT_OVERHEAD_TOKENS;
+        int available = Math.min(budgetTokens, contextWindow - maxTokens - reserve);
+        return Math.max(0, available) * CHARS_PER_TOKEN;
+    }
+
+    static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Model-free answer used when the AI path is unavailable: the top and bottom three counties
+     * under the given weights, straight from the ranking.
+     */
+    public String degradedAnswer(ScoreWeights weights) {
+        Dataset dataset = resilienceService.dataset();
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("The AI assistant is temporarily unavailable. From the current data (")
+                .append(dataset.size()).append(" counties), the most resilient are ");
+        appendNames(sb, dataset.top(weights, 3));
+        sb.append("; the least resilient are ");
+        appendNames(sb, dataset.bottom(weights, 3));
+        return sb.append('.').toString();
+    }
+
+    private static void appendNames(StringBuilder sb, List<RankedCounty> counties) {
+        for (int i = 0; i < counties.size(); i++) {
+            if (i > 0) sb.append(i == counties.size() - 1 ? " and " : ", ");
+            RankedCounty r = counties.get(i);
+            sb.append(r.county().getName()).append(" (");
+            appendFixed3(sb, r.score());
+            sb.append(')');
+        }
+    }
+
+    private Base base(Dataset dataset, ScoreWeights weights) {
+        ContextKey key = new ContextKey(normalize(weights), dataset.generation());
+        synchronized (bases) {
+            Base hit = bases.get(key);
+            if (hit != null) return hit;
+        }
+        Base base = buildBase(dataset, weights);
+        synchronized (bases) {
+            bases.put(key, base);
+        }
+        return base;
+    }
+
+    private Base buildBase(Dataset dataset, ScoreWeights weights) {
+        // Top/bottom and the average come from one dataset generation's precomputed ranking
+        RankingIndex ranking = dataset.ranking(weights);
+        CountyStore store = dataset.store();
+        Map<Long, String> suffixes = fragmentsFor(dataset);
+
+        StringBuilder context = new StringBuilder(1024);
+        context.append("You are analyzing U.S. county financial resilience data. Here is the current dataset:\n\n");
+
+        context.append("SCORING FORMULA:\n");
+        context.append("- Income weight: ").append(Math.round(weights.income() * 100)).append("%\n");
+        context.append("- Unemployment weight: ").append(Math.round(weights.unemployment() * 100)).append("%\n");
+        context.append("- Cost of Living weight: ").append(Math.round(weights.cost() * 100)).append("%\n");
+        context.append("- Disaster Risk weight: ").append(Math.round(weights.disaster() * 100)).append("%\n");
+        context.append("Population penalty: -").append(Math.round(weights.smallPenalty() * 100))
+                .append("% for counties under ");
+        appendGrouped(context, weights.smallPopulation());
+        context.append("; -").append(Math.round(weights.tinyPenalty() * 100)).append("% for under ");
+        appendGrouped(context, weights.tinyPopulation());
+        context.append("\n\n");
+
+        context.append("DATASET STATISTICS:\n");
+        context.append("- Total counties: ").append(dataset.size()).append('\n');
+        context.append("- Average resilience score: ");
+        appendFixed3(context, dataset.averageScore(weights));
+        context.append(" (out of 1.0)\n");
+        context.append("- Average normalized median income: ");
+        appendFixed3(context, dataset.averageMedianIncome());
+        context.append("\n\n");
+
+        return new Base(context.toString(),
+                countyLines(store, ranking, ranking.top(MAX_LISTED), suffixes),
+                countyLines(store, ranking, ranking.bottom(MAX_LISTED), suffixes));
+    }
+
+    private static List<String> countyLines(CountyStore store, RankingIndex ranking, int[] rows,
+                                            Map<Long, String> suffixes) {
+        List<String> lines = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            StringBuilder sb = new StringBuilder(128);
+            sb.append(store.name(row)).append(" - Score: ");
+            appendFixed3(sb, ranking.score(row));
+            sb.append(suffix(store, row, suffixes));
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Counties named in the question, each with its overall and in-state rank, the counties
+     * bordering it and those ranked just above and below it, then a summary per state involved.
+     * Stops at the budget.
+     */
+    private void appendRetrieved(StringBuilder sb, Dataset dataset, ScoreWeights weights,
+                                 CountyNameIndex.Retrieval found, int budget) {
+        RankingIndex ranking = dataset.ranking(weights);
+        CountyStore store = dataset.store();
+        CountyNameIndex names = dataset.nameIndex();
+        Map<Long, String> suffixes = fragmentsFor(dataset);
+
+        Set<UsState> states = new LinkedHashSet<>(found.states());
+        if (!found.counties().isEmpty()) {
+            int start = sb.length();
+            sb.append("COUNTIES MENTIONED IN THE QUESTION:\n");
+            int listed = 0;
+            for (CountyNameIndex.Match m : found.counties()) {
+                int mark = sb.length();
+                appendMatch(sb, store, ranking, names, m, suffixes);
+                if (sb.length() > budget) {
+                    sb.setLength(mark);
+                    break;
+                }
+                listed++;
+                UsState state = UsState.ofCounty(store.id(m.row()));
+                if (state != null) states.add(state);
+                mark = sb.length();
+                appendBordering(sb, dataset, ranking, m.row());
+                if (sb.length() > budget) sb.setLength(mark);
+                mark = sb.length();
+                appendNeighbours(sb, store, ranking, m.row());
+                if (sb.length() > budget) sb.setLength(mark);
+            }
+            if (listed == 0) sb.setLength(start);
+            else sb.append('\n');
+        }
+
+        if (states.isEmpty()) return;
+        int start = sb.length();
+        sb.append("STATE SUMMARIES:\n");
+        int listed = 0;
+        for (UsState state : states) {
+            int[] rows = names.stateRows(state);
+            if (rows.length == 0) continue;
+            int mark = sb.length();
+            appendState(sb, store, ranking, state, rows, found.states().contains(state));
+            if (sb.length() > budget) {
+                sb.setLength(mark);
+                break;
+            }
+            listed++;
+        }
+        if (listed == 0) sb.setLength(start);
+        else sb.append('\n');
+    }
+
+    /** "- Wake County (NC) - Score: 0.712, rank 45 of 3,143, better than 99% of counties, 3 of 100 in NC (Pop: ...)" */
+    private static void appendMatch(StringBuilder sb, CountyStore store, RankingIndex ranking, CountyNameIndex names,
+                                    CountyNameIndex.Match m, Map<Long, String> suffixes) {
+        int row = m.row();
+        UsState state = UsState.ofCounty(store.id(row));
+        sb.append("- ").append(store.name(row));
+        if (state != null) sb.append(" (").append(state.name()).append(')');
+        sb.append(" - Score: ");
+        appendFixed3(sb, ranking.score(row));
+        sb.append(", rank ");
+        appendGrouped(sb, ranking.rank(row));
+        sb.append(" of ");
+        appendGrouped(sb, ranking.size());
+        sb.append(", better than ").append(Math.round(ranking.percentile(row))).append("% of counties");
+        if (state != null) {
+            int[] rows = names.stateRows(state);
+            int rank = ranking.rank(row);
+            int stateRank = 1;
+            for (int r : rows) {
+                if (ranking.rank(r) < rank) stateRank++;
+            }
+            sb.append(", ").append(stateRank).append(" of ").append(rows.length).append(" in ").append(state.name());
+        }
+        sb.append(suffix(store, row, suffixes));
+        if (m.fuzzy()) sb.append(" [closest match for \"").append(m.matched()).append("\"]");
+        sb.append('\n');
+    }
+
+    /** "  Bordering counties (average 0.640, this county +0.072): Durham County (NC) 0.701, ..." */
+    private void appendBordering(StringBuilder sb, Dataset dataset, RankingIndex ranking, int row) {
+        CountyStore store = dataset.store();
+        int[] rows = spatialService.neighborRows(dataset, store.id(row));
+        if (rows.length == 0) return;
+        double sum = 0;
+        for (int r : rows) sum += ranking.score(r);
+        double average = sum / rows.length;
+        double delta = ranking.score(row) - average;
+        sb.append("  Bordering counties (average ");
+        appendFixed3(sb, average);
+        sb.append(", this county ").append(delta < 0 ? '-' : '+');
+        appendFixed3(sb, Math.abs(delta));
+        sb.append("):");
+        for (int i = 0; i < Math.min(rows.length, MAX_BORDERING); i++) {
+            int r = rows[i];
+            sb.append(i == 0 ? " " : ", ").append(store.name(r));
+            UsState state = UsState.ofCounty(store.id(r));
+            if (state != null) sb.append(" (").append(state.name()).append(')');
+            sb.append(' ');
+            appendFixed3(sb, ranking.score(r));
+        }
+        if (rows.length > MAX_BORDERING) sb.append(", and ").append(rows.length - MAX_BORDERING).append(" more");
+        sb.append('\n');
+    }
+
+    /** "  Ranked nearby: #43 Foo County (TX) 0.715, #44 ..." (similar scores anywhere in the country) */
+    private static void appendNeighbours(StringBuilder sb, CountyStore store, RankingIndex ranking, int row) {
+        int p = ranking.rank(row) - 1;
+        int from = Math.max(0, p - NEIGHBOURS);
+        int to = Math.min(ranking.size() - 1, p + NEIGHBOURS);
+        if (from == to) return;
+        sb.append("  Ranked nearby:");
+        boolean first = true;
+        for (int q = from; q <= to; q++) {
+            if (q == p) continue;
+            int r = ranking.rowAt(q);
+            sb.append(first ? " #" : ", #").append(q + 1).append(' ').append(store.name(r));
+            UsState state = UsState.ofCounty(store.id(r));
+            if (state != null) sb.append(" (").append(state.name()).append(')');
+            sb.append(' ');
+            appendFixed3(sb, ranking.score(r));
+            first = false;
+        }
+        sb.append('\n');
+    }
+
+    /**
+     * "- North Carolina (NC): 100 counties, average score 0.612, population-weighted 0.640, best ..., worst ..."
+     * plus the three most and least resilient when the state itself was asked about.
+     */
+    private static void appendState(StringBuilder sb, CountyStore store, RankingIndex ranking, UsState state,
+                                    int[] rows, boolean detail) {
+        double sum = 0, weighted = 0;
+        long population = 0;
+        int best = rows[0], worst = rows[0];
+        for (int r : rows) {
+            double s = ranking.score(r);
+            sum += s;
+            weighted += s * store.population(r);
+            population += store.population(r);
+            if (ranking.rank(r) < ranking.rank(best)) best = r;
+            if (ranking.rank(r) > ranking.rank(worst)) worst = r;
+        }
+        sb.append("- ").append(state.fullName()).append(" (").append(state.name()).append("): ")
+                .append(rows.length).append(rows.length == 1 ? " county" : " counties").append(", average score ");
+        appendFixed3(sb, sum / rows.length);
+        if (population > 0) {
+            sb.append(", population-weighted ");
+            appendFixed3(sb, weighted / population);
+        }
+        sb.append(", best ").append(store.name(best)).append(" (");
+        appendFixed3(sb, ranking.score(best));
+        sb.append("), worst ").append(store.name(worst)).append(" (");
+        appendFixed3(sb, ranking.score(worst));
+        sb.append(")\n");
+
+        if (!detail || rows.length <= 2) return;
+        int[] ordered = Arrays.stream(rows).boxed()
+                .sorted(Comparator.comparingInt(ranking::rank))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int k = Math.min(3, ordered.length / 2);
+        sb.append("  Most resilient: ");
+        appendRows(sb, store, ranking, ordered, 0, k, 1);
+        sb.append("; least resilient: ");
+        appendRows(sb, store, ranking, ordered, ordered.length - 1, k, -1);
+        sb.append('\n');
+    }
+
+    private static void appendRows(StringBuilder sb, CountyStore store, RankingIndex ranking, int[] rows,
+                                   int from, int count, int step) {
+        for (int i = 0, p = from; i < count; i++, p += step) {
+            if (i > 0) sb.append(", ");
+            sb.append(store.name(rows[p])).append(" (");
+            appendFixed3(sb, ranking.score(rows[p]));
+            sb.append(')');
+        }
+    }
+
+    /**
+     * As much of the top and bottom 10 as the remaining budget allows, taking lines from both
+     * ends alternately so neither list is dropped entirely.
+     */
+    private static void appendRankings(StringBuilder sb, Base base, int budget) {
+        List<String> top = base.top(), bottom = base.bottom();
+        // Section headings plus "10. " and the newline per line
+        int remaining = budget - sb.length() - 80;
+        int kTop = 0, kBottom = 0;
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            if (kTop < top.size() && top.get(kTop).length() + 5 <= remaining) {
+                remaining -= top.get(kTop++).length() + 5;
+                grew = true;
+            }
+            if (kBottom < bottom.size() && bottom.get(kBottom).length() + 5 <= remaining) {
+                remaining -= bottom.get(kBottom++).length() + 5;
+                grew = true;
+            }
+        }
+
+        if (kTop > 0) {
+            sb.append("TOP ").append(kTop).append(" MOST RESILIENT COUNTIES:\n");
+            for (int i = 0; i < kTop; i++) {
+                sb.append(i + 1).append(". ").append(top.get(i)).append('\n');
+            }
+            sb.append("\n");
+        }
+        if (kBottom > 0) {
+            // Listed least resilient last, as before
+            sb.append("BOTTOM ").append(kBottom).append(" LEAST RESILIENT COUNTIES:\n");
+            for (int i = kBottom - 1, n = 1; i >= 0; i--, n++) {
+                sb.append(n).append(". ").append(bottom.get(i)).append('\n');
+            }
+        }
+    }
+
+    /** " (Pop: 12,345, Income: 0.512, Unemployment: 0.041, Cost: 0.330, Disaster: 0.100)" */
+    private static String suffix(CountyStore store, int row, Map<Long, String> suffixes) {
+        return suffixes.computeIfAbsent(store.id(row), id -> {
+            StringBuilder sb = new StringBuilder(96);
+            sb.append(" (Pop: ");
+            appendGrouped(sb, store.population(row));
+            sb.append(", Income: ");
+            appendFixed3(sb, store.medianIncome(row));
+            sb.append(", Unemployment: ");
+            appendFixed3(sb, store.unemploymentRate(row));
+            sb.append(", Cost: ");
+            appendFixed3(sb, store.costOfLivingIndex(row));
+            sb.append(", Disaster: ");
+            appendFixed3(sb, store.disasterRisk(row));
+            return sb.append(')').toString();
+        });
+    }
+
+    private Map<Long, String> fragmentsFor(Dataset dataset) {
+        Fragments f = fragments;
+        if (f.generation() == dataset.generation()) return f.suffixes();
+        if (f.generation() > dataset.generation()) return new ConcurrentHashMap<>(); // request on an older generation
+        f = new Fragments(dataset.generation(), new ConcurrentHashMap<>());
+        fragments = f;
+        return f.suffixes();
+    }
+
+    /** Weights rounded to 1e-6 so float noise from the UI sliders maps to the same entry. */
+    private static ScoreWeights normalize(ScoreWeights w) {
+        return new ScoreWeights(round6(w.income()), round6(w.unemployment()), round6(w.cost()), round6(w.disaster()),
+                w.smallPopulation(), round6(w.smallPenalty()), w.tinyPopulation(), round6(w.tinyPenalty()));
+    }
+
+    private static double round6(double v) {
+        return Math.round(v * 1e6) / 1e6;
+    }
+
+    /** Same output as %.3f for the finite values we format. */
+    static void appendFixed3(StringBuilder sb, double v) {
+        if (!Double.isFinite(v)) {
+            sb.append(v);
+            return;
+        }
+        long scaled = Math.round(Math.abs(v) * 1000);
+        if (v < 0 && scaled != 0) sb.append('-');
+        sb.append(scaled / 1000).append('.');
+        long frac = scaled % 1000;
+        if (frac < 100) sb.append('0');
+        if (frac < 10) sb.append('0');
+        sb.append(frac);
+    }
+
+    /** Same output as %,d in an English locale. */
+    static void appendGrouped(StringBuilder sb, long v) {
+        if (v < 0) {
+            sb.append('-');
+            v = -v;
+        }
+        if (v < 1000) {
+            sb.append(v);
+            return;
+        }
+        appendGrouped(sb, v / 1000);
+        long rest = v % 1000;
+        sb.append(',');
+        if (rest < 100) sb.append('0');
+        if (rest < 10) sb.append('0');
+        sb.append(rest);
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.ScoreWeights;
+
+import java.util.Arrays;
+
+/**
+ * Score order of every county for one weight profile.
+ *
+ * order[p] is the row at rank position p (0 = most resilient, ties broken by row),
+ * position[r] is the inverse. Single-row changes are repaired in place with a binary
+ * search and one array shift rather than a full re-sort.
+ */
+final class RankingIndex {
+
+    private final ScoreWeights weights;
+    private double[] scores;   // by row
+    private int[] order;       // position -> row
+    private int[] position;    // row -> position
+    private int size;
+    private double scoreSum;
+
+    private RankingIndex(ScoreWeights weights, double[] scores) {
+        this.weights = weights;
+        this.scores = scores;
+        this.size = scores.length;
+        this.order = new int[Math.max(1, size)];
+        this.position = new int[Math.max(1, size)];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            scoreSum += scores[i];
+        }
+        sort(order, new int[order.length], 0, size);
+        for (int p = 0; p < size; p++) {
+            position[order[p]] = p;
+        }
+    }
+
+    private RankingIndex(RankingIndex other) {
+        this.weights = other.weights;
+        this.scores = other.scores.clone();
+        this.order = other.order.clone();
+        this.position = other.position.clone();
+        this.size = other.size;
+        this.scoreSum = other.scoreSum;
+    }
+
+    static RankingIndex build(CountyStore store, ScoreWeights weights) {
+        return new RankingIndex(weights, BatchScorer.scoreAll(store, weights));
+    }
+
+    /** Ranking over precomputed scores (one per row); the array is kept, not copied. */
+    static RankingIndex of(ScoreWeights weights, double[] scores) {
+        return new RankingIndex(weights, scores);
+    }
+
+    /** Independent copy, so a new dataset generation can be repaired without touching this one. */
+    RankingIndex copy() {
+        return new RankingIndex(this);
+    }
+
+    ScoreWeights weights() { return weights; }
+
+    int size() { return size; }
+
+    double score(int row) { return scores[row]; }
+
+    double averageScore() { return size == 0 ? 0.0 : scoreSum / size; }
+
+    /** Row at rank position p (0-based). */
+    int rowAt(int p) { return order[p]; }
+
+    /** 1-based rank of the row. */
+    int rank(int row) { return position[row] + 1; }
+
+    /** Share of the other counties scoring strictly below this row's position, 0..100. */
+    double percentile(int row) {
+        return percentile(position[row], size);
+    }
+
+    /** Percentile of 0-based position in a ranking of size counties, as {@link #percentile(int)}. */
+    static double percentile(int position, int size) {
+        if (size <= 1) return 100.0;
+        return 100.0 * (size - 1 - position) / (size - 1);
+    }
+
+    /** 1-based rank a county with this score would take, ranked behind existing equal scores. */
+    int rankFor(double score) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (scores[order[mid]] >= score) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo + 1;
+    }
+
+    /** Rows of the k most resilient counties, best first. */
+    int[] top(int k) {
+        return Arrays.copyOf(order, Math.max(0, Math.min(k, size)));
+    }
+
+    /** Rows of the k least resilient counties, worst first. */
+    int[] bottom(int k) {
+        int n = Math.max(0, Math.min(k, size));
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = order[size - 1 - i];
+        }
+        return out;
+    }
+
+    /**
+     * Moves (or, for row == size, appends) a row after its score changed.
+     * Rows are assumed to be appended densely, as {@link CountyStore} does.
+     */
+    void update(int row, double newScore) {
+        int from;
+        if (row == size) {
+            ensureCapacity(size + 1);
+            scores = scores.length > row ? scores : Arrays.copyOf(scores, Math.max(4, scores.length * 2));
+            order[size] = row;
+            from = size++;
+        } else {
+            from = position[row];
+            scoreSum -= scores[row];
+        }
+        scores[row] = newScore;
+        scoreSum += newScore;
+
+        // Find the insertion point among the other rows, then shift the gap toward it
+        int to = insertionPoint(row, newScore, from);
+        if (to < from) {
+            System.arraycopy(order, to, order, to + 1, from - to);
+            for (int p = to + 1; p <= from; p++) position[order[p]] = p;
+        } else if (to > from) {
+            System.arraycopy(order, from + 1, order, from, to - from);
+            for (int p = from; p < to; p++) position[order[p]] = p;
+        }
+        order[to] = row;
+        position[row] = to;
+    }
+
+    /** Final position for the row if the element currently at 'from' is taken out. */
+    private int insertionPoint(int row, double score, int from) {
+        int lo = 0, hi = size - 1; // positions excluding 'from' map to a list of size-1 elements
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int other = order[mid < from ? mid : mid + 1];
+            if (before(other, scores[other], row, score)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private void ensureCapacity(int n) {
+        if (order.length >= n) return;
+        int cap = Math.max(n, order.length * 2);
+        order = Arrays.copyOf(order, cap);
+        position = Arrays.copyOf(position, cap);
+    }
+
+    /** True if row a (score sa) ranks ahead of row b (score sb). */
+    private static boolean before(int a, double sa, int b, double sb) {
+        return sa > sb || (sa == sb && a < b);
+    }
+
+    // Primitive merge sort of row numbers by descending score, avoiding Integer boxing
+    private void sort(int[] a, int[] tmp, int lo, int hi) {
+        if (hi - lo < 2) return;
+        if (hi - lo <= 16) {
+            for (int i = lo + 1; i < hi; i++) {
+                int v = a[i];
+                int j = i - 1;
+                while (j >= lo && before(v, scores[v], a[j], scores[a[j]])) {
+                    a[j + 1] = a[j];
+                    j--;
+                }
+                a[j + 1] = v;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        sort(a, tmp, lo, mid);
+        sort(a, tmp, mid, hi);
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) {
+            tmp[k++] = before(a[j], scores[a[j]], a[i], scores[a[i]]) ? a[j++] : a[i++];
+        }
+        while (i < mid) tmp[k++] = a[i++];
+        while (j < hi) tmp[k++] = a[j++];
+        System.arraycopy(tmp, lo, a, lo, hi - lo);
+    }
+}
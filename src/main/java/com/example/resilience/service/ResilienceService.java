@@ -1,27 +1,92 @@
 package com.example.resilience.service;
 
 import com.example.resilience.model.County;
+import com.example.resilience.model.RankedCounty;
+import com.example.resilience.model.ScoreExplanation;
+import com.example.resilience.model.ScoreWeights;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class ResilienceService {
 
-    // In-memory store (populated by DataLoader)
-    private final Map<Long, County> counties = new HashMap<>();
+    // Active dataset generation; readers grab it once and never lock, writers swap it whole
+    private final AtomicReference<Dataset> current = new AtomicReference<>(Dataset.empty());
 
-    public void saveCounty(County c) {
-        counties.put(c.getId(), c);
+    /** Copy-on-write upsert of one county, published as the next generation. */
+    public synchronized void saveCounty(County c) {
+        Dataset active = current.get();
+        current.set(active.withCounty(c, active.generation() + 1));
     }
 
+    /** Copy-on-write upsert of many counties, published as one generation. */
+    public synchronized Dataset saveCounties(List<County> counties) {
+        Dataset active = current.get();
+        if (counties.isEmpty()) return active;
+        Dataset next = active.withCounties(counties, active.generation() + 1);
+        current.set(next);
+        return next;
+    }
+
+    /**
+     * Replaces the whole dataset in one atomic swap. Requests already holding the previous
+     * {@link Dataset} finish against it; new requests see the replacement.
+     */
+    public synchronized Dataset replaceAll(List<County> counties, String source) {
+        Dataset next = Dataset.of(counties, current.get().generation() + 1, source);
+        current.set(next);
+        return next;
+    }
+
+    /** The active dataset generation. Hold on to it for reads that must be mutually consistent. */
+    public Dataset dataset() {
+        return current.get();
+    }
+
+    /** Read-only view of one county, or null if the id is unknown. */
+    public CountyRow findRow(long id) {
+        return current.get().findRow(id);
+    }
+
+    /** Detached copies of every county keyed by id; changes to them are not written back. */
     public Map<Long, County> getAll() {
-        return counties;
+        CountyStore store = current.get().store();
+        Map<Long, County> all = new LinkedHashMap<>();
+        for (int r = 0; r < store.size(); r++) {
+            all.put(store.id(r), store.toCounty(r));
+        }
+        return Collections.unmodifiableMap(all);
+    }
+
+    /** Read-only row views over the active dataset, in load order. */
+    public List<CountyRow> rows() {
+        return current.get().rows();
+    }
+
+    /** Data version; the generation of the active dataset, bumped on every write or reload. */
+    public long version() {
+        return current.get().generation();
+    }
+
+    /** County ids in row order. */
+    public long[] ids() {
+        return current.get().ids();
+    }
+
+    public CountyStore store() {
+        return current.get().store();
     }
 
     public County findById(Long id) {
-        return counties.get(id);
+        if (id == null) return null;
+        CountyStore store = current.get().store();
+        int row = store.rowOf(id);
+        return row < 0 ? null : store.toCounty(row);
     }
 
     /**
@@ -29,38 +94,65 @@ public class ResilienceService {
      * Higher score = more resilient (0..1)
      */
     public double scoreCounty(County c) {
+        return scoreCounty(c, ScoreWeights.DEFAULT);
+    }
+
+    /**
+     * Weighted heuristic: high income, low unemployment, low cost and low disaster risk score well;
+     * very small counties take a light population penalty.
+     */
+    public double scoreCounty(County c, ScoreWeights w) {
         if (c == null) return 0.0;
+        return BatchScorer.score(c.getMedianIncome(), c.getUnemploymentRate(), c.getCostOfLivingIndex(),
+                c.getDisasterRisk(), c.getPopulation(), w);
+    }
 
-        // Normalize inputs to 0..1 expected range. Assume medianIncome already normalized roughly 0..1.
-        double income = clamp(c.getMedianIncome(), 0.0, 1.0);
-        double unemp = clamp(c.getUnemploymentRate(), 0.0, 1.0);
-        double cost = clamp(c.getCostOfLivingIndex(), 0.0, 1.0);
-        double disaster = clamp(c.getDisasterRisk(), 0.0, 1.0);
+    /** Same heuristic as {@link #scoreCounty(County)}, read straight from the row's store columns. */
+    public double scoreRow(CountyRow row) {
+        return scoreRow(row, ScoreWeights.DEFAULT);
+    }
 
-        // We want high income, low unemployment, low cost, low disaster risk
-        double score = 0.5 * income + 0.25 * (1 - unemp) + 0.15 * (1 - cost) + 0.10 * (1 - disaster);
+    public double scoreRow(CountyRow row, ScoreWeights w) {
+        CountyStore store = row.store();
+        int r = row.row();
+        return BatchScorer.score(store.medianIncome(r), store.unemploymentRate(r), store.costOfLivingIndex(r),
+                store.disasterRisk(r), store.population(r), w);
+    }
 
-        // Slight adjustment: smaller populations may be less resilient in some contexts; penalize very small counties lightly
-        double popPenalty = 0.0;
-        if (c.getPopulation() < 10000) popPenalty = 0.05;
-        if (c.getPopulation() < 2000) popPenalty = 0.08;
+    /** Scores every county in row order (matching {@link #rows()}) in a single columnar pass. */
+    public double[] scoreAll(ScoreWeights w) {
+        return current.get().scoreAll(w);
+    }
+
+    /** The k most resilient counties under the given weights, best first. */
+    public List<RankedCounty> top(ScoreWeights w, int k) {
+        return current.get().top(w, k);
+    }
+
+    /** The k least resilient counties under the given weights, worst first. */
+    public List<RankedCounty> bottom(ScoreWeights w, int k) {
+        return current.get().bottom(w, k);
+    }
+
+    /** Rank, percentile and score of one county, or null if the id is unknown. */
+    public RankedCounty rankOf(Long id, ScoreWeights w) {
+        return id == null ? null : current.get().rankOf(id, w);
+    }
+
+    public double averageScore(ScoreWeights w) {
+        return current.get().averageScore(w);
+    }
 
-        score = score - popPenalty;
-        return clamp(score, 0.0, 1.0);
+    public double averageMedianIncome() {
+        return current.get().averageMedianIncome();
     }
 
-    public String explain(County c) {
-        double s = scoreCounty(c);
-        StringBuilder sb = new StringBuilder();
-        sb.append(String.format("Estimated resilience score: %.3f. ", s));
-        sb.append("Factors: ");
-        sb.append(String.format("Income=%.2f, Unemployment=%.2f, Cost=%.2f, DisasterRisk=%.2f.",
-                c.getMedianIncome(), c.getUnemploymentRate(), c.getCostOfLivingIndex(), c.getDisasterRisk()));
-        return sb.toString();
+    /** Score breakdown under the default weights; see {@link Dataset#explain}. */
+    public ScoreExplanation explain(County c) {
+        return explain(c, ScoreWeights.DEFAULT);
     }
 
-    private double clamp(double v, double lo, double hi) {
-        if (Double.isNaN(v)) return lo;
-        return Math.max(lo, Math.min(hi, v));
+    public ScoreExplanation explain(County c, ScoreWeights w) {
+        return current.get().explain(c, w);
     }
 }
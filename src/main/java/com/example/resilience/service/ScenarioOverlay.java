@@ -0,0 +1,147 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.ScoreWeights;
+
+/**
+ * Copy-on-write view of a {@link CountyStore} for one scenario. Columns start out shared with
+ * the live store and are cloned the first time a perturbation writes to them, so a scenario that
+ * only touches unemployment copies one array and the live dataset is never modified.
+ *
+ * Median income and cost of living are perturbed in their raw units (dollars, rent / income) and
+ * the normalized column is rebuilt from the perturbed raw column before scoring, on a fresh
+ * {@link ColumnScale}, exactly as the store would after an upsert moved an extreme.
+ */
+final class ScenarioOverlay {
+
+    enum Field { MEDIAN_INCOME, UNEMPLOYMENT_RATE, COST_OF_LIVING_INDEX, DISASTER_RISK, POPULATION }
+
+    private final int size;
+    private double[] medianIncome;
+    private double[] unemploymentRate;
+    private double[] costOfLivingIndex;
+    private double[] disasterRisk;
+    private int[] population;
+    private double[] medianIncomeRaw;
+    private double[] costOfLivingRaw;
+    // Raw column copied and perturbed; the normalized one is rebuilt before scoring
+    private boolean incomeChanged;
+    private boolean costChanged;
+    private final boolean[] copied = new boolean[Field.values().length];
+    private final boolean[] touched;
+    private int touchedCount;
+
+    ScenarioOverlay(CountyStore store) {
+        this.size = store.size();
+        this.medianIncome = store.medianIncomeColumn();
+        this.unemploymentRate = store.unemploymentRateColumn();
+        this.costOfLivingIndex = store.costOfLivingIndexColumn();
+        this.disasterRisk = store.disasterRiskColumn();
+        this.population = store.populationColumn();
+        this.medianIncomeRaw = store.medianIncomeRawColumn();
+        this.costOfLivingRaw = store.costOfLivingRawColumn();
+        this.touched = new boolean[size];
+    }
+
+    /**
+     * value * multiply + add for each row in rows; populations are rounded and kept non-negative.
+     * Income and cost of living change their raw value, kept non-negative; rows whose raw value
+     * is unknown (NaN) have no unit to shift in and are left as they are.
+     */
+    void apply(Field field, int[] rows, double multiply, double add) {
+        if (field == Field.MEDIAN_INCOME || field == Field.COST_OF_LIVING_INDEX) {
+            boolean income = field == Field.MEDIAN_INCOME;
+            double[] raw = income ? writableIncomeRaw() : writableCostRaw();
+            writable(field);
+            for (int r : rows) {
+                if (Double.isNaN(raw[r])) continue;
+                raw[r] = Math.max(0, raw[r] * multiply + add);
+                touch(r);
+            }
+            if (income) incomeChanged = true;
+            else costChanged = true;
+            return;
+        }
+        if (field == Field.POPULATION) {
+            int[] col = writablePopulation();
+            for (int r : rows) {
+                col[r] = (int) Math.max(0, Math.min(Integer.MAX_VALUE, Math.round(col[r] * multiply + add)));
+                touch(r);
+            }
+            return;
+        }
+        double[] col = writable(field);
+        for (int r : rows) {
+            col[r] = col[r] * multiply + add;
+            touch(r);
+        }
+    }
+
+    /** Counties changed by at least one perturbation. */
+    int touchedCount() {
+        return touchedCount;
+    }
+
+    double[] scoreAll(ScoreWeights w) {
+        if (incomeChanged) renormalize(medianIncomeRaw, medianIncome);
+        if (costChanged) renormalize(costOfLivingRaw, costOfLivingIndex);
+        double[] out = new double[size];
+        BatchScorer.scoreInto(medianIncome, unemploymentRate, costOfLivingIndex, disasterRisk, population,
+                w, out, 0, size);
+        return out;
+    }
+
+    /** Rescales the normalized column to the min and max of the perturbed raw column. */
+    private void renormalize(double[] raw, double[] normalized) {
+        ColumnScale scale = new ColumnScale();
+        for (int r = 0; r < size; r++) scale.replace(Double.NaN, raw[r]);
+        scale.apply(raw, size);
+        for (int r = 0; r < size; r++) {
+            if (!Double.isNaN(raw[r])) normalized[r] = scale.normalize(raw[r]);
+        }
+    }
+
+    private void touch(int row) {
+        if (!touched[row]) {
+            touched[row] = true;
+            touchedCount++;
+        }
+    }
+
+    private double[] writable(Field field) {
+        boolean first = !copied[field.ordinal()];
+        copied[field.ordinal()] = true;
+        return switch (field) {
+            case MEDIAN_INCOME -> first ? (medianIncome = copyOf(medianIncome)) : medianIncome;
+            case UNEMPLOYMENT_RATE -> first ? (unemploymentRate = copyOf(unemploymentRate)) : unemploymentRate;
+            case COST_OF_LIVING_INDEX -> first ? (costOfLivingIndex = copyOf(costOfLivingIndex)) : costOfLivingIndex;
+            case DISASTER_RISK -> first ? (disasterRisk = copyOf(disasterRisk)) : disasterRisk;
+            case POPULATION -> throw new IllegalArgumentException("population is an int column");
+        };
+    }
+
+    private int[] writablePopulation() {
+        if (!copied[Field.POPULATION.ordinal()]) {
+            copied[Field.POPULATION.ordinal()] = true;
+            int[] copy = new int[size];
+            System.arraycopy(population, 0, copy, 0, size);
+            population = copy;
+        }
+        return population;
+    }
+
+    private double[] writableIncomeRaw() {
+        if (!incomeChanged) medianIncomeRaw = copyOf(medianIncomeRaw);
+        return medianIncomeRaw;
+    }
+
+    private double[] writableCostRaw() {
+        if (!costChanged) costOfLivingRaw = copyOf(costOfLivingRaw);
+        return costOfLivingRaw;
+    }
+
+    private double[] copyOf(double[] column) {
+        double[] copy = new double[size];
+        System.arraycopy(column, 0, copy, 0, size);
+        return copy;
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.CountyShape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable spatial index over one set of county shapes (index-aligned with the list it was
+ * built from).
+ *
+ * Bounding boxes go into an STR-packed R-tree: at every level the boxes are sorted into
+ * vertical slices by centre x, each slice by centre y, and packed NODE_SIZE to a node, so
+ * nodes are full and overlap little. Everything lives in flat arrays (items first, then the
+ * nodes level by level, root last) and queries walk it with an explicit stack.
+ *
+ * Adjacency is precomputed from shared vertices, the same 1e-6 degree keys
+ * {@link GeometrySimplifier} uses for shared borders: two counties touching at one or more
+ * vertices are neighbours (queen contiguity), and the number of shared vertices says how long
+ * the common border is. Stored as CSR arrays.
+ */
+final class SpatialIndex {
+
+    private static final int NODE_SIZE = 16;
+
+    private final int count;
+    // Entries 0..count-1 are the shapes' boxes, the rest are tree nodes
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+    // Shape index for items; first child entry for nodes (children are contiguous up to childEnd)
+    private final int[] childStart;
+    private final int[] childEnd;
+    private final int root;
+
+    private final double[] centroidLon;
+    private final double[] centroidLat;
+
+    private final int[] adjacencyStart;
+    private final int[] adjacency;
+    private final int[] sharedVertices;
+
+    SpatialIndex(List<CountyShape> shapes) {
+        count = shapes.size();
+        centroidLon = new double[count];
+        centroidLat = new double[count];
+        for (int i = 0; i < count; i++) centroid(shapes.get(i), i);
+
+        // Items plus every level of nodes above them
+        int capacity = count;
+        for (int n = count; n > 1; n = (n + NODE_SIZE - 1) / NODE_SIZE) capacity += (n + NODE_SIZE - 1) / NODE_SIZE;
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+        childStart = new int[capacity];
+        childEnd = new int[capacity];
+
+        for (int i = 0; i < count; i++) {
+            CountyShape s = shapes.get(i);
+            minX[i] = s.minLon();
+            minY[i] = s.minLat();
+            maxX[i] = s.maxLon();
+            maxY[i] = s.maxLat();
+            childStart[i] = i;
+        }
+        root = count == 0 ? -1 : pack();
+
+        int[][] csr = adjacency(shapes);
+        adjacencyStart = csr[0];
+        adjacency = csr[1];
+        sharedVertices = csr[2];
+    }
+
+    int size() {
+        return count;
+    }
+
+    double centroidLon(int shape) { return centroidLon[shape]; }
+
+    double centroidLat(int shape) { return centroidLat[shape]; }
+
+    /** Shapes whose bounding box intersects the box, in no particular order. */
+    int[] intersecting(double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        int[] out = new int[16];
+        int found = 0;
+        if (root < 0) return new int[0];
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (maxX[node] < qMinX || minX[node] > qMaxX || maxY[node] < qMinY || minY[node] > qMaxY) continue;
+            if (node < count) {
+                if (found == out.length) out = Arrays.copyOf(out, found * 2);
+                out[found++] = childStart[node];
+                continue;
+            }
+            for (int c = childStart[node]; c < childEnd[node]; c++) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = c;
+            }
+        }
+        return Arrays.copyOf(out, found);
+    }
+
+    /** Neighbouring shapes of a shape, most shared vertices first. */
+    int[] neighbors(int shape) {
+        return Arrays.copyOfRange(adjacency, adjacencyStart[shape], adjacencyStart[shape + 1]);
+    }
+
+    /** Shared vertex count per neighbour, aligned with {@link #neighbors(int)}. */
+    int[] sharedVertices(int shape) {
+        return Arrays.copyOfRange(sharedVertices, adjacencyStart[shape], adjacencyStart[shape + 1]);
+    }
+
+    /**
+     * Builds the tree bottom-up. Each level is a contiguous block of entries that is first put
+     * into STR order in place, then packed NODE_SIZE at a time into parents appended right after
+     * it, until one root remains. Returns the root entry.
+     */
+    private int pack() {
+        int base = 0, length = count, next = count;
+        while (length > 1) {
+            strSort(base, length);
+            int nodes = (length + NODE_SIZE - 1) / NODE_SIZE;
+            for (int p = 0; p < nodes; p++) {
+                int node = next + p;
+                int from = base + p * NODE_SIZE, to = Math.min(base + length, from + NODE_SIZE);
+                childStart[node] = from;
+                childEnd[node] = to;
+                minX[node] = Double.POSITIVE_INFINITY;
+                minY[node] = Double.POSITIVE_INFINITY;
+                maxX[node] = Double.NEGATIVE_INFINITY;
+                maxY[node] = Double.NEGATIVE_INFINITY;
+                for (int c = from; c < to; c++) {
+                    minX[node] = Math.min(minX[node], minX[c]);
+                    minY[node] = Math.min(minY[node], minY[c]);
+                    maxX[node] = Math.max(maxX[node], maxX[c]);
+                    maxY[node] = Math.max(maxY[node], maxY[c]);
+                }
+            }
+            base = next;
+            length = nodes;
+            next += nodes;
+        }
+        return base;
+    }
+
+    /** Sort-Tile-Recursive order for one level: slices by centre x, each slice by centre y. */
+    private void strSort(int base, int length) {
+        int slices = (int) Math.ceil(Math.sqrt(Math.ceil(length / (double) NODE_SIZE)));
+        int perSlice = slices * NODE_SIZE;
+        Integer[] order = new Integer[length];
+        for (int i = 0; i < length; i++) order[i] = base + i;
+        Arrays.sort(order, (a, b) -> Double.compare(minX[a] + maxX[a], minX[b] + maxX[b]));
+        for (int from = 0; from < length; from += perSlice) {
+            Arrays.sort(order, from, Math.min(length, from + perSlice),
+                    (a, b) -> Double.compare(minY[a] + maxY[a], minY[b] + maxY[b]));
+        }
+        permute(minX, order, base);
+        permute(minY, order, base);
+        permute(maxX, order, base);
+        permute(maxY, order, base);
+        permute(childStart, order, base);
+        permute(childEnd, order, base);
+    }
+
+    private static void permute(double[] a, Integer[] order, int base) {
+        double[] tmp = new double[order.length];
+        for (int i = 0; i < order.length; i++) tmp[i] = a[order[i]];
+        System.arraycopy(tmp, 0, a, base, tmp.length);
+    }
+
+    private static void permute(int[] a, Integer[] order, int base) {
+        int[] tmp = new int[order.length];
+        for (int i = 0; i < order.length; i++) tmp[i] = a[order[i]];
+        System.arraycopy(tmp, 0, a, base, tmp.length);
+    }
+
+    /** Area-weighted centroid of the outer rings; the box centre for degenerate shapes. */
+    private void centroid(CountyShape shape, int i) {
+        double area = 0, cx = 0, cy = 0;
+        for (double[][] polygon : shape.polygons()) {
+            double[] ring = polygon[0];
+            for (int k = 0; k + 3 < ring.length; k += 2) {
+                double cross = ring[k] * ring[k + 3] - ring[k + 2] * ring[k + 1];
+                area += cross;
+                cx += (ring[k] + ring[k + 2]) * cross;
+                cy += (ring[k + 1] + ring[k + 3]) * cross;
+            }
+        }
+        if (Math.abs(area) < 1e-12) {
+            centroidLon[i] = (shape.minLon() + shape.maxLon()) / 2;
+            centroidLat[i] = (shape.minLat() + shape.maxLat()) / 2;
+        } else {
+            centroidLon[i] = cx / (3 * area);
+            centroidLat[i] = cy / (3 * area);
+        }
+    }
+
+    /** CSR adjacency {start, neighbours, shared vertex counts} from vertices owned by more than one shape. */
+    private static int[][] adjacency(List<CountyShape> shapes) {
+        Map<Long, int[]> owners = new HashMap<>();
+        for (int s = 0; s < shapes.size(); s++) {
+            for (double[][] polygon : shapes.get(s).polygons()) {
+                for (double[] ring : polygon) {
+                    for (int k = 0; k < ring.length; k += 2) {
+                        long key = GeometrySimplifier.key(ring[k], ring[k + 1]);
+                        int[] o = owners.get(key);
+                        if (o == null) {
+                            owners.put(key, new int[]{s});
+                        } else if (o[o.length - 1] != s && !contains(o, s)) {
+                            o = Arrays.copyOf(o, o.length + 1);
+                            o[o.length - 1] = s;
+                            owners.put(key, o);
+                        }
+                    }
+                }
+            }
+        }
+        Map<Long, Integer> pairs = new HashMap<>();
+        for (int[] o : owners.values()) {
+            if (o.length < 2) continue;
+            for (int a = 0; a < o.length; a++) {
+                for (int b = a + 1; b < o.length; b++) {
+                    int lo = Math.min(o[a], o[b]), hi = Math.max(o[a], o[b]);
+                    pairs.merge(((long) lo << 32) | hi, 1, Integer::sum);
+                }
+            }
+        }
+
+        int n = shapes.size();
+        List<List<int[]>> lists = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) lists.add(new ArrayList<>());
+        pairs.forEach((pair, shared) -> {
+            int lo = (int) (pair >>> 32), hi = (int) (long) pair;
+            lists.get(lo).add(new int[]{hi, shared});
+            lists.get(hi).add(new int[]{lo, shared});
+        });
+        int[] start = new int[n + 1];
+        int[] neighbors = new int[pairs.size() * 2];
+        int[] shared = new int[pairs.size() * 2];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            start[i] = k;
+            List<int[]> list = lists.get(i);
+            list.sort((x, y) -> x[1] != y[1] ? Integer.compare(y[1], x[1]) : Integer.compare(x[0], y[0]));
+            for (int[] e : list) {
+                neighbors[k] = e[0];
+                shared[k++] = e[1];
+            }
+        }
+        start[n] = k;
+        return new int[][]{start, neighbors, shared};
+    }
+
+    private static boolean contains(int[] a, int v) {
+        for (int x : a) if (x == v) return true;
+        return false;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.CountyShape;
+import com.example.resilience.model.ScoreWeights;
+import com.example.resilience.service.CountyGeometryService.GeometrySet;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Neighbour, radius and bounding-box queries over the cached county geometry, with every hit
+ * scored against the current dataset.
+ *
+ * The {@link SpatialIndex} is built once per geometry set (on first use after a load or
+ * refresh) and shared by all requests; a query is a short R-tree walk or an adjacency lookup
+ * plus one ranking lookup per hit. Distances are great-circle miles between county centroids.
+ */
+@Service
+public class SpatialService {
+
+    /** One county in a result; score and rank are null for shapes without data. */
+    public record Hit(long id, String name, Double score, Integer rank, Double distanceMiles, Integer sharedVertices) {
+    }
+
+    public record Result(long generation, ScoreWeights weights, int matched, List<Hit> counties) {
+    }
+
+    /** A county, its neighbours (longest shared border first) and how it compares to their mean score. */
+    public record Neighbors(long generation, ScoreWeights weights, Hit county, Double neighborAverageScore,
+                            Double deltaToNeighbors, List<Hit> neighbors) {
+    }
+
+    /** The index for one geometry set, with shape lookup by FIPS id. */
+    record Built(GeometrySet geometry, SpatialIndex index, Map<Long, Integer> byFips) {
+    }
+
+    private static final double EARTH_RADIUS_MILES = 3958.8;
+    private static final double MILES_PER_DEGREE_LAT = 69.09;
+
+    private final CountyGeometryService geometryService;
+    private final ResilienceService resilienceService;
+    private volatile Built built;
+
+    public SpatialService(CountyGeometryService geometryService, ResilienceService resilienceService) {
+        this.geometryService = geometryService;
+        this.resilienceService = resilienceService;
+    }
+
+    /** Neighbours of the county, or null if it has no geometry. */
+    public Neighbors neighbors(long id, ScoreWeights w) {
+        Built b = index();
+        Integer shape = b.byFips().get(id);
+        if (shape == null) return null;
+        Dataset dataset = resilienceService.dataset();
+        Scorer scorer = new Scorer(b, dataset, w);
+        Hit self = scorer.hit(shape, null, null);
+        int[] neighbors = b.index().neighbors(shape);
+        int[] shared = b.index().sharedVertices(shape);
+        List<Hit> hits = new ArrayList<>(neighbors.length);
+        double sum = 0;
+        int scored = 0;
+        for (int i = 0; i < neighbors.length; i++) {
+            Hit h = scorer.hit(neighbors[i], null, shared[i]);
+            hits.add(h);
+            if (h.score() != null) {
+                sum += h.score();
+                scored++;
+            }
+        }
+        Double average = scored == 0 ? null : sum / scored;
+        Double delta = average == null || self.score() == null ? null : self.score() - average;
+        return new Neighbors(dataset.generation(), w, self, average, delta, hits);
+    }
+
+    /**
+     * Rows of the dataset's counties bordering the county (longest shared border first), for
+     * callers that already work on rows; empty if it has no geometry.
+     */
+    int[] neighborRows(Dataset dataset, long id) {
+        Built b = index();
+        Integer shape = b.byFips().get(id);
+        if (shape == null) return new int[0];
+        List<CountyShape> shapes = b.geometry().shapes();
+        CountyJoin join = new CountyJoin(dataset);
+        int[] neighbors = b.index().neighbors(shape);
+        int found = 0;
+        for (int n : neighbors) {
+            CountyRow row = join.rowFor(shapes.get(n));
+            if (row != null) neighbors[found++] = row.row();
+        }
+        return Arrays.copyOf(neighbors, found);
+    }
+
+    /** Centroid of the county's shape as {lon, lat}, or null if it has no geometry. */
+    public double[] centroid(long id) {
+        Built b = index();
+        Integer shape = b.byFips().get(id);
+        return shape == null ? null : new double[]{b.index().centroidLon(shape), b.index().centroidLat(shape)};
+    }
+
+    /**
+     * Counties whose centroid is within miles of the point. sort is "score" (most resilient
+     * first) or "distance"; limit <= 0 returns every match.
+     */
+    public Result radius(double lat, double lon, double miles, ScoreWeights w, String sort, int limit) {
+        if (!(lat >= -90 && lat <= 90) || !(lon >= -180 && lon <= 180)) throw new IllegalArgumentException("lat/lon out of range");
+        if (!(miles > 0 && miles <= 3000)) throw new IllegalArgumentException("miles must be between 0 and 3000");
+        Built b = index();
+        Dataset dataset = resilienceService.dataset();
+        Scorer scorer = new Scorer(b, dataset, w);
+        List<Hit> hits = new ArrayList<>();
+        for (int shape : within(b.index(), lat, lon, miles)) {
+            double d = haversineMiles(lat, lon, b.index().centroidLat(shape), b.index().centroidLon(shape));
+            hits.add(scorer.hit(shape, d, null));
+        }
+        return result(dataset, w, hits, sort, limit);
+    }
+
+    /** Shapes whose centroid is within miles of the point, in no particular order. */
+    static int[] within(SpatialIndex index, double lat, double lon, double miles) {
+        double dLat = miles / MILES_PER_DEGREE_LAT;
+        // Widest longitude span of the box is at its most poleward latitude
+        double cos = Math.cos(Math.toRadians(Math.min(89.9, Math.abs(lat) + dLat)));
+        double dLon = Math.min(180, miles / (MILES_PER_DEGREE_LAT * cos));
+        int[] candidates = index.intersecting(lon - dLon, lat - dLat, lon + dLon, lat + dLat);
+        int found = 0;
+        for (int shape : candidates) {
+            if (haversineMiles(lat, lon, index.centroidLat(shape), index.centroidLon(shape)) <= miles) candidates[found++] = shape;
+        }
+        return Arrays.copyOf(candidates, found);
+    }
+
+    /** Counties whose bounding box intersects the box; sorted and limited as for {@link #radius}. */
+    public Result bbox(double minLon, double minLat, double maxLon, double maxLat, ScoreWeights w, String sort, int limit) {
+        if (!(minLon <= maxLon) || !(minLat <= maxLat)) throw new IllegalArgumentException("bbox min must not exceed max");
+        Built b = index();
+        Dataset dataset = resilienceService.dataset();
+        Scorer scorer = new Scorer(b, dataset, w);
+        List<Hit> hits = new ArrayList<>();
+        for (int shape : b.index().intersecting(minLon, minLat, maxLon, maxLat)) hits.add(scorer.hit(shape, null, null));
+        return result(dataset, w, hits, sort, limit);
+    }
+
+    private static Result result(Dataset dataset, ScoreWeights w, List<Hit> hits, String sort, int limit) {
+        Comparator<Hit> byScore = Comparator.comparing(Hit::score, Comparator.nullsLast(Comparator.reverseOrder()));
+        if (sort == null || sort.equalsIgnoreCase("score")) {
+            hits.sort(byScore.thenComparingLong(Hit::id));
+        } else if (sort.equalsIgnoreCase("distance")) {
+            hits.sort(Comparator.comparing(Hit::distanceMiles, Comparator.nullsLast(Comparator.naturalOrder()))
+                    .thenComparingLong(Hit::id));
+        } else {
+            throw new IllegalArgumentException("sort must be 'score' or 'distance'");
+        }
+        int matched = hits.size();
+        return new Result(dataset.generation(), w, matched, limit > 0 && limit < matched ? hits.subList(0, limit) : hits);
+    }
+
+    /** Joins shapes to rows of one dataset generation and scores them. */
+    private static final class Scorer {
+        private final List<CountyShape> shapes;
+        private final CountyJoin join;
+        private final RankingIndex ranking;
+
+        Scorer(Built b, Dataset dataset, ScoreWeights w) {
+            this.shapes = b.geometry().shapes();
+            this.join = new CountyJoin(dataset);
+            this.ranking = dataset.ranking(w);
+        }
+
+        Hit hit(int shape, Double distance, Integer shared) {
+            CountyShape s = shapes.get(shape);
+            CountyRow row = join.rowFor(s);
+            Double d = distance == null ? null : Math.round(distance * 10) / 10.0;
+            if (row == null) return new Hit(s.fips(), s.name(), null, null, d, shared);
+            return new Hit(row.getId(), row.getName(), ranking.score(row.row()), ranking.rank(row.row()), d, shared);
+        }
+    }
+
+    /** Index of the current geometry, built on first use after each load or refresh. */
+    Built index() {
+        GeometrySet geometry = geometryService.current();
+        Built b = built;
+        if (b != null && b.geometry() == geometry) return b;
+        synchronized (this) {
+            b = built;
+            if (b != null && b.geometry() == geometry) return b;
+            long start = System.currentTimeMillis();
+            List<CountyShape> shapes = geometry.shapes();
+            Map<Long, Integer> byFips = new HashMap<>();
+            for (int i = 0; i < shapes.size(); i++) {
+                if (shapes.get(i).fips() > 0) byFips.putIfAbsent(shapes.get(i).fips(), i);
+            }
+            b = new Built(geometry, new SpatialIndex(shapes), byFips);
+            built = b;
+            System.out.println("SpatialService: Indexed " + shapes.size() + " county shapes in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return b;
+        }
+    }
+
+    static double haversineMiles(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
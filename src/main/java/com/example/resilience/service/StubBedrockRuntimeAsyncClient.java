@@ -0,0 +1,213 @@
+package com.example.resilience.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeServiceClientConfiguration;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponseHandler;
+import software.amazon.awssdk.services.bedrockruntime.model.ResponseStream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offline stand-in for Bedrock (bedrock.stub=true). Answers in the response format of the
+ * configured model family with a canned reply that echoes the user question, after an optional
+ * artificial delay, and counts invocations so cache and coalescing behaviour can be observed.
+ * Streaming calls emit the reply word by word, spreading the delay across the chunks.
+ */
+public final class StubBedrockRuntimeAsyncClient implements BedrockRuntimeAsyncClient {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final long latencyMs;
+    private final Region region;
+    private final AtomicLong invocations = new AtomicLong();
+
+    public StubBedrockRuntimeAsyncClient(long latencyMs, Region region) {
+        this.latencyMs = latencyMs;
+        this.region = region;
+    }
+
+    @Override
+    public CompletableFuture<InvokeModelResponse> invokeModel(InvokeModelRequest request) {
+        invocations.incrementAndGet();
+        CompletableFuture<InvokeModelResponse> result = new CompletableFuture<>();
+        Thread.ofVirtual().name("bedrock-stub").start(() -> {
+            try {
+                sleep(latencyMs);
+                String modelId = request.modelId();
+                String answer = answer(modelId, request.body().asUtf8String());
+                Object body;
+                if (modelId.startsWith("anthropic.claude")) {
+                    body = Map.of("content", List.of(Map.of("type", "text", "text", answer)));
+                } else if (modelId.startsWith("amazon.titan")) {
+                    body = Map.of("results", List.of(Map.of("outputText", answer)));
+                } else {
+                    body = Map.of("generation", answer);
+                }
+                result.complete(InvokeModelResponse.builder()
+                        .contentType("application/json")
+                        .body(SdkBytes.fromUtf8String(json(body)))
+                        .build());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Void> invokeModelWithResponseStream(InvokeModelWithResponseStreamRequest request,
+                                                                 InvokeModelWithResponseStreamResponseHandler handler) {
+        invocations.incrementAndGet();
+        String modelId = request.modelId();
+        List<ResponseStream> events = new ArrayList<>();
+        for (String token : answer(modelId, request.body().asUtf8String()).split("(?<= )")) {
+            Object chunk;
+            if (modelId.startsWith("anthropic.claude")) {
+                chunk = Map.of("type", "content_block_delta", "index", 0, "delta", Map.of("type", "text_delta", "text", token));
+            } else if (modelId.startsWith("amazon.titan")) {
+                chunk = Map.of("outputText", token, "index", 0);
+            } else {
+                chunk = Map.of("generation", token);
+            }
+            events.add(ResponseStream.chunkBuilder().bytes(SdkBytes.fromUtf8String(json(chunk))).build());
+        }
+        long perChunkMs = events.isEmpty() ? 0 : latencyMs / events.size();
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        handler.responseReceived(InvokeModelWithResponseStreamResponse.builder().contentType("application/json").build());
+        SdkPublisher<ResponseStream> publisher = subscriber -> subscriber.onSubscribe(
+                new ListSubscription(events, subscriber, perChunkMs, () -> {
+                    handler.complete();
+                    done.complete(null);
+                }));
+        handler.onEventStream(publisher);
+        return done;
+    }
+
+    /** Number of model calls that reached the stub. */
+    public long invocations() {
+        return invocations.get();
+    }
+
+    /** Emits a fixed list on a virtual thread, honouring demand. */
+    private static final class ListSubscription implements Subscription {
+        private final List<ResponseStream> events;
+        private final Subscriber<? super ResponseStream> subscriber;
+        private final long delayMs;
+        private final Runnable onDone;
+        private long demand;
+        private int next;
+        private boolean cancelled;
+        private Thread emitter;
+
+        ListSubscription(List<ResponseStream> events, Subscriber<? super ResponseStream> subscriber,
+                         long delayMs, Runnable onDone) {
+            this.events = events;
+            this.subscriber = subscriber;
+            this.delayMs = delayMs;
+            this.onDone = onDone;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            notifyAll();
+            if (emitter == null) emitter = Thread.ofVirtual().name("bedrock-stub-stream").start(this::emit);
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        private void emit() {
+            try {
+                while (true) {
+                    ResponseStream event;
+                    synchronized (this) {
+                        while (demand == 0 && !cancelled) wait();
+                        if (cancelled) return;
+                        if (next == events.size()) break;
+                        event = events.get(next++);
+                        demand--;
+                    }
+                    sleep(delayMs);
+                    subscriber.onNext(event);
+                }
+                subscriber.onComplete();
+                onDone.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private String answer(String modelId, String requestJson) {
+        return "[stub " + modelId + "] " + question(requestJson);
+    }
+
+    /** Pulls the "User question:" line back out of whichever request format was sent. */
+    private String question(String requestJson) {
+        String prompt;
+        try {
+            JsonNode root = mapper.readTree(requestJson);
+            if (root.has("inputText")) prompt = root.get("inputText").asText();
+            else if (root.has("messages")) prompt = root.path("messages").path(0).path("content").path(0).path("text").asText();
+            else prompt = root.path("prompt").asText();
+        } catch (IOException e) {
+            prompt = requestJson;
+        }
+        int q = prompt.indexOf("User question:");
+        if (q < 0) return "Received a " + prompt.length() + "-character prompt.";
+        int end = prompt.indexOf('\n', q);
+        return "You asked: " + prompt.substring(q + "User question:".length(), end < 0 ? prompt.length() : end).trim();
+    }
+
+    private String json(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public BedrockRuntimeServiceClientConfiguration serviceClientConfiguration() {
+        return BedrockRuntimeServiceClientConfiguration.builder().region(region).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.resilience.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal Mapbox Vector Tile (spec v2.1) writer for a single polygon layer.
+ * Hand-rolled protobuf so we don't pull in a protobuf runtime for four message types.
+ */
+final class VectorTileEncoder {
+
+    // Protobuf wire types
+    private static final int VARINT = 0;
+    private static final int FIXED64 = 1;
+    private static final int LENGTH_DELIMITED = 2;
+
+    // MVT geometry commands
+    private static final int MOVE_TO = 1;
+    private static final int LINE_TO = 2;
+    private static final int CLOSE_PATH = 7;
+    private static final int POLYGON = 3;
+
+    private final String layerName;
+    private final int extent;
+    private final List<String> keys = new ArrayList<>();
+    private final Map<String, Integer> keyIndex = new HashMap<>();
+    private final List<Object> values = new ArrayList<>();
+    private final Map<Object, Integer> valueIndex = new HashMap<>();
+    private final ByteArrayOutputStream features = new ByteArrayOutputStream();
+
+    VectorTileEncoder(String layerName, int extent) {
+        this.layerName = layerName;
+        this.extent = extent;
+    }
+
+    /**
+     * Adds a polygon feature. Rings are tile-space integer coordinates (interleaved x,y, not closed),
+     * already oriented per the spec: exterior clockwise, holes counter-clockwise (y down).
+     * Attribute values may be String, Integer/Long or Double.
+     */
+    void addPolygon(long id, List<int[]> rings, Map<String, Object> attributes) {
+        ByteArrayOutputStream geometry = new ByteArrayOutputStream();
+        int cx = 0, cy = 0;
+        for (int[] ring : rings) {
+            int points = ring.length / 2;
+            writeVarint(geometry, command(MOVE_TO, 1));
+            writeVarint(geometry, zigzag(ring[0] - cx));
+            writeVarint(geometry, zigzag(ring[1] - cy));
+            cx = ring[0];
+            cy = ring[1];
+            writeVarint(geometry, command(LINE_TO, points - 1));
+            for (int i = 2; i < ring.length; i += 2) {
+                writeVarint(geometry, zigzag(ring[i] - cx));
+                writeVarint(geometry, zigzag(ring[i + 1] - cy));
+                cx = ring[i];
+                cy = ring[i + 1];
+            }
+            writeVarint(geometry, command(CLOSE_PATH, 1));
+        }
+
+        ByteArrayOutputStream tags = new ByteArrayOutputStream();
+        for (Map.Entry<String, Object> a : attributes.entrySet()) {
+            if (a.getValue() == null) continue;
+            writeVarint(tags, keyIndex.computeIfAbsent(a.getKey(), k -> {
+                keys.add(k);
+                return keys.size() - 1;
+            }));
+            writeVarint(tags, valueIndex.computeIfAbsent(a.getValue(), v -> {
+                values.add(v);
+                return values.size() - 1;
+            }));
+        }
+
+        ByteArrayOutputStream feature = new ByteArrayOutputStream();
+        writeTag(feature, 1, VARINT);
+        writeVarint(feature, id);
+        writeBytes(feature, 2, tags.toByteArray());
+        writeTag(feature, 3, VARINT);
+        writeVarint(feature, POLYGON);
+        writeBytes(feature, 4, geometry.toByteArray());
+
+        writeBytes(features, 2, feature.toByteArray());
+    }
+
+    /** Serialized Tile message containing the one layer. */
+    byte[] encode() {
+        ByteArrayOutputStream layer = new ByteArrayOutputStream();
+        writeTag(layer, 15, VARINT);
+        writeVarint(layer, 2);
+        writeBytes(layer, 1, layerName.getBytes(StandardCharsets.UTF_8));
+        layer.writeBytes(features.toByteArray());
+        for (String k : keys) writeBytes(layer, 3, k.getBytes(StandardCharsets.UTF_8));
+        for (Object v : values) writeBytes(layer, 4, value(v));
+        writeTag(layer, 5, VARINT);
+        writeVarint(layer, extent);
+
+        ByteArrayOutputStream tile = new ByteArrayOutputStream();
+        writeBytes(tile, 3, layer.toByteArray());
+        return tile.toByteArray();
+    }
+
+    private static byte[] value(Object v) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (v instanceof String s) {
+            writeBytes(out, 1, s.getBytes(StandardCharsets.UTF_8));
+        } else if (v instanceof Integer || v instanceof Long) {
+            writeTag(out, 6, VARINT); // sint_value
+            writeVarint(out, zigzag64(((Number) v).longValue()));
+        } else if (v instanceof Number n) {
+            writeTag(out, 3, FIXED64); // double_value
+            long bits = Double.doubleToLongBits(n.doubleValue());
+            for (int i = 0; i < 8; i++) out.write((int) (bits >>> (8 * i)) & 0xff);
+        } else {
+            writeBytes(out, 1, v.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    private static int zigzag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static long zigzag64(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static void writeTag(ByteArrayOutputStream out, int field, int wireType) {
+        writeVarint(out, ((long) field << 3) | wireType);
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, int field, byte[] bytes) {
+        writeTag(out, field, LENGTH_DELIMITED);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.CountyShape;
+import com.example.resilience.model.GeometryDetail;
+import com.example.resilience.service.CountyGeometryService.GeometrySet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cuts the cached county geometry into Mapbox Vector Tiles with resilience attributes.
+ *
+ * Tiles are clipped (with a small buffer) and quantized to a 4096 grid; the geometry tier is
+ * chosen from the zoom level. Generated tiles sit in a bounded LRU and are regenerated when
+ * either the county data version or the geometry set has changed since they were built.
+ */
+@Service
+public class VectorTileService {
+
+    public static final String LAYER = "counties";
+    private static final int EXTENT = 4096;
+    private static final int BUFFER = 64;
+    private static final int MAX_ZOOM = 22;
+    private static final double MAX_LAT = 85.05112878;
+
+    private record CachedTile(long dataVersion, GeometrySet geometry, byte[] bytes) {
+    }
+
+    private final CountyGeometryService geometryService;
+    private final ResilienceService resilienceService;
+    private final Map<String, CachedTile> cache;
+
+    public VectorTileService(CountyGeometryService geometryService,
+                             ResilienceService resilienceService,
+                             @Value("${tiles.cache-size:1024}") int cacheSize) {
+        this.geometryService = geometryService;
+        this.resilienceService = resilienceService;
+        this.cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTile> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /** Encoded tile for z/x/y (possibly with zero features). */
+    public byte[] tile(int z, int x, int y) {
+        if (z < 0 || z > MAX_ZOOM) throw new IllegalArgumentException("zoom must be 0.." + MAX_ZOOM);
+        int n = 1 << z;
+        if (x < 0 || x >= n || y < 0 || y >= n) throw new IllegalArgumentException("tile out of range for zoom " + z);
+
+        String key = z + "/" + x + "/" + y;
+        GeometrySet geometry = geometryService.current();
+        Dataset dataset = resilienceService.dataset();
+        long version = dataset.generation();
+        synchronized (cache) {
+            CachedTile hit = cache.get(key);
+            if (hit != null && hit.dataVersion() == version && hit.geometry() == geometry) return hit.bytes();
+        }
+        byte[] bytes = render(z, x, y, geometry, dataset);
+        synchronized (cache) {
+            cache.put(key, new CachedTile(version, geometry, bytes));
+        }
+        return bytes;
+    }
+
+    private byte[] render(int z, int x, int y, GeometrySet geometry, Dataset dataset) {
+        GeometryDetail detail = z <= 5 ? GeometryDetail.LOW : z <= 8 ? GeometryDetail.MEDIUM : GeometryDetail.FULL;
+        List<CountyShape> shapes = geometry.shapes();
+        List<double[][][]> polygons = geometry.polygons(detail);
+
+        // Tile bounds in degrees, grown by the buffer so clipped edges don't show seams
+        double n = 1 << z;
+        double pad = (double) BUFFER / EXTENT;
+        double west = tileLon(x - pad, n), east = tileLon(x + 1 + pad, n);
+        double north = tileLat(y - pad, n), south = tileLat(y + 1 + pad, n);
+
+        CountyJoin join = new CountyJoin(dataset);
+
+        VectorTileEncoder encoder = new VectorTileEncoder(LAYER, EXTENT);
+        for (int i = 0; i < shapes.size(); i++) {
+            CountyShape shape = shapes.get(i);
+            if (shape.maxLon() < west || shape.minLon() > east || shape.maxLat() < south || shape.minLat() > north) {
+                continue;
+            }
+            List<int[]> rings = project(polygons.get(i), z, x, y);
+            if (rings.isEmpty()) continue;
+            encoder.addPolygon(shape.fips() > 0 ? shape.fips() : i + 1, rings,
+                    attributes(shape, join.rowFor(shape)));
+        }
+        return encoder.encode();
+    }
+
+    private Map<String, Object> attributes(CountyShape shape, CountyRow c) {
+        Map<String, Object> attrs = new LinkedHashMap<>();
+        attrs.put("name", shape.name());
+        if (shape.fips() > 0) attrs.put("fips", shape.fips());
+        if (c != null) {
+            attrs.put("resilienceScore", resilienceService.scoreRow(c));
+            attrs.put("population", c.getPopulation());
+            attrs.put("medianIncome", c.getMedianIncome());
+            attrs.put("unemploymentRate", c.getUnemploymentRate());
+            attrs.put("costOfLivingIndex", c.getCostOfLivingIndex());
+            attrs.put("disasterRisk", c.getDisasterRisk());
+        }
+        return attrs;
+    }
+
+    /** Projects, clips and quantizes all rings of a shape into tile space, fixing winding order. */
+    private static List<int[]> project(double[][][] polygons, int z, int x, int y) {
+        double scale = (1 << z);
+        List<int[]> out = new ArrayList<>();
+        for (double[][] polygon : polygons) {
+            for (int r = 0; r < polygon.length; r++) {
+                double[] ring = polygon[r];
+                double[] px = new double[ring.length];
+                for (int i = 0; i < ring.length; i += 2) {
+                    px[i] = (mercatorX(ring[i]) * scale - x) * EXTENT;
+                    px[i + 1] = (mercatorY(ring[i + 1]) * scale - y) * EXTENT;
+                }
+                int[] q = quantize(clip(px));
+                if (q == null) {
+                    if (r == 0) break; // exterior clipped away: its holes go with it
+                    continue;
+                }
+                long area = signedArea(q);
+                if (area == 0) {
+                    if (r == 0) break;
+                    continue;
+                }
+                // Exterior rings must have positive area in y-down tile space, holes negative
+                if ((r == 0) != (area > 0)) reverse(q);
+                out.add(q);
+            }
+        }
+        return out;
+    }
+
+    /** Sutherland-Hodgman clip of a closed ring against the buffered tile square. */
+    private static double[] clip(double[] ring) {
+        double lo = -BUFFER, hi = EXTENT + BUFFER;
+        double[] pts = ring;
+        for (int edge = 0; edge < 4 && pts.length >= 6; edge++) {
+            int axis = edge & 1;            // 0 = x, 1 = y
+            boolean keepBelow = edge >= 2;  // edges 0,1 keep >= lo; edges 2,3 keep <= hi
+            double bound = keepBelow ? hi : lo;
+            double[] next = new double[pts.length * 2 + 4];
+            int n = 0;
+            int count = pts.length / 2;
+            for (int i = 0; i < count; i++) {
+                int j = (i + 1) % count;
+                double ax = pts[2 * i], ay = pts[2 * i + 1], bx = pts[2 * j], by = pts[2 * j + 1];
+                double av = axis == 0 ? ax : ay, bv = axis == 0 ? bx : by;
+                boolean aIn = keepBelow ? av <= bound : av >= bound;
+                boolean bIn = keepBelow ? bv <= bound : bv >= bound;
+                if (aIn) {
+                    next[n++] = ax;
+                    next[n++] = ay;
+                }
+                if (aIn != bIn) {
+                    double t = (bound - av) / (bv - av);
+                    next[n++] = ax + t * (bx - ax);
+                    next[n++] = ay + t * (by - ay);
+                }
+            }
+            pts = Arrays.copyOf(next, n);
+        }
+        return pts;
+    }
+
+    /** Rounds to the integer grid and drops repeats; null if fewer than 3 distinct points remain. */
+    private static int[] quantize(double[] pts) {
+        int[] q = new int[pts.length];
+        int n = 0;
+        for (int i = 0; i < pts.length; i += 2) {
+            int qx = (int) Math.round(pts[i]), qy = (int) Math.round(pts[i + 1]);
+            if (n >= 2 && q[n - 2] == qx && q[n - 1] == qy) continue;
+            q[n++] = qx;
+            q[n++] = qy;
+        }
+        // Source rings are closed; MVT rings are closed implicitly by ClosePath
+        while (n >= 4 && q[0] == q[n - 2] && q[1] == q[n - 1]) n -= 2;
+        return n >= 6 ? Arrays.copyOf(q, n) : null;
+    }
+
+    private static long signedArea(int[] q) {
+        long sum = 0;
+        int count = q.length / 2;
+        for (int i = 0; i < count; i++) {
+            int j = (i + 1) % count;
+            sum += (long) q[2 * i] * q[2 * j + 1] - (long) q[2 * j] * q[2 * i + 1];
+        }
+        return sum;
+    }
+
+    private static void reverse(int[] q) {
+        for (int i = 0, j = q.length - 2; i < j; i += 2, j -= 2) {
+            int tx = q[i], ty = q[i + 1];
+            q[i] = q[j];
+            q[i + 1] = q[j + 1];
+            q[j] = tx;
+            q[j + 1] = ty;
+        }
+    }
+
+    private static double mercatorX(double lon) {
+        return (lon + 180.0) / 360.0;
+    }
+
+    private static double mercatorY(double lat) {
+        double phi = Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, lat)));
+        return (1 - Math.log(Math.tan(phi) + 1 / Math.cos(phi)) / Math.PI) / 2;
+    }
+
+    private static double tileLon(double x, double n) {
+        return x / n * 360.0 - 180.0;
+    }
+
+    private static double tileLat(double y, double n) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / n))));
+    }
+}
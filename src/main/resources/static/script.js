@@ -22,35 +22,73 @@ async function fetchScore(id) {
   return res.json();
 }
 
-function calculateScore(county) {
+// Only the newest scoring request may update the page: each one aborts its predecessor, and a
+// reply that arrives after a newer request started is dropped
+let scoreSeq = 0;
+let scoreController = null;
+
+// Score every county server-side with the given weights in one round trip
+async function fetchScores(w, signal) {
+  const res = await fetch('/api/scores', {
+    method: 'POST',
+    headers: { 'Content-Type': 'application/json' },
+    body: JSON.stringify(w),
+    signal
+  });
+  if (!res.ok) throw new Error('Scoring failed: ' + res.status);
+  return res.json();
+}
+
+// Returns false when a newer request superseded this one
+async function applyServerScores() {
+  const seq = ++scoreSeq;
+  if (scoreController) scoreController.abort();
+  const controller = new AbortController();
+  scoreController = controller;
+  const requested = { ...weights };
+  let byId = null;
+  try {
+    const { ids, scores } = await fetchScores(requested, controller.signal);
+    byId = new Map();
+    ids.forEach((id, i) => byId.set(id, scores[i]));
+  } catch (err) {
+    if (err.name === 'AbortError') return false;
+    console.warn('Falling back to client-side scoring:', err);
+  }
+  if (seq !== scoreSeq) return false;
+  countiesData.forEach(c => {
+    c.score = byId && byId.has(c.id) ? byId.get(c.id) : calculateScore(c, requested);
+  });
+  return true;
+}
+
+function calculateScore(county, w = weights) {
   // Use custom weights for client-side calculation
   const income = county.medianIncome || 0;
   const employment = 1 - (county.unemploymentRate || 0);
   const cost = 1 - (county.costOfLivingIndex || 0);
   const disaster = 1 - (county.disasterRisk || 0);
   
-  let score = (income * weights.income) + 
-              (employment * weights.unemployment) + 
-              (cost * weights.cost) + 
-              (disaster * weights.disaster);
+  let score = (income * w.income) + 
+              (employment * w.unemployment) + 
+              (cost * w.cost) + 
+              (disaster * w.disaster);
   
-  // Population penalty
+  // Population penalty, subtracted like the server's ScoreWeights.penaltyFor (default thresholds)
   if (county.population < 2000) {
-    score *= 0.92;
+    score -= 0.08;
   } else if (county.population < 10000) {
-    score *= 0.95;
+    score -= 0.05;
   }
   
   return Math.max(0, Math.min(1, score));
 }
 
-function updateVisualizations() {
+async function updateVisualizations() {
   if (!countiesData || countiesData.length === 0) return;
   
-  // Recalculate scores with current weights
-  countiesData.forEach(c => {
-    c.score = calculateScore(c);
-  });
+  // Recalculate scores with current weights; a newer update renders instead of this one
+  if (!(await applyServerScores())) return;
   
   const sorted = [...countiesData].sort((a, b) => b.score - a.score);
   
@@ -75,16 +113,14 @@ function initializeMap() {
     attribution: '© OpenStreetMap contributors'
   }).addTo(mapInstance);
   
-  // Fetch NCDOT GeoJSON
-  fetch('https://gis11.services.ncdot.gov/arcgis/rest/services/NCDOT_CountyBdy_Poly/MapServer/0/query?outFields=*&where=1%3D1&f=geojson')
-    .then(res => res.json())
+  // County outlines served with the data, so features carry the same FIPS ids as the counties
+  fetch('/api/resilience-geojson?detail=medium')
+    .then(res => {
+      if (!res.ok) throw new Error('Geometry request failed: ' + res.status);
+      return res.json();
+    })
     .then(geojson => {
-      // Create county lookup
-      const countyLookup = {};
-      countiesData.forEach(c => {
-        const key = c.name.replace(' County', '').trim().toUpperCase();
-        countyLookup[key] = c;
-      });
+      const countyLookup = buildCountyLookup();
       
       // Add GeoJSON layer
       geoJsonLayer = L.geoJSON(geojson, {
@@ -94,8 +130,7 @@ function initializeMap() {
         onEachFeature: function(feature, layer) {
           const props = feature.properties;
           const countyName = props.CountyName || props.NAME || props.name || 'Unknown';
-          const countyKey = countyName.replace(' County', '').trim().toUpperCase();
-          const county = countyLookup[countyKey];
+          const county = countyForFeature(feature, countyLookup);
           
           if (county) {
             layer.bindPopup(`
@@ -117,11 +152,21 @@ function initializeMap() {
     });
 }
 
+// Counties by id (5-digit FIPS code); names repeat across states, so they are never the key
+function buildCountyLookup() {
+  const lookup = new Map();
+  countiesData.forEach(c => lookup.set(Number(c.id), c));
+  return lookup;
+}
+
+// The server sets countyId on features it joined to a county, and the FIPS code as the feature id
+function countyForFeature(feature, countyLookup) {
+  const id = feature.properties.countyId ?? feature.id;
+  return id == null ? undefined : countyLookup.get(Number(id));
+}
+
 function getFeatureStyle(feature, countyLookup) {
-  const props = feature.properties;
-  const countyName = props.CountyName || props.NAME || props.name || '';
-  const countyKey = countyName.replace(' County', '').trim().toUpperCase();
-  const county = countyLookup[countyKey];
+  const county = countyForFeature(feature, countyLookup);
   const score = county ? county.score : 0;
   
   let fillColor;
@@ -141,12 +186,7 @@ function getFeatureStyle(feature, countyLookup) {
 function updateMapColors() {
   if (!geoJsonLayer) return;
   
-  // Create county lookup
-  const countyLookup = {};
-  countiesData.forEach(c => {
-    const key = c.name.replace(' County', '').trim().toUpperCase();
-    countyLookup[key] = c;
-  });
+  const countyLookup = buildCountyLookup();
   
   // Update each layer's style
   geoJsonLayer.eachLayer(function(layer) {
@@ -157,8 +197,7 @@ function updateMapColors() {
       // Update popup
       const props = layer.feature.properties;
       const countyName = props.CountyName || props.NAME || props.name || 'Unknown';
-      const countyKey = countyName.replace(' County', '').trim().toUpperCase();
-      const county = countyLookup[countyKey];
+      const county = countyForFeature(layer.feature, countyLookup);
       
       if (county) {
         layer.bindPopup(`
@@ -257,6 +296,7 @@ function setupSliders() {
   
   const totalDisplay = document.getElementById('total-value');
   const totalContainer = document.getElementById('total-weight');
+  let pendingUpdate = null;
   
   function updateWeights() {
     weights.income = parseInt(sliders.income.value) / 100;
@@ -284,9 +324,10 @@ function setupSliders() {
       totalContainer.classList.remove('valid');
     }
     
-    // Update visualizations immediately
+    // Re-score once the slider pauses rather than on every tick
     if (countiesData && countiesData.length > 0) {
-      updateVisualizations();
+      clearTimeout(pendingUpdate);
+      pendingUpdate = setTimeout(updateVisualizations, 150);
     }
   }
   
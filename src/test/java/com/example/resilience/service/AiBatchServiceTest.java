@@ -0,0 +1,163 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.County;
+import com.example.resilience.model.ScoreWeights;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiBatchServiceTest {
+
+    private static final ScoreWeights W = ScoreWeights.DEFAULT;
+
+    /** Answers each prompt with the scripted reply for its question, counting calls per question. */
+    private static final class ScriptedAiService extends BedrockAiService {
+        final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+        private final Function<String, CompletableFuture<String>> script;
+
+        ScriptedAiService(Function<String, CompletableFuture<String>> script) {
+            super(null, null, null, "test-model", 300, 0.2, 120_000);
+            this.script = script;
+        }
+
+        @Override
+        public CompletableFuture<String> generateAsync(String prompt) {
+            String question = prompt.substring(prompt.indexOf("User question: ") + 15, prompt.indexOf("\n\nProvide"));
+            calls.computeIfAbsent(question, q -> new AtomicInteger()).incrementAndGet();
+            return script.apply(question);
+        }
+
+        int calls(String question) {
+            AtomicInteger n = calls.get(question);
+            return n == null ? 0 : n.get();
+        }
+    }
+
+    /** Fixed context and briefs, so the batch does not need geometry or a full dataset. */
+    private static final class FixedContextService extends PromptContextService {
+        FixedContextService(ResilienceService resilience) {
+            super(resilience, null, 64, 1500, 8192, 300);
+        }
+
+        @Override
+        public String context(ScoreWeights weights) {
+            return "CONTEXT";
+        }
+
+        @Override
+        public String countyBrief(Dataset dataset, ScoreWeights weights, long countyId) {
+            return dataset.findRow(countyId) == null ? null : "BRIEF " + countyId;
+        }
+    }
+
+    private ResilienceService resilience;
+
+    @BeforeEach
+    void loadData() {
+        resilience = new ResilienceService();
+        resilience.replaceAll(List.of(new County(37183L, "Wake", 1_100_000, 0.9, 0.03, 0.6, 0.1)), "test");
+    }
+
+    private AiBatchService batch(ScriptedAiService ai, int parallelism) {
+        return new AiBatchService(ai, new FixedContextService(resilience), resilience, parallelism, 3, 1, 5);
+    }
+
+    private static CompletableFuture<String> failed(int status) {
+        return CompletableFuture.failedFuture(new AiUnavailableException(status, "status " + status, 0));
+    }
+
+    private static Map<String, Object> byIndex(List<Map<String, Object>> results, int index) {
+        return results.stream().filter(r -> r.get("index").equals(index)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void retriesOnlyRetryableFailures() throws Exception {
+        AtomicInteger flaky = new AtomicInteger();
+        ScriptedAiService ai = new ScriptedAiService(question -> switch (question) {
+            case "flaky" -> flaky.incrementAndGet() < 3 ? failed(429) : CompletableFuture.completedFuture("finally");
+            case "invalid" -> failed(400);
+            case "down" -> failed(503);
+            case "broken" -> CompletableFuture.failedFuture(new IllegalStateException("boom"));
+            case "stale" -> CompletableFuture.failedFuture(new AiUnavailableException(503, "Circuit open", 0, "old answer", null));
+            default -> CompletableFuture.completedFuture("answer to " + question);
+        });
+        List<AiBatchService.Item> items = List.of(
+                new AiBatchService.Item(null, "flaky"),
+                new AiBatchService.Item(null, "invalid"),
+                new AiBatchService.Item(null, "down"),
+                new AiBatchService.Item(null, "broken"),
+                new AiBatchService.Item(null, "stale"),
+                new AiBatchService.Item(37183L, null),
+                new AiBatchService.Item(99999L, null));
+        List<Map<String, Object>> results = Collections.synchronizedList(new ArrayList<>());
+
+        Map<String, Object> summary = batch(ai, 4).run(W, items, results::add).get(10, TimeUnit.SECONDS);
+
+        assertEquals(7, results.size());
+        assertEquals(2, summary.get("succeeded"));
+        assertEquals(5, summary.get("failed"));
+        assertEquals(false, summary.get("cancelled"));
+
+        Map<String, Object> recovered = byIndex(results, 0);
+        assertEquals("finally", recovered.get("reply"));
+        assertEquals(3, recovered.get("attempts"));
+        assertEquals(3, ai.calls("flaky"));
+
+        assertEquals(400, byIndex(results, 1).get("status"));
+        assertEquals(1, byIndex(results, 1).get("attempts"), "client errors are not retried");
+        assertEquals(1, ai.calls("invalid"));
+
+        assertEquals(503, byIndex(results, 2).get("status"));
+        assertEquals(3, byIndex(results, 2).get("attempts"), "retried up to max-attempts");
+        assertEquals(3, ai.calls("down"));
+
+        assertEquals(502, byIndex(results, 3).get("status"));
+        assertEquals("Error calling Bedrock: boom", byIndex(results, 3).get("error"));
+        assertEquals(1, ai.calls("broken"), "unexpected errors are not retried");
+
+        Map<String, Object> stale = byIndex(results, 4);
+        assertEquals("old answer", stale.get("reply"));
+        assertEquals("stale-cache", stale.get("source"));
+
+        Map<String, Object> wake = byIndex(results, 5);
+        assertEquals("Wake", wake.get("county"));
+        assertTrue(((String) wake.get("reply")).startsWith("answer to Write a short narrative"));
+        assertNull(wake.get("error"));
+
+        Map<String, Object> missing = byIndex(results, 6);
+        assertEquals(404, missing.get("status"));
+        assertEquals("County not found", missing.get("error"));
+    }
+
+    @Test
+    void stopsStartingItemsWhenOnResultReturnsFalse() throws Exception {
+        ScriptedAiService ai = new ScriptedAiService(question -> CompletableFuture.completedFuture("ok"));
+        List<AiBatchService.Item> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) items.add(new AiBatchService.Item(null, "question " + i));
+        AtomicInteger delivered = new AtomicInteger();
+
+        Map<String, Object> summary = batch(ai, 1).run(W, items, r -> delivered.incrementAndGet() < 3)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(true, summary.get("cancelled"));
+        assertEquals(3, summary.get("started"));
+        assertEquals(3, delivered.get());
+        assertEquals(3, ai.calls.values().stream().mapToInt(AtomicInteger::get).sum());
+        assertEquals(20, summary.get("items"));
+        assertFalse(summary.containsKey("error"));
+    }
+}
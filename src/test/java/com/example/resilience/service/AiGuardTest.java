@@ -0,0 +1,200 @@
+package com.example.resilience.service;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiGuardTest {
+
+    /** min 1, the given initial/max limit and queue, 2 s slot wait, breaker over the last 4 calls at 50%. */
+    private static AiGuard guard(int initialLimit, int maxLimit, int maxQueue, long queueTimeoutMs, long openMs) {
+        return new AiGuard(1, initialLimit, maxLimit, maxQueue, queueTimeoutMs, 60_000, 0.5, 4, 4, openMs);
+    }
+
+    private static AiUnavailableException failure(CompletableFuture<?> f) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(5, TimeUnit.SECONDS));
+        return assertInstanceOf(AiUnavailableException.class, e.getCause());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static double limit(AiGuard guard) {
+        return ((Number) guard.stats().get("limit")).doubleValue();
+    }
+
+    private static SdkServiceException throttling() {
+        return SdkServiceException.builder().statusCode(429).message("Too many requests").build();
+    }
+
+    @Test
+    void rejectsWhenTheQueueIsFull() throws Exception {
+        AiGuard guard = guard(1, 1, 1, 5000, 30_000);
+        try {
+            CompletableFuture<String> running = new CompletableFuture<>();
+            CompletableFuture<String> first = guard.execute(() -> running);
+            await(() -> guard.stats().get("inFlight").equals(1));
+            CompletableFuture<String> waiting = guard.execute(() -> CompletableFuture.completedFuture("second"));
+            await(() -> guard.stats().get("queued").equals(1));
+
+            AtomicInteger calls = new AtomicInteger();
+            AiUnavailableException e = failure(guard.execute(() -> {
+                calls.incrementAndGet();
+                return CompletableFuture.completedFuture("third");
+            }));
+            assertEquals(503, e.status());
+            assertEquals("AI request queue is full", e.getMessage());
+            assertTrue(e.retryable());
+            assertEquals(0, calls.get());
+
+            running.complete("first");
+            assertEquals("first", first.get(5, TimeUnit.SECONDS));
+            assertEquals("second", waiting.get(5, TimeUnit.SECONDS));
+            assertEquals(1L, guard.stats().get("rejected"));
+        } finally {
+            guard.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsAfterWaitingTooLongForASlot() throws Exception {
+        AiGuard guard = guard(1, 1, 4, 100, 30_000);
+        try {
+            CompletableFuture<String> running = new CompletableFuture<>();
+            guard.execute(() -> running);
+            await(() -> guard.stats().get("inFlight").equals(1));
+
+            long start = System.currentTimeMillis();
+            AiUnavailableException e = failure(guard.execute(() -> CompletableFuture.completedFuture("late")));
+            assertEquals(503, e.status());
+            assertEquals("Timed out waiting for an AI slot", e.getMessage());
+            assertTrue(System.currentTimeMillis() - start >= 100);
+            assertEquals(0, guard.stats().get("queued"));
+            running.complete("done");
+        } finally {
+            guard.shutdown();
+        }
+    }
+
+    @Test
+    void limitHalvesOnThrottlingAndTimeoutsAndGrowsOnSuccess() throws Exception {
+        // Wide breaker window so the failures below only move the limit
+        AiGuard guard = new AiGuard(1, 8, 16, 64, 2000, 60_000, 0.5, 20, 10, 30_000);
+        try {
+            AiUnavailableException e = failure(guard.execute(() -> CompletableFuture.failedFuture(throttling())));
+            assertEquals(429, e.status());
+            assertTrue(e.retryable());
+            assertEquals(4.0, limit(guard), 0);
+
+            failure(guard.execute(() -> CompletableFuture.failedFuture(throttling())));
+            assertEquals(2.0, limit(guard), 0);
+
+            e = failure(guard.execute(CompletableFuture::new, 50));
+            assertEquals(504, e.status());
+            assertEquals(1.0, limit(guard), 0);
+
+            failure(guard.execute(() -> CompletableFuture.failedFuture(throttling())));
+            assertEquals(1.0, limit(guard), 0, "never below the minimum");
+
+            // At the limit, each success adds 1/limit
+            guard.execute(() -> CompletableFuture.completedFuture("ok")).get(5, TimeUnit.SECONDS);
+            assertEquals(2.0, limit(guard), 0);
+            assertEquals(3L, guard.stats().get("throttled"));
+            assertEquals(1L, guard.stats().get("timeouts"));
+        } finally {
+            guard.shutdown();
+        }
+    }
+
+    @Test
+    void clientErrorsKeepTheirStatusAndDoNotCountAsFailures() throws Exception {
+        AiGuard guard = guard(4, 16, 64, 2000, 30_000);
+        try {
+            SdkServiceException invalid = SdkServiceException.builder().statusCode(400).message("bad model").build();
+            for (int i = 0; i < 4; i++) {
+                AiUnavailableException e = failure(guard.execute(() -> CompletableFuture.failedFuture(invalid)));
+                assertEquals(400, e.status());
+                assertFalse(e.retryable());
+            }
+            assertEquals("CLOSED", guard.stats().get("state"));
+            assertEquals(4.0, limit(guard), 0);
+        } finally {
+            guard.shutdown();
+        }
+    }
+
+    @Test
+    void breakerOpensGoesHalfOpenAndCloses() throws Exception {
+        AiGuard guard = guard(4, 16, 64, 2000, 200);
+        try {
+            guard.execute(() -> CompletableFuture.completedFuture("ok")).get(5, TimeUnit.SECONDS);
+            guard.execute(() -> CompletableFuture.completedFuture("ok")).get(5, TimeUnit.SECONDS);
+            failure(guard.execute(() -> CompletableFuture.failedFuture(new IllegalStateException("boom"))));
+            assertEquals("CLOSED", guard.stats().get("state"), "fewer than min-calls recorded");
+            AiUnavailableException e = failure(guard.execute(() -> CompletableFuture.failedFuture(new IllegalStateException("boom"))));
+            assertEquals(502, e.status());
+            assertEquals("OPEN", guard.stats().get("state"));
+            assertTrue(guard.isOpen());
+
+            AtomicInteger calls = new AtomicInteger();
+            e = failure(guard.execute(() -> {
+                calls.incrementAndGet();
+                return CompletableFuture.completedFuture("skipped");
+            }));
+            assertEquals(503, e.status());
+            assertFalse(e.retryable());
+            assertTrue(e.retryAfterSeconds() >= 1);
+            assertEquals(0, calls.get());
+
+            Thread.sleep(250);
+            assertFalse(guard.isOpen());
+            CompletableFuture<String> probeReply = new CompletableFuture<>();
+            CompletableFuture<String> probe = guard.execute(() -> probeReply);
+            assertEquals("HALF_OPEN", guard.stats().get("state"));
+            assertEquals(503, failure(guard.execute(() -> CompletableFuture.completedFuture("second"))).status(),
+                    "only one probe at a time");
+
+            probeReply.complete("ok");
+            assertEquals("ok", probe.get(5, TimeUnit.SECONDS));
+            assertEquals("CLOSED", guard.stats().get("state"));
+            assertEquals("again", guard.execute(() -> CompletableFuture.completedFuture("again")).get(5, TimeUnit.SECONDS));
+            assertEquals(2L, guard.stats().get("shortCircuited"));
+        } finally {
+            guard.shutdown();
+        }
+    }
+
+    @Test
+    void failedProbeReopensTheBreaker() throws Exception {
+        AiGuard guard = guard(4, 16, 64, 2000, 100);
+        try {
+            for (int i = 0; i < 4; i++) {
+                failure(guard.execute(() -> CompletableFuture.failedFuture(new IllegalStateException("boom"))));
+            }
+            assertTrue(guard.isOpen());
+            Thread.sleep(150);
+
+            failure(guard.execute(() -> CompletableFuture.failedFuture(new IllegalStateException("still down"))));
+            assertEquals("OPEN", guard.stats().get("state"));
+            assertTrue(guard.isOpen());
+        } finally {
+            guard.shutdown();
+        }
+    }
+}
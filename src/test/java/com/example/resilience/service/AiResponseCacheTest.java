@@ -0,0 +1,99 @@
+package com.example.resilience.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiResponseCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keyDependsOnEveryInput() {
+        AiResponseCache cache = new AiResponseCache(true, 60, 10, false, "");
+        String key = cache.key("model", 0.2, 300, "Which county is most resilient?");
+        assertEquals(key, cache.key("model", 0.2, 300, "Which county is most resilient?"));
+        assertNotEquals(key, cache.key("other", 0.2, 300, "Which county is most resilient?"));
+        assertNotEquals(key, cache.key("model", 0.3, 300, "Which county is most resilient?"));
+        assertNotEquals(key, cache.key("model", 0.2, 200, "Which county is most resilient?"));
+        assertNotEquals(key, cache.key("model", 0.2, 300, "which county is the most resilient"));
+
+        AiResponseCache normalizing = new AiResponseCache(true, 60, 10, true, "");
+        assertEquals(normalizing.key("model", 0.2, 300, "Which county is most resilient?"),
+                normalizing.key("model", 0.2, 300, "which county is the most resilient"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        AiResponseCache cache = new AiResponseCache(true, 60, 3, false, "");
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        assertEquals("A", cache.get("a"));
+        cache.put("d", "D");
+
+        assertNull(cache.get("b"), "b was the least recently used");
+        assertEquals("A", cache.get("a"));
+        assertEquals("C", cache.get("c"));
+        assertEquals("D", cache.get("d"));
+        assertEquals(1L, cache.stats().get("evictions"));
+        assertEquals(3, cache.stats().get("size"));
+    }
+
+    @Test
+    void expiredEntriesMissButStayAvailableAsStale() throws Exception {
+        Path file = dir.resolve("cache.jsonl");
+        long now = System.currentTimeMillis();
+        // TTL is one minute; one entry is about to expire and one already has
+        Files.write(file, List.of(
+                "{\"key\":\"soon\",\"reply\":\"about to expire\",\"storedAt\":" + (now - 59_000) + "}",
+                "{\"key\":\"old\",\"reply\":\"expired\",\"storedAt\":" + (now - 120_000) + "}"), StandardCharsets.UTF_8);
+        AiResponseCache cache = new AiResponseCache(true, 1, 10, false, file.toString());
+        cache.load();
+
+        assertNull(cache.getStale("old"), "expired rows are not reloaded");
+        assertEquals(1, cache.stats().get("size"));
+        Thread.sleep(1100);
+        assertNull(cache.get("soon"));
+        assertEquals("about to expire", cache.getStale("soon"));
+        assertEquals(1L, cache.stats().get("expirations"));
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void flushAndReloadRoundTrip() throws Exception {
+        Path file = dir.resolve("nested").resolve("cache.jsonl");
+        AiResponseCache cache = new AiResponseCache(true, 60, 10, false, file.toString());
+        String key = cache.key("model", 0.2, 300, "Which county is most resilient?");
+        cache.put(key, "Wake County, with \"quotes\"\nand a second line");
+        cache.put("other", "Durham");
+        cache.flush();
+
+        assertTrue(Files.isRegularFile(file));
+        assertEquals(2, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+        assertTrue(Files.notExists(file.resolveSibling("cache.jsonl.tmp")));
+
+        AiResponseCache reloaded = new AiResponseCache(true, 60, 10, false, file.toString());
+        reloaded.load();
+        assertEquals("Wake County, with \"quotes\"\nand a second line", reloaded.get(key));
+        assertEquals("Durham", reloaded.get("other"));
+    }
+
+    @Test
+    void disabledCacheStoresNothing() {
+        AiResponseCache cache = new AiResponseCache(false, 60, 10, false, "");
+        cache.put("a", "A");
+        assertNull(cache.get("a"));
+        assertNull(cache.getStale("a"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.resilience.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.regions.Region;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BedrockAiServiceTest {
+
+    private static final String MODEL = "anthropic.claude-3-haiku-20240307-v1:0";
+
+    private final AiGuard guard = new AiGuard(1, 4, 16, 64, 2000, 60_000, 0.5, 20, 10, 30_000);
+
+    @AfterEach
+    void shutdown() {
+        guard.shutdown();
+    }
+
+    private BedrockAiService service(StubBedrockRuntimeAsyncClient client, AiResponseCache cache) {
+        return new BedrockAiService(client, cache, guard, MODEL, 300, 0.2, 120_000);
+    }
+
+    @Test
+    void identicalConcurrentPromptsShareOneCall() throws Exception {
+        StubBedrockRuntimeAsyncClient client = new StubBedrockRuntimeAsyncClient(200, Region.US_EAST_1);
+        BedrockAiService service = service(client, new AiResponseCache(true, 60, 100, false, ""));
+        String prompt = "Context\nUser question: Which county is most resilient?";
+
+        List<CompletableFuture<String>> replies = new ArrayList<>();
+        for (int i = 0; i < 8; i++) replies.add(service.generateAsync(prompt));
+        for (CompletableFuture<String> reply : replies) {
+            assertEquals("[stub " + MODEL + "] You asked: Which county is most resilient?", reply.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, client.invocations());
+        assertEquals(7L, service.cacheStats().get("coalesced"));
+        assertEquals(0, service.cacheStats().get("inFlight"));
+
+        // Finished calls are answered from the cache, other prompts go upstream
+        service.generateAsync(prompt).get(5, TimeUnit.SECONDS);
+        assertEquals(1, client.invocations());
+        service.generateAsync("User question: And the least?").get(5, TimeUnit.SECONDS);
+        assertEquals(2, client.invocations());
+    }
+
+    @Test
+    void cancellingOneCallerLeavesTheSharedCallRunning() throws Exception {
+        StubBedrockRuntimeAsyncClient client = new StubBedrockRuntimeAsyncClient(200, Region.US_EAST_1);
+        BedrockAiService service = service(client, new AiResponseCache(false, 60, 100, false, ""));
+        String prompt = "User question: Which county is most resilient?";
+
+        CompletableFuture<String> first = service.generateAsync(prompt);
+        CompletableFuture<String> second = service.generateAsync(prompt);
+        first.cancel(true);
+        assertTrue(second.get(5, TimeUnit.SECONDS).endsWith("You asked: Which county is most resilient?"));
+        assertEquals(1, client.invocations());
+
+        // Without a cache every later call goes upstream again
+        service.generateAsync(prompt).get(5, TimeUnit.SECONDS);
+        assertEquals(2, client.invocations());
+    }
+}
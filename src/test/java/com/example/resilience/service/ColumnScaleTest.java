@@ -0,0 +1,125 @@
+package com.example.resilience.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnScaleTest {
+
+    private static ColumnScale scaleOf(double[] raw) {
+        ColumnScale scale = new ColumnScale();
+        for (double v : raw) scale.replace(Double.NaN, v);
+        scale.apply(raw, raw.length);
+        return scale;
+    }
+
+    /** Sets raw[row] to v the way CountyStore does and returns whether the applied scale moved. */
+    private static boolean set(ColumnScale scale, double[] raw, int row, double v) {
+        scale.replace(raw[row], v);
+        raw[row] = v;
+        return !scale.isApplied() && scale.apply(raw, raw.length);
+    }
+
+    @Test
+    void removingTheOnlyMaximumRescansToTheNextOne() {
+        double[] raw = {1, 4, 7, 10};
+        ColumnScale scale = scaleOf(raw);
+        assertEquals(9, scale.appliedRange(), 0);
+
+        scale.replace(raw[3], 5);
+        raw[3] = 5;
+        assertFalse(scale.isApplied(), "last row on the max moved away");
+        assertTrue(scale.apply(raw, raw.length));
+        assertEquals(6, scale.appliedRange(), 0);
+        assertEquals(0, scale.normalize(1), 0);
+        assertEquals(1, scale.normalize(7), 0);
+    }
+
+    @Test
+    void removingTheOnlyMinimumRescansToTheNextOne() {
+        double[] raw = {1, 4, 7, 10};
+        ColumnScale scale = scaleOf(raw);
+
+        assertTrue(set(scale, raw, 0, 8));
+        assertEquals(6, scale.appliedRange(), 0);
+        assertEquals(0, scale.normalize(4), 0);
+    }
+
+    @Test
+    void duplicatedExtremeKeepsTheScaleApplied() {
+        double[] raw = {2, 10, 5, 10, 2};
+        ColumnScale scale = scaleOf(raw);
+
+        assertFalse(set(scale, raw, 1, 6), "another row still holds the max");
+        assertTrue(scale.isApplied());
+        assertFalse(set(scale, raw, 0, 3), "another row still holds the min");
+        assertEquals(8, scale.appliedRange(), 0);
+
+        assertTrue(set(scale, raw, 3, 9), "last row on the max left it");
+        assertEquals(7, scale.appliedRange(), 0);
+    }
+
+    @Test
+    void newExtremeIsAppliedWithoutRescan() {
+        double[] raw = {2, 4, 6};
+        ColumnScale scale = scaleOf(raw);
+
+        scale.replace(raw[1], 12);
+        raw[1] = 12;
+        assertFalse(scale.isApplied());
+        assertTrue(scale.apply(raw, raw.length));
+        assertEquals(10, scale.appliedRange(), 0);
+        assertEquals(12, scale.denormalize(1), 0);
+    }
+
+    @Test
+    void nanIsNotOnTheScale() {
+        double[] raw = {Double.NaN, 3, Double.NaN, 8};
+        ColumnScale scale = scaleOf(raw);
+        assertEquals(5, scale.appliedRange(), 0);
+
+        assertTrue(set(scale, raw, 3, Double.NaN));
+        assertEquals(0, scale.appliedRange(), 0);
+        assertEquals(0.5, scale.normalize(3), 0);
+        assertTrue(Double.isNaN(scale.denormalize(0.5)), "no usable scale with one value");
+
+        assertTrue(set(scale, raw, 0, 1));
+        assertEquals(2, scale.appliedRange(), 0);
+    }
+
+    @Test
+    void copyIsIndependent() {
+        double[] raw = {0, 5, 10};
+        ColumnScale scale = scaleOf(raw);
+        ColumnScale copy = scale.copy();
+        double[] copyRaw = raw.clone();
+
+        assertTrue(set(copy, copyRaw, 2, 20));
+        assertEquals(20, copy.appliedRange(), 0);
+        assertEquals(10, scale.appliedRange(), 0);
+        assertTrue(scale.isApplied());
+    }
+
+    @Test
+    void incrementalUpdatesMatchAFreshScan() {
+        Random random = new Random(7);
+        double[] raw = new double[200];
+        for (int i = 0; i < raw.length; i++) raw[i] = random.nextInt(50);
+        ColumnScale scale = scaleOf(raw);
+
+        for (int step = 0; step < 5000; step++) {
+            int row = random.nextInt(raw.length);
+            double v = random.nextInt(20) == 0 ? Double.NaN : random.nextInt(60) - 5;
+            set(scale, raw, row, v);
+            if (!scale.isApplied()) scale.apply(raw, raw.length);
+
+            ColumnScale fresh = scaleOf(raw);
+            assertEquals(fresh.appliedRange(), scale.appliedRange(), 0, "range after step " + step);
+            assertEquals(fresh.normalize(raw[row]), scale.normalize(raw[row]), 0, "normalized value after step " + step);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.resilience.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountyBulkServiceTest {
+
+    private ResilienceService resilience;
+    private CountyBulkService bulk;
+
+    @BeforeEach
+    void createServices() {
+        resilience = new ResilienceService();
+        bulk = new CountyBulkService(resilience, 1000);
+    }
+
+    private static InputStream body(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String county(long id, double income) {
+        return String.format(Locale.ROOT, "{\"id\": %d, \"name\": \"County %d\", \"population\": 50000, "
+                + "\"medianIncome\": %s, \"unemploymentRate\": 0.05, \"costOfLivingIndex\": 0.4, \"disasterRisk\": 0.1}",
+                id, id, income);
+    }
+
+    @Test
+    void ndjsonRejectsBadLinesByLineNumber() throws Exception {
+        String ndjson = String.join("\n",
+                county(37183, 0.8),
+                "",
+                "{\"id\": 37063, \"name\": ",
+                "[37001]",
+                county(37001, 1.5),
+                county(37063, 0.6));
+        CountyBulkService.Result result = bulk.upsert(body(ndjson));
+
+        assertEquals(5, result.received(), "blank lines are not rows");
+        assertEquals(2, result.applied());
+        assertEquals(3, result.rejected());
+        List<CountyBulkService.RowError> errors = result.errors();
+        assertEquals(3, errors.get(0).row());
+        assertTrue(errors.get(0).error().startsWith("Malformed JSON"), errors.get(0).error());
+        assertEquals(4, errors.get(1).row());
+        assertEquals("Expected a county object", errors.get(1).error());
+        assertEquals(5, errors.get(2).row());
+        assertEquals(Long.valueOf(37001), errors.get(2).id());
+        assertTrue(errors.get(2).error().startsWith("medianIncome must be between 0 and 1"));
+        assertFalse(result.errorsTruncated());
+
+        assertEquals(0.8, resilience.findById(37183L).getMedianIncome(), 0);
+        assertEquals(0.6, resilience.findById(37063L).getMedianIncome(), 0);
+        assertNull(resilience.findById(37001L));
+    }
+
+    @Test
+    void arrayRejectsRowsByPosition() throws Exception {
+        String array = "\uFEFF [" + county(37183, 0.8) + ", 5, {\"id\": -1}, {\"id\": 37001, \"bogus\": true}, "
+                + county(37063, 0.6) + "]";
+        CountyBulkService.Result result = bulk.upsert(body(array));
+
+        assertEquals(5, result.received());
+        assertEquals(2, result.applied());
+        List<CountyBulkService.RowError> errors = result.errors();
+        assertEquals(3, errors.size());
+        assertEquals(2, errors.get(0).row());
+        assertEquals("Expected a county object, got VALUE_NUMBER_INT", errors.get(0).error());
+        assertNull(errors.get(0).id());
+        assertEquals(3, errors.get(1).row());
+        assertEquals(Long.valueOf(-1), errors.get(1).id());
+        assertEquals("id is required and must be positive", errors.get(1).error());
+        assertEquals(4, errors.get(2).row());
+        assertEquals(Long.valueOf(37001), errors.get(2).id(), "id read from the tree when binding fails");
+    }
+
+    @Test
+    void malformedArrayAppliesNothing() throws Exception {
+        bulk.upsert(body(county(37183, 0.8)));
+        long generation = resilience.version();
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> bulk.upsert(body("[" + county(37183, 0.2) + ", {\"id\": ]")));
+        assertTrue(e.getMessage().startsWith("Malformed JSON at line 1"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> bulk.upsert(body("[" + county(37183, 0.2) + ",")));
+
+        assertEquals(generation, resilience.version());
+        assertEquals(0.8, resilience.findById(37183L).getMedianIncome(), 0);
+    }
+
+    @Test
+    void rejectsBodiesOverTheRowLimit() throws Exception {
+        CountyBulkService small = new CountyBulkService(resilience, 3);
+        List<String> rows = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) rows.add(county(37000 + 2 * i - 1, 0.5));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> small.upsert(body(String.join("\n", rows))));
+        assertEquals("At most 3 rows per request", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> small.upsert(body("[" + String.join(",", rows) + "]")));
+        assertEquals(0L, resilience.version(), "nothing applied");
+        assertTrue(resilience.getAll().isEmpty());
+
+        // Rejected rows count towards the limit too
+        assertEquals(3, small.upsert(body(String.join("\n", rows.subList(0, 2)) + "\n{}")).received());
+    }
+
+    @Test
+    void eachBatchIsOneGeneration() throws Exception {
+        long before = resilience.version();
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 500; i++) ndjson.append(county(1001 + i, i / 500.0)).append('\n');
+        // Listed twice: the last entry wins
+        ndjson.append(county(1001, 0.9)).append('\n');
+
+        CountyBulkService.Result result = bulk.upsert(body(ndjson.toString()));
+        assertEquals(501, result.applied());
+        assertEquals(before + 1, result.generation());
+        assertEquals(before + 1, resilience.version());
+        assertEquals(500, resilience.getAll().size());
+        assertEquals(0.9, resilience.findById(1001L).getMedianIncome(), 0);
+
+        // A batch with no valid rows publishes nothing
+        CountyBulkService.Result rejected = bulk.upsert(body("{\"id\": 0}\nnot json"));
+        assertEquals(0, rejected.applied());
+        assertEquals(2, rejected.rejected());
+        assertEquals(before + 1, rejected.generation());
+        assertEquals(before + 1, resilience.version());
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.County;
+import com.example.resilience.model.CountyShape;
+import com.example.resilience.model.ScoreWeights;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotspotServiceTest {
+
+    private static final ScoreWeights W = ScoreWeights.DEFAULT;
+    private static final int PERMUTATIONS = 199;
+
+    private static List<CountyShape> shapes;
+    private static SpatialIndex index;
+    // First shape of each FIPS id, the one HotspotService analyzes
+    private static Map<Long, Integer> shapeOf;
+    private static ResilienceService resilience;
+    private static HotspotService serial;
+    private static HotspotService parallel;
+
+    @BeforeAll
+    static void loadGeometry() {
+        CountyGeometryService geometry = new CountyGeometryService("", "target/no-geometry-cache.geojson", "", 0.01, 0.002);
+        geometry.loadLocal();
+        resilience = new ResilienceService();
+        SpatialService spatial = new SpatialService(geometry, resilience);
+        shapes = geometry.shapes();
+        index = spatial.index().index();
+        shapeOf = new HashMap<>();
+        for (int i = 0; i < shapes.size(); i++) {
+            if (shapes.get(i).fips() > 0) shapeOf.putIfAbsent(shapes.get(i).fips(), i);
+        }
+        serial = new HotspotService(spatial, resilience, 1, 9999, 8);
+        parallel = new HotspotService(spatial, resilience, 4, 9999, 8);
+    }
+
+    @AfterAll
+    static void shutdown() {
+        serial.shutdown();
+        parallel.shutdown();
+    }
+
+    /** Replaces the dataset with one county per FIPS id, normalized income (0-1) given by the shape. */
+    private static void load(ToDoubleFunction<CountyShape> income) {
+        List<County> counties = new ArrayList<>();
+        shapeOf.forEach((fips, shape) -> {
+            double v = Math.max(0, Math.min(1, income.applyAsDouble(shapes.get(shape))));
+            counties.add(new County(fips, shapes.get(shape).name(), 50000, v, 5, 0.5, 0.1));
+        });
+        resilience.replaceAll(counties, "test");
+    }
+
+    /** 0 at the southern tip of Hawaii, 1 at the northern tip of Alaska. */
+    private static double latitude(CountyShape s) {
+        return ((s.minLat() + s.maxLat()) / 2 - 18) / 54;
+    }
+
+    private static HotspotService.Result analyzeAll(HotspotService service, String spatialWeights, double miles, long seed) {
+        return service.analyze(W, spatialWeights, miles, PERMUTATIONS, seed, 0.05, "all", 0);
+    }
+
+    @Test
+    void giStarAndMoransIMatchABruteForceComputation() {
+        Random random = new Random(3);
+        load(s -> latitude(s) + random.nextGaussian() * 0.1);
+        HotspotService.Result result = analyzeAll(serial, "contiguity", 0, 42);
+
+        List<HotspotService.Spot> spots = result.counties();
+        int n = spots.size();
+        assertEquals(shapeOf.size(), n);
+        assertEquals(n, result.analyzed());
+        Map<Long, Double> score = new HashMap<>();
+        for (HotspotService.Spot s : spots) score.put(s.id(), s.score());
+
+        double mean = 0, squares = 0;
+        for (double x : score.values()) {
+            mean += x;
+            squares += x * x;
+        }
+        mean /= n;
+        double sd = Math.sqrt(squares / n - mean * mean);
+
+        double numerator = 0, m2 = 0;
+        int linked = 0, islands = 0;
+        for (HotspotService.Spot s : spots) {
+            List<Long> neighbours = new ArrayList<>();
+            int shape = shapeOf.get(s.id());
+            for (int other : index.neighbors(shape)) {
+                long id = shapes.get(other).fips();
+                if (id != s.id() && shapeOf.get(id) != null && shapeOf.get(id) == other) neighbours.add(id);
+            }
+            assertEquals(neighbours.size(), s.neighbors(), "neighbours of " + s.id());
+            double dev = s.score() - mean;
+            m2 += dev * dev;
+            if (neighbours.isEmpty()) {
+                islands++;
+                assertNull(s.giZScore());
+                continue;
+            }
+            double sum = s.score(), lag = 0;
+            for (long id : neighbours) {
+                sum += score.get(id);
+                lag += score.get(id) - mean;
+            }
+            double weight = neighbours.size() + 1;
+            double gi = (sum - mean * weight) / (sd * Math.sqrt((n * weight - weight * weight) / (n - 1)));
+            assertEquals(gi, s.giZScore(), 1e-9, "Gi* of " + s.id());
+            assertTrue(s.pValue() > 0 && s.pValue() <= 1);
+            numerator += dev * lag / neighbours.size();
+            linked++;
+        }
+        assertEquals(islands, result.islands());
+        assertEquals((double) n / linked * numerator / m2, result.moransI().value(), 1e-12);
+        assertEquals(-1.0 / (n - 1), result.moransI().expected(), 1e-15);
+    }
+
+    @Test
+    void distanceBandNeighboursMatchAHaversineScan() {
+        load(HotspotServiceTest::latitude);
+        double miles = 60;
+        HotspotService.Result result = analyzeAll(serial, "distance", miles, 42);
+        assertEquals(miles, result.bandMiles(), 0);
+
+        for (HotspotService.Spot s : result.counties()) {
+            int shape = shapeOf.get(s.id());
+            int expected = 0;
+            for (int other : shapeOf.values()) {
+                if (other != shape && SpatialService.haversineMiles(index.centroidLat(shape), index.centroidLon(shape),
+                        index.centroidLat(other), index.centroidLon(other)) <= miles) expected++;
+            }
+            assertEquals(expected, s.neighbors(), "neighbours of " + s.id());
+        }
+    }
+
+    @Test
+    void sameSeedGivesTheSameResultOnAnyPoolSize() {
+        Random random = new Random(9);
+        load(s -> 0.5 + random.nextGaussian() * 0.15);
+        HotspotService.Result one = analyzeAll(serial, "contiguity", 0, 7);
+        HotspotService.Result four = analyzeAll(parallel, "contiguity", 0, 7);
+
+        assertEquals(one.moransI(), four.moransI());
+        assertEquals(one.counties(), four.counties());
+        assertEquals(one.hotSpots(), four.hotSpots());
+        assertEquals(one.coldSpots(), four.coldSpots());
+
+        HotspotService.Result reseeded = analyzeAll(parallel, "contiguity", 0, 8);
+        assertEquals(one.moransI().value(), reseeded.moransI().value(), 0);
+        assertTrue(one.moransI().permutationMean() != reseeded.moransI().permutationMean(),
+                "a different seed draws different permutations");
+    }
+
+    @Test
+    void clusteredScoresArePositivelyAutocorrelated() {
+        load(HotspotServiceTest::latitude);
+        HotspotService.Result result = analyzeAll(parallel, "contiguity", 0, 42);
+
+        HotspotService.MoransI moransI = result.moransI();
+        assertTrue(moransI.value() > 0.5, "Moran's I " + moransI.value());
+        assertEquals(1.0 / (PERMUTATIONS + 1), moransI.pValue(), 1e-12);
+        assertTrue(moransI.zScore() > 10, "z " + moransI.zScore());
+        assertTrue(result.hotSpots() > 0 && result.coldSpots() > 0);
+
+        HotspotService.Result cold = parallel.analyze(W, "contiguity", 0, PERMUTATIONS, 42, 0.05, "cold", 5);
+        assertEquals(result.coldSpots(), cold.matched());
+        assertEquals(5, cold.counties().size());
+        for (HotspotService.Spot s : cold.counties()) {
+            assertEquals("cold", s.cluster());
+            assertTrue(s.giZScore() < 0 && s.pValue() <= 0.05);
+        }
+    }
+
+    @Test
+    void randomScoresAreNotAutocorrelated() {
+        Random random = new Random(3);
+        load(s -> 0.5 + random.nextGaussian() * 0.15);
+        HotspotService.MoransI moransI = analyzeAll(parallel, "contiguity", 0, 42).moransI();
+
+        assertTrue(Math.abs(moransI.value() - moransI.expected()) < 0.05, "Moran's I " + moransI.value());
+        assertTrue(moransI.pValue() > 0.05, "p " + moransI.pValue());
+    }
+
+    @Test
+    void spotsCoverEveryCountyById() {
+        load(HotspotServiceTest::latitude);
+        Map<Long, HotspotService.Spot> spots = parallel.spots(W);
+        assertEquals(shapeOf.size(), spots.size());
+        HotspotService.Spot wake = spots.get(37183L);
+        assertNotNull(wake);
+        assertEquals(7, wake.neighbors());
+    }
+
+    @Test
+    void rejectsBadArguments() {
+        load(s -> 0.5);
+        assertThrows(IllegalArgumentException.class, () -> serial.analyze(W, "contiguity", 0, 5, 42, 0.05, "all", 0));
+        assertThrows(IllegalArgumentException.class, () -> serial.analyze(W, "contiguity", 0, 10000, 42, 0.05, "all", 0));
+        assertThrows(IllegalArgumentException.class, () -> serial.analyze(W, "contiguity", 0, 99, 42, 0.7, "all", 0));
+        assertThrows(IllegalArgumentException.class, () -> serial.analyze(W, "knn", 0, 99, 42, 0.05, "all", 0));
+        assertThrows(IllegalArgumentException.class, () -> serial.analyze(W, "distance", 0, 99, 42, 0.05, "all", 0));
+        assertThrows(IllegalArgumentException.class, () -> serial.analyze(W, "contiguity", 0, 99, 42, 0.05, "warm", 0));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.County;
+import com.example.resilience.model.ScoreWeights;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonteCarloServiceTest {
+
+    private static final ScoreWeights W = ScoreWeights.DEFAULT;
+    private static final int COUNTIES = 600;
+
+    private static ResilienceService resilience;
+    private static MonteCarloService serial;
+    private static MonteCarloService parallel;
+
+    @BeforeAll
+    static void createServices() {
+        resilience = new ResilienceService();
+        serial = new MonteCarloService(resilience, 1, 50000, 8);
+        parallel = new MonteCarloService(resilience, 4, 50000, 8);
+    }
+
+    @AfterAll
+    static void shutdown() {
+        serial.shutdown();
+        parallel.shutdown();
+    }
+
+    /** COUNTIES counties with random normalized inputs; margins of error scaled by moe. */
+    private static void load(long seed, double moe) {
+        Random random = new Random(seed);
+        List<County> counties = new ArrayList<>();
+        for (int i = 0; i < COUNTIES; i++) {
+            counties.add(new County(1001L + i, "County " + i, 20000 + random.nextInt(500000),
+                    random.nextDouble(), random.nextDouble() * 0.2, random.nextDouble(), 0.1,
+                    moe * random.nextDouble(), moe * random.nextDouble() * 0.2, moe * random.nextDouble()));
+        }
+        resilience.replaceAll(counties, "test");
+    }
+
+    @Test
+    void sameSeedGivesTheSameBandsOnAnyPoolSize() {
+        load(1, 0.1);
+        // More draws than one block, so the per-county streams carry over between blocks
+        MonteCarloService.Result one = serial.run(W, 1500, 10, 0.9, 42, null, 0);
+        MonteCarloService.Result four = parallel.run(W, 1500, 10, 0.9, 42, null, 0);
+
+        assertEquals(COUNTIES, one.counties().size());
+        assertEquals(one.counties(), four.counties());
+
+        MonteCarloService.Result reseeded = parallel.run(W, 1500, 10, 0.9, 43, null, 0);
+        assertNotEquals(one.counties(), reseeded.counties(), "a different seed draws different noise");
+        for (int i = 0; i < COUNTIES; i++) {
+            MonteCarloService.CountyBand band = one.counties().get(i);
+            assertEquals(band.id(), reseeded.counties().get(i).id(), "point ranking does not depend on the seed");
+            assertTrue(band.lower() <= band.mean() && band.mean() <= band.upper(), "band of " + band.id());
+        }
+    }
+
+    @Test
+    void noMarginsGiveZeroWidthBands() {
+        load(2, 0);
+        MonteCarloService.Result result = parallel.run(W, 700, 5, 0.9, 7, null, 0);
+
+        for (MonteCarloService.CountyBand band : result.counties()) {
+            assertEquals(band.score(), band.mean(), 1e-12);
+            // Interval bounds come from 1/1024-wide histogram bins
+            assertEquals(band.score(), band.lower(), 1.0 / 1024);
+            assertEquals(band.score(), band.upper(), 1.0 / 1024);
+            assertEquals(band.rank() <= 5 ? 1.0 : 0.0, band.probTopK(), 0, "P(top 5) of rank " + band.rank());
+        }
+
+        List<MonteCarloService.CountyBand> picked = parallel.run(W, 700, 5, 0.9, 7, List.of(1003L, 99999L, 1001L), 0)
+                .counties();
+        assertEquals(2, picked.size(), "unknown ids are skipped");
+        assertEquals(1003L, picked.get(0).id());
+        assertEquals(1001L, picked.get(1).id());
+        assertEquals(3, parallel.run(W, 700, 5, 0.9, 7, null, 3).counties().size());
+    }
+
+    @Test
+    void rejectsBadArguments() {
+        load(3, 0.1);
+        assertThrows(IllegalArgumentException.class, () -> serial.run(W, 0, 10, 0.9, 1, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> serial.run(W, 50001, 10, 0.9, 1, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> serial.run(W, 100, 101, 0.9, 1, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> serial.run(W, 100, 10, 1.0, 1, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> serial.run(W, 100, 10, 0, 1, null, 0));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.resilience.service;
+
+import com.example.resilience.model.CountyShape;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpatialIndexTest {
+
+    private static CountyShape box(long fips, double minLon, double minLat, double maxLon, double maxLat) {
+        double[] ring = {minLon, minLat, maxLon, minLat, maxLon, maxLat, minLon, maxLat, minLon, minLat};
+        return new CountyShape(fips, "Shape " + fips, Map.of(), new double[][][]{{ring}}, minLon, minLat, maxLon, maxLat);
+    }
+
+    private static List<CountyShape> randomBoxes(Random random, int n) {
+        List<CountyShape> shapes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double lon = -125 + random.nextDouble() * 58;
+            double lat = 24 + random.nextDouble() * 25;
+            shapes.add(box(i + 1, lon, lat, lon + random.nextDouble() * 2, lat + random.nextDouble() * 1.5));
+        }
+        return shapes;
+    }
+
+    private static int[] sorted(int[] a) {
+        int[] copy = a.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    void intersectingMatchesABruteForceScan() {
+        Random random = new Random(11);
+        List<CountyShape> shapes = randomBoxes(random, 3000);
+        SpatialIndex index = new SpatialIndex(shapes);
+        assertEquals(3000, index.size());
+
+        for (int q = 0; q < 500; q++) {
+            double minX = -130 + random.nextDouble() * 65;
+            double minY = 20 + random.nextDouble() * 30;
+            double maxX = minX + random.nextDouble() * (q % 10 == 0 ? 40 : 3);
+            double maxY = minY + random.nextDouble() * (q % 10 == 0 ? 20 : 2);
+            int[] expected = IntStream.range(0, shapes.size())
+                    .filter(i -> {
+                        CountyShape s = shapes.get(i);
+                        return s.maxLon() >= minX && s.minLon() <= maxX && s.maxLat() >= minY && s.minLat() <= maxY;
+                    })
+                    .toArray();
+            assertArrayEquals(expected, sorted(index.intersecting(minX, minY, maxX, maxY)), "query " + q);
+        }
+        assertEquals(3000, index.intersecting(-180, -90, 180, 90).length);
+        assertEquals(0, index.intersecting(0, 0, 1, 1).length);
+    }
+
+    @Test
+    void emptyIndexFindsNothing() {
+        SpatialIndex index = new SpatialIndex(List.of());
+        assertEquals(0, index.size());
+        assertEquals(0, index.intersecting(-180, -90, 180, 90).length);
+    }
+
+    @Test
+    void gridHasQueenAdjacencyWithEdgesBeforeCorners() {
+        // 3x3 unit squares, row-major from the south-west corner
+        List<CountyShape> shapes = new ArrayList<>();
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) shapes.add(box(y * 3 + x + 1, x, y, x + 1, y + 1));
+        }
+        SpatialIndex index = new SpatialIndex(shapes);
+
+        // Edge neighbours share two vertices, corner neighbours one
+        assertArrayEquals(new int[]{1, 3, 5, 7, 0, 2, 6, 8}, index.neighbors(4));
+        assertArrayEquals(new int[]{2, 2, 2, 2, 1, 1, 1, 1}, index.sharedVertices(4));
+        assertArrayEquals(new int[]{1, 3, 4}, index.neighbors(0));
+        assertArrayEquals(new int[]{0, 2, 4, 3, 5}, index.neighbors(1));
+
+        for (int a = 0; a < shapes.size(); a++) {
+            for (int b : index.neighbors(a)) {
+                int from = a;
+                assertTrue(Arrays.stream(index.neighbors(b)).anyMatch(n -> n == from), a + " <-> " + b);
+            }
+        }
+        assertEquals(1.5, index.centroidLon(4), 1e-12);
+        assertEquals(1.5, index.centroidLat(4), 1e-12);
+    }
+
+    @Test
+    void withinMatchesABruteForceDistanceScan() {
+        Random random = new Random(5);
+        List<CountyShape> shapes = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            double lon = -170 + random.nextDouble() * 110;
+            double lat = 18 + random.nextDouble() * 53;
+            shapes.add(box(i + 1, lon, lat, lon + 0.2, lat + 0.2));
+        }
+        SpatialIndex index = new SpatialIndex(shapes);
+
+        for (int q = 0; q < 200; q++) {
+            double lat = 15 + random.nextDouble() * 60;
+            double lon = -175 + random.nextDouble() * 120;
+            double miles = 5 + random.nextDouble() * (q % 5 == 0 ? 1500 : 200);
+            int[] expected = IntStream.range(0, shapes.size())
+                    .filter(i -> SpatialService.haversineMiles(lat, lon, index.centroidLat(i), index.centroidLon(i)) <= miles)
+                    .toArray();
+            assertArrayEquals(expected, sorted(SpatialService.within(index, lat, lon, miles)), "query " + q);
+        }
+    }
+
+    @Test
+    void wakeCountyBordersItsSevenNeighbours() {
+        CountyGeometryService geometry = new CountyGeometryService("", "target/no-geometry-cache.geojson", "", 0.01, 0.002);
+        geometry.loadLocal();
+        List<CountyShape> shapes = geometry.shapes();
+        SpatialIndex index = new SpatialIndex(shapes);
+
+        Integer wake = null;
+        for (int i = 0; i < shapes.size(); i++) {
+            if (shapes.get(i).fips() == 37183) wake = i;
+        }
+        assertNotNull(wake, "bundled geometry has Wake County");
+        long[] neighbours = Arrays.stream(index.neighbors(wake)).mapToLong(i -> shapes.get(i).fips()).sorted().toArray();
+        // Chatham, Durham, Franklin, Granville, Harnett, Johnston, Nash
+        assertArrayEquals(new long[]{37037, 37063, 37069, 37077, 37085, 37101, 37127}, neighbours);
+    }
+}